@@ -0,0 +1,85 @@
+package framework.game;
+
+/** Последовательность фигур "мешками".
+ * Все разновидности фигур складываются в мешок, который перемешивается и выдается
+ * целиком, затем заполняется следующий. Каждая разновидность встречается ровно
+ * один раз на мешок, так что между двумя одинаковыми фигурами не больше
+ * 2 * (число разновидностей - 1) других. Для Тетриса это правило "7-bag".
+ *
+ * @author Игорь
+ * @param <S> Тип фигур.
+ */
+public class BagSequence<S> extends RandomSequence<S>
+{
+	private final S[] bag;		// текущий мешок
+	private int       pos;		// число выданных фигур мешка
+
+	/** Конструирует последовательность с глубиной предпросмотра по умолчанию.
+	 * @param kinds Разновидности фигур, например {@code TetrisPiece.values()}.
+	 * @param seed Зерно генератора.
+	 * @throws NullPointerException разновидности null
+	 * @throws IllegalArgumentException разновидностей нет
+	 */
+	public BagSequence(S[] kinds, long seed) {
+		this(kinds, seed, DEFAULT_DEPTH);
+	}
+
+	/** Конструирует последовательность.
+	 * @param kinds Разновидности фигур, например {@code TetrisPiece.values()}.
+	 * @param seed Зерно генератора.
+	 * @param depth Глубина предпросмотра.
+	 * @throws NullPointerException разновидности null
+	 * @throws IllegalArgumentException разновидностей нет, глубина < 1
+	 */
+	public BagSequence(S[] kinds, long seed, int depth) {
+		super(kinds, seed, depth);
+		this.bag = kinds.clone();
+		this.pos = bag.length;
+	}
+
+	/** Конструирует копию последовательности.
+	 * @param other Оригинал.
+	 */
+	protected BagSequence(BagSequence<S> other) {
+		super(other);
+		this.bag = other.bag.clone();
+		this.pos = other.pos;
+	}
+
+	/** {@inheritDoc}
+	 */
+	@Override
+	public BagSequence<S> snapshot() {
+		return new BagSequence<>(this);
+	}
+
+	/** {@inheritDoc}
+	 */
+	@Override
+	protected S generate() {
+		if (pos == bag.length) {
+			// новый мешок, перемешивание Фишера-Йетса
+			System.arraycopy(kinds, 0, bag, 0, bag.length);
+			for (int i = bag.length - 1; i > 0; i--) {
+				int j = nextInt(i + 1);
+				S t = bag[i];
+				bag[i] = bag[j];
+				bag[j] = t;
+			}
+			pos = 0;
+		}
+		return bag[pos++];
+	}
+
+	public static void main(String[] args) {
+		BagSequence<games.TetrisPiece> sequence = new BagSequence<>(games.TetrisPiece.values(), 1);
+		System.out.println(sequence);
+		PieceSequence<games.TetrisPiece> copy = sequence.snapshot();
+		StringBuilder a = new StringBuilder(), b = new StringBuilder();
+		for (int i = 0; i < 21; i++) {
+			a.append(sequence.next());
+			b.append(copy.next());
+		}
+		System.out.println(a + "\n" + b);
+	}
+}
@@ -0,0 +1,69 @@
+package framework.game;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/** Заданная последовательность фигур.
+ * Выдает фигуры списка по порядку и, дойдя до конца, начинает сначала. Нужна для
+ * воспроизведения записанных партий и для отладки.
+ *
+ * @author Игорь
+ * @param <S> Тип фигур.
+ */
+public class FixedSequence<S> extends PieceSequence<S>
+{
+	private final List<S> pieces;		// фигуры по порядку
+	private int           pos;			// индекс следующей вычисляемой фигуры
+
+	/** Конструирует последовательность с глубиной предпросмотра по умолчанию.
+	 * @param pieces Фигуры по порядку.
+	 * @throws NullPointerException список null, фигура-элемент списка null
+	 * @throws IllegalArgumentException список пуст
+	 */
+	public FixedSequence(List<? extends S> pieces) {
+		this(pieces, DEFAULT_DEPTH);
+	}
+
+	/** Конструирует последовательность.
+	 * @param pieces Фигуры по порядку.
+	 * @param depth Глубина предпросмотра.
+	 * @throws NullPointerException список null, фигура-элемент списка null
+	 * @throws IllegalArgumentException список пуст, глубина < 1
+	 */
+	public FixedSequence(List<? extends S> pieces, int depth) {
+		super(depth);
+		if (pieces.isEmpty())
+			throw new IllegalArgumentException("список пуст");
+		if (pieces.contains(null))
+			throw new NullPointerException();
+
+		this.pieces = Collections.unmodifiableList(new ArrayList<S>(pieces));
+		this.pos = 0;
+	}
+
+	/** Конструирует копию последовательности.
+	 * @param other Оригинал.
+	 */
+	protected FixedSequence(FixedSequence<S> other) {
+		super(other);
+		this.pieces = other.pieces;
+		this.pos = other.pos;
+	}
+
+	/** {@inheritDoc}
+	 */
+	@Override
+	public FixedSequence<S> snapshot() {
+		return new FixedSequence<>(this);
+	}
+
+	/** {@inheritDoc}
+	 */
+	@Override
+	protected S generate() {
+		S piece = pieces.get(pos);
+		pos = (pos + 1) % pieces.size();
+		return piece;
+	}
+}
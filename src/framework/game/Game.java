@@ -2,13 +2,25 @@ package framework.game;
 
 import java.util.Random;
 
-import javax.swing.Timer;
-
 import framework.game.event.GameListened;
+import framework.game.replay.Input;
+import framework.game.replay.ReplayRecorder;
 import framework.matrix.model.pieces.PieceCreator;
 import framework.matrix.model.pieces.PieceMatrix;
 
 /** Основа тетрисной игры-аркады.
+ * 
+ * Тики игры поставляет подменяемый источник {@link Ticker}, по умолчанию таймер Swing
+ * с периодом 1 с, создаваемый при первом запуске игры. С источником {@link VirtualClock}
+ * игра работает без дисплея и быстрее реального времени: тики выполняет {@link #step(int)}.
+ * Источник может вызывать тики из собственного потока ({@link GameLoop}), поэтому методы
+ * управления состоянием синхронизированы по объекту игры, а тик выполняется под той же
+ * блокировкой. Подклассы синхронизируют по нему же методы управления фигурой.
+ * 
+ * Игра всегда конструируется по зерну {@link #getSeed()}, явному либо случайному, поэтому
+ * первую игру объекта можно записать в повтор {@link #setRecorder(ReplayRecorder)}: тики
+ * записывает игра, а действия игрока - подклассы вызовами {@link #record(Input)}. Если игра
+ * {@link Restorable}, в повтор периодически записываются и ключевые кадры ее состояния.
  * 
  * @author Игорь
  *
@@ -29,46 +41,68 @@ public abstract class Game<B, S> extends GameListened implements PieceControl
 	
 	protected PieceMatrix<B, S> matrix;
 	protected Random 			random;
-	private   Timer 			timer;
-	private   State 			state;
+	private   final long		seed;		// зерно генератора случайных чисел
+	private   ReplayRecorder	recorder;	// запись повтора, null - нет
+	private   Ticker 			ticker;
+	private   volatile State 	state;
+	private   int				runs;		// число запусков игры
+	private   int				ticking;	// число запусков тиков, отличает тики прежних запусков
+	private   long				lines;		// число удаленных строк в текущей игре
 	
 	public Game(Class<B> brickType, PieceCreator<B, S> creator) {
-		matrix = new PieceMatrix<>(brickType, creator);
-		random = new Random();
-		timer = new Timer(1000, (e) -> onTimerTick());
-		timer.setInitialDelay(0);
-		state = State.NOT_STARTED;
+		this(brickType, creator, new Random().nextLong());
+	}
+	
+	/** Конструирует игру с воспроизводимой последовательностью случайных чисел.
+	 * @param brickType Описывает тип блоков.
+	 * @param creator Делегат создания фигур.
+	 * @param seed Зерно генератора случайных чисел игры.
+	 */
+	public Game(Class<B> brickType, PieceCreator<B, S> creator, long seed) {
+		this.matrix = new PieceMatrix<>(brickType, creator);
+		this.matrix.setReusingEvents(true);	// визуализатор обрабатывает события сразу
+		this.random = new Random(seed);
+		this.seed = seed;
+		this.ticker = null;
+		this.state = State.NOT_STARTED;
 	}
 	
 	/** Начинает новую игру.
 	 */
-	public void start() {
-		timer.stop();
+	public synchronized void start() {
+		Ticker ticker = getTicker();
+		ticker.stop();
 		
+		if (runs != 0)
+			finishRecording();	// прежняя игра прервана перезапуском
 		matrix.clear();
-		timer.start();
+		lines = 0;
+		runs++;
+		if (recorder != null)
+			recorder.begin(seed, matrix.getWidth(), matrix.getHeight());
+		startTicks(ticker);
 		state = State.ACTIVE;
 	}
 	
 	/** Приостанавливает текущую игру.
 	 * @throws IllegalStateException игра не активна
 	 */
-	public void pause() {
+	public synchronized void pause() {
 		if (state != State.ACTIVE)
 			throw new IllegalStateException();
 		
-		timer.stop();
+		getTicker().stop();
 		state = State.PAUSED;
 	}
 	
 	/** Возобновляет приостановленную игру.
 	 * @throws IllegalStateException игра не на паузе
 	 */
-	public void resume() {
+	public synchronized void resume() {
 		if (state != State.PAUSED)
 			throw new IllegalStateException();	
 		
-		timer.restart();
+		startTicks(getTicker());
 		state = State.ACTIVE;
 	}
 	
@@ -76,11 +110,12 @@ public abstract class Game<B, S> extends GameListened implements PieceControl
 	 * Игровое событие не отправляется слушателям.
 	 * @throws IllegalStateException игра не запущена
 	 */
-	public void stop() {
+	public synchronized void stop() {
 		if (state == State.NOT_STARTED)
 			throw new IllegalStateException();
 		
-		timer.stop();
+		getTicker().stop();
+		finishRecording();
 		state = State.NOT_STARTED;
 	}
 	
@@ -91,6 +126,99 @@ public abstract class Game<B, S> extends GameListened implements PieceControl
 		return state;
 	}
 
+	/** Возвращает зерно генератора случайных чисел игры.
+	 * @return
+	 */
+	public long getSeed() {
+		return seed;
+	}
+	
+	/** Устанавливает запись повтора.
+	 * Записывается первая игра объекта, от запуска до остановки; по окончании игры
+	 * повтор завершается, и запись снимается. Закрывает запись вызывающий.
+	 * @param recorder Запись повтора, null - не записывать.
+	 * @throws IllegalStateException игра уже запускалась
+	 */
+	public synchronized void setRecorder(ReplayRecorder recorder) {
+		if (runs != 0)
+			throw new IllegalStateException("игра уже запускалась");
+		this.recorder = recorder;
+	}
+	
+	/** Записывает действие игрока в повтор, если он записывается.
+	 * Вызывайте под блокировкой игры, только если игра активна.
+	 * @param input Действие без аргумента.
+	 */
+	protected void record(Input input) {
+		if (recorder != null)
+			recorder.input(input);
+	}
+	
+	/** Записывает действие игрока с аргументом в повтор, если он записывается.
+	 * Вызывайте под блокировкой игры, только если игра активна.
+	 * @param input Действие.
+	 * @param arg Аргумент действия.
+	 */
+	protected void record(Input input, int arg) {
+		if (recorder != null)
+			recorder.input(input, arg);
+	}
+	
+	/** Возвращает число удаленных строк в текущей или последней игре.
+	 * @return
+	 */
+	public synchronized long getLines() {
+		return lines;
+	}
+	
+	/** Учитывает удаленные строки.
+	 * @param count Число строк.
+	 */
+	protected synchronized void addLines(long count) {
+		lines += count;
+	}
+	
+	/** Возвращает источник тиков.
+	 * Если источник не устанавливался, создается таймер Swing с периодом 1 с.
+	 * @return
+	 */
+	public synchronized Ticker getTicker() {
+		if (ticker == null)
+			ticker = new SwingTicker(1000);
+		return ticker;
+	}
+	
+	/** Устанавливает источник тиков.
+	 * @param ticker Источник тиков.
+	 * @throws NullPointerException источник null
+	 * @throws IllegalStateException игра запущена
+	 */
+	public synchronized void setTicker(Ticker ticker) {
+		if (ticker == null)
+			throw new NullPointerException();
+		if (state != State.NOT_STARTED)
+			throw new IllegalStateException();
+		
+		if (this.ticker != null)
+			this.ticker.stop();
+		this.ticker = ticker;
+	}
+	
+	/** Выполняет тики виртуальных часов.
+	 * Игра продвигается мгновенно, в вызывающем потоке.
+	 * @param n Число тиков.
+	 * @return Число выполненных тиков, меньше n если часы остановились, например игра
+	 * завершилась.
+	 * @throws IllegalStateException источник тиков не {@link VirtualClock}
+	 * @throws IllegalArgumentException число тиков < 0
+	 */
+	public int step(int n) {
+		Ticker ticker = getTicker();
+		if (!(ticker instanceof VirtualClock))
+			throw new IllegalStateException("источник тиков не виртуальные часы");
+		return ((VirtualClock)ticker).step(n);
+	}
+	
 	/** Возвращает матрицу игру.
 	 * @return
 	 */
@@ -99,7 +227,34 @@ public abstract class Game<B, S> extends GameListened implements PieceControl
 	}
 	
 	/** Обработчик тика таймера.
-	 * 
+	 * Вызывается под блокировкой объекта игры, только если игра активна.
 	 */
 	protected abstract void onTimerTick();
+	
+	// запускает тики с новым номером. Остановленный источник может выполнить уже начатый
+	// тик после возобновления, номер отличает такой тик от тиков нового запуска
+	private void startTicks(Ticker ticker) {
+		int generation = ++ticking;
+		ticker.start(() -> tick(generation));
+	}
+	
+	// выполняет тик запуска тиков generation, если это текущий запуск и игра активна
+	private synchronized void tick(int generation) {
+		if (generation == ticking && state == State.ACTIVE) {
+			if (recorder != null) {
+				if (this instanceof Restorable && recorder.isKeyframeDue())
+					recorder.keyframe((Restorable)this);
+				recorder.tick();
+			}
+			onTimerTick();
+		}
+	}
+	
+	// завершает повтор текущей игры, если он записывается
+	private void finishRecording() {
+		if (recorder != null) {
+			recorder.finish(matrix.stateHash(), lines);
+			recorder = null;
+		}
+	}
 }
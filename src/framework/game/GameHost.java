@@ -0,0 +1,264 @@
+package framework.game;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongFunction;
+
+/** Хост параллельных партий без дисплея.
+ * Каждая партия - отдельный экземпляр игры на собственных виртуальных часах
+ * {@link VirtualClock}, от создания до завершения выполняемый одной задачей пула
+ * с перехватом работы ({@link ForkJoinPool}). Партии не разделяют изменяемого
+ * состояния, поэтому пропускная способность растет почти линейно с числом ядер.
+ *
+ * Партия и ее игрок создаются фабриками по зерну партии, так что при одинаковых
+ * зернах партии воспроизводимы независимо от числа потоков и порядка выполнения.
+ * Перед каждым тиком гравитации игрок делает свои ходы.
+ *
+ * Метрики - тики, удаленные строки, завершенные и аварийные партии - суммируются по всем
+ * партиям без блокировок. Исключение партии или ее игрока прерывает только эту партию:
+ * оно подсчитывается, первое из них запоминается и выбрасывается при ожидании завершения
+ * {@link #awaitTermination(long, TimeUnit)} и {@link #close()}. Завершение работы:
+ *  {@link #shutdown()} новые партии не принимаются, начатые доигрываются
+ *  {@link #shutdownNow()} начатые партии останавливаются на ближайшем тике
+ *  {@link #close()} {@link #shutdown()} с ожиданием, прерывание ожидания - {@link #shutdownNow()}
+ *
+ * @author Игорь
+ * @param <G> Тип игры.
+ */
+public class GameHost<G extends Game<?, ?>> implements AutoCloseable
+{
+	/** Игрок партии.
+	 *
+	 * @param <G> Тип игры.
+	 */
+	@FunctionalInterface
+	public interface Player<G>
+	{
+		/** Делает ходы перед очередным тиком.
+		 * @param game Активная игра.
+		 */
+		void move(G game);
+	}
+
+	private final LongFunction<? extends G> games;			// фабрика игр по зерну
+	private final LongFunction<? extends Player<? super G>> players;	// фабрика игроков по зерну
+	private final ForkJoinPool pool;						// пул потоков партий
+	private final LongAdder    ticks;						// выполнено тиков
+	private final LongAdder    lines;						// удалено строк
+	private final LongAdder    finished;					// завершено партий
+	private final LongAdder    failed;						// аварийных партий
+	private final AtomicReference<Throwable> failure;		// первое исключение партии, null - нет
+	private final long         startTime;					// [нс] момент создания хоста
+	private volatile boolean   aborted;						// признак "прервать партии"
+
+	/** Конструирует хост, число потоков равно числу процессоров.
+	 * @param games Фабрика игр по зерну партии.
+	 * @param players Фабрика игроков по зерну партии.
+	 * @throws NullPointerException аргументы null
+	 */
+	public GameHost(LongFunction<? extends G> games, LongFunction<? extends Player<? super G>> players) {
+		this(games, players, Runtime.getRuntime().availableProcessors());
+	}
+
+	/** Конструирует хост.
+	 * @param games Фабрика игр по зерну партии.
+	 * @param players Фабрика игроков по зерну партии.
+	 * @param parallelism Число потоков.
+	 * @throws NullPointerException аргументы null
+	 * @throws IllegalArgumentException число потоков < 1
+	 */
+	public GameHost(LongFunction<? extends G> games, LongFunction<? extends Player<? super G>> players,
+	  int parallelism)
+	{
+		if (games == null || players == null)
+			throw new NullPointerException();
+
+		this.games = games;
+		this.players = players;
+		this.pool = new ForkJoinPool(parallelism);
+		this.ticks = new LongAdder();
+		this.lines = new LongAdder();
+		this.finished = new LongAdder();
+		this.failed = new LongAdder();
+		this.failure = new AtomicReference<>();
+		this.startTime = System.nanoTime();
+		this.aborted = false;
+	}
+
+	/** Ставит партию в очередь.
+	 * @param seed Зерно партии.
+	 * @return Будущая игра, завершенная или прерванная; исключение партии или игрока
+	 * передается в ExecutionException.
+	 * @throws java.util.concurrent.RejectedExecutionException хост завершает работу
+	 */
+	public Future<G> submit(long seed) {
+		return pool.submit(() -> play(seed));
+	}
+
+	/** Ставит в очередь партии с последовательными зернами.
+	 * @param firstSeed Зерно первой партии.
+	 * @param count Число партий.
+	 * @throws java.util.concurrent.RejectedExecutionException хост завершает работу
+	 */
+	public void submitAll(long firstSeed, int count) {
+		for (int i = 0; i < count; i++)
+			submit(firstSeed + i);
+	}
+
+	/** Завершает работу: новые партии не принимаются, начатые и ожидающие доигрываются.
+	 */
+	public void shutdown() {
+		pool.shutdown();
+	}
+
+	/** Завершает работу немедленно: ожидающие партии отменяются, начатые
+	 * останавливаются на ближайшем тике.
+	 */
+	public void shutdownNow() {
+		aborted = true;
+		pool.shutdownNow();
+	}
+
+	/** Ожидает завершения всех партий после {@link #shutdown()}.
+	 * @param timeout Время ожидания.
+	 * @param unit Единица измерения времени.
+	 * @return true, если все партии завершены.
+	 * @throws InterruptedException ожидание прервано
+	 * @throws IllegalStateException все партии завершены, но некоторые аварийно;
+	 * причина - первое исключение партии
+	 */
+	public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+		boolean terminated = pool.awaitTermination(timeout, unit);
+		if (terminated)
+			checkFailures();
+		return terminated;
+	}
+
+	/** Завершает работу и ожидает окончания всех партий.
+	 * Если ожидающий поток прерван, начатые партии останавливаются {@link #shutdownNow()}
+	 * на ближайшем тике, а признак прерывания потока восстанавливается после их остановки.
+	 * @throws IllegalStateException некоторые партии завершены аварийно; причина - первое
+	 * исключение партии
+	 */
+	@Override
+	public void close() {
+		shutdown();
+		boolean interrupted = false;
+		while (!pool.isTerminated()) {
+			try {
+				pool.awaitTermination(1, TimeUnit.DAYS);
+			} catch (InterruptedException e) {
+				if (!interrupted) {
+					shutdownNow();
+					interrupted = true;
+				}
+			}
+		}
+		if (interrupted)
+			Thread.currentThread().interrupt();
+		checkFailures();
+	}
+
+	/** Возвращает число выполненных тиков всех партий.
+	 * @return
+	 */
+	public long getTicks() {
+		return ticks.sum();
+	}
+
+	/** Возвращает число удаленных строк всех завершенных партий.
+	 * @return
+	 */
+	public long getLines() {
+		return lines.sum();
+	}
+
+	/** Возвращает число завершенных партий.
+	 * @return
+	 */
+	public long getGames() {
+		return finished.sum();
+	}
+
+	/** Возвращает число аварийных партий: партия или ее игрок выбросили исключение.
+	 * @return
+	 */
+	public long getFailures() {
+		return failed.sum();
+	}
+
+	/** Возвращает первое исключение аварийной партии.
+	 * @return null, если аварийных партий нет.
+	 */
+	public Throwable getFailure() {
+		return failure.get();
+	}
+
+	/** Возвращает время работы хоста.
+	 * @return [нс] с момента создания.
+	 */
+	public long getElapsed() {
+		return System.nanoTime() - startTime;
+	}
+
+	/** Возвращает строковое представление метрик.
+	 * Пример вывода:
+	 * <pre>
+	 * {@code
+	 * GameHost 8 потоков, 2.00 с: тиков 3200000 (1600000/с), строк 1200 (600/с), партий 16000 (8000/с), ошибок 0
+	 * }
+	 * </pre>
+	 * @return Форматированная строка для вывода на консоль.
+	 */
+	@Override
+	public String toString() {
+		double seconds = getElapsed() / 1e9;
+		long t = getTicks(), l = getLines(), g = getGames();
+		return String.format(java.util.Locale.ROOT,
+		  "%s %d потоков, %.2f с: тиков %d (%.0f/с), строк %d (%.0f/с), партий %d (%.0f/с), ошибок %d",
+		  getClass().getSimpleName(), pool.getParallelism(), seconds,
+		  t, t / seconds, l, l / seconds, g, g / seconds, getFailures());
+	}
+
+	// выбрасывает первое исключение аварийных партий
+	private void checkFailures() {
+		Throwable first = failure.get();
+		if (first != null)
+			throw new IllegalStateException("аварийных партий " + getFailures(), first);
+	}
+
+	// играет партию, исключение партии подсчитывается и передается в ее Future
+	private G play(long seed) {
+		try {
+			return playGame(seed);
+		} catch (RuntimeException | Error e) {
+			failed.increment();
+			failure.compareAndSet(null, e);
+			throw e;
+		}
+	}
+
+	// играет партию от начала до конца
+	private G playGame(long seed) {
+		G game = games.apply(seed);
+		Player<? super G> player = players.apply(seed);
+		VirtualClock clock = new VirtualClock();
+		game.setTicker(clock);
+
+		game.start();
+		while (game.getState() == Game.State.ACTIVE) {
+			if (aborted) {
+				game.stop();
+				return game;
+			}
+			player.move(game);
+			ticks.add(game.step(1));
+		}
+		lines.add(game.getLines());
+		finished.increment();
+		return game;
+	}
+}
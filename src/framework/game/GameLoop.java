@@ -0,0 +1,218 @@
+package framework.game;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/** Игровой цикл с фиксированным шагом в отдельном потоке.
+ * Альтернатива {@link SwingTicker}: логика игры выполняется вне потока диспетчеризации
+ * событий, и медленное рисование больше не задерживает тики. Изменения модели при
+ * этом приходят слушателям в потоке цикла, визуализатор переносит их в EDT сам.
+ *
+ * Тики планируются на моменты start + n * период. Если тик запоздал, цикл навёрстывает
+ * пропущенные тики подряд, но не более заданного числа за раз; отставание сверх этого
+ * отбрасывается, чтобы после долгой паузы (отладчик, сборка мусора) игра не
+ * "проматывалась" вперед.
+ *
+ * Статистика:
+ *  число выполненных тиков
+ *  число запоздавших тиков - начавшихся позже запланированного на период и более
+ *  число отброшенных тиков
+ *  максимальное и среднее запаздывание начала тика (джиттер)
+ *
+ * @author Игорь
+ */
+public class GameLoop implements Ticker
+{
+	/** Число тиков, навёрстываемых подряд по умолчанию. */
+	public static final int DEFAULT_MAX_CATCH_UP = 5;
+
+	private final long    period;			// [нс] период тиков
+	private final int     maxCatchUp;		// число тиков, навёрстываемых подряд
+	private volatile Thread thread;			// поток цикла, null - остановлен
+
+	private volatile long tickCount;		// выполнено тиков
+	private volatile long overrunCount;		// запоздало тиков
+	private volatile long droppedCount;		// отброшено тиков
+	private volatile long maxJitter;		// [нс] максимальное запаздывание тика
+	private volatile long jitterSum;		// [нс] суммарное запаздывание тиков
+
+	/** Конструирует цикл.
+	 * @param ticksPerSecond Частота тиков.
+	 * @throws IllegalArgumentException частота не положительна
+	 */
+	public GameLoop(double ticksPerSecond) {
+		this(Math.round(1e9 / ticksPerSecond), TimeUnit.NANOSECONDS, DEFAULT_MAX_CATCH_UP);
+		if (!(ticksPerSecond > 0))
+			throw new IllegalArgumentException("частота " + ticksPerSecond);
+	}
+
+	/** Конструирует цикл.
+	 * @param period Период тиков.
+	 * @param unit Единица измерения периода.
+	 * @param maxCatchUp Число тиков, навёрстываемых подряд.
+	 * @throws NullPointerException единица измерения null
+	 * @throws IllegalArgumentException период или число тиков < 1
+	 */
+	public GameLoop(long period, TimeUnit unit, int maxCatchUp) {
+		if (unit.toNanos(period) < 1)
+			throw new IllegalArgumentException("период < 1 нс");
+		if (maxCatchUp < 1)
+			throw new IllegalArgumentException("число тиков < 1");
+
+		this.period = unit.toNanos(period);
+		this.maxCatchUp = maxCatchUp;
+	}
+
+	/** {@inheritDoc}
+	 * Создает поток-демон цикла.
+	 */
+	@Override
+	public synchronized void start(Runnable tick) {
+		if (tick == null)
+			throw new NullPointerException();
+
+		stop();
+		Thread t = new Thread(() -> run(tick), "game-loop");
+		t.setDaemon(true);
+		thread = t;
+		t.start();
+	}
+
+	/** {@inheritDoc}
+	 * Не дожидается завершения потока цикла: тот может ожидать блокировку игры, которую
+	 * удерживает вызывающий.
+	 */
+	@Override
+	public synchronized void stop() {
+		Thread t = thread;
+		if (t != null) {
+			thread = null;
+			LockSupport.unpark(t);
+		}
+	}
+
+	/** Проверяет, идут ли тики.
+	 * @return
+	 */
+	public boolean isRunning() {
+		return thread != null;
+	}
+
+	/** Возвращает период тиков.
+	 * @return [нс]
+	 */
+	public long getPeriod() {
+		return period;
+	}
+
+	/** Возвращает число выполненных тиков.
+	 * @return
+	 */
+	public long getTickCount() {
+		return tickCount;
+	}
+
+	/** Возвращает число запоздавших тиков.
+	 * Тик запоздал, если начался позже запланированного момента на период и более.
+	 * @return
+	 */
+	public long getOverrunCount() {
+		return overrunCount;
+	}
+
+	/** Возвращает число отброшенных тиков.
+	 * @return
+	 */
+	public long getDroppedCount() {
+		return droppedCount;
+	}
+
+	/** Возвращает максимальное запаздывание начала тика.
+	 * @return [нс]
+	 */
+	public long getMaxJitter() {
+		return maxJitter;
+	}
+
+	/** Возвращает среднее запаздывание начала тика.
+	 * @return [нс]
+	 */
+	public long getMeanJitter() {
+		long count = tickCount;
+		return count == 0 ? 0 : jitterSum / count;
+	}
+
+	/** Обнуляет статистику.
+	 */
+	public void resetStatistics() {
+		tickCount = 0;
+		overrunCount = 0;
+		droppedCount = 0;
+		maxJitter = 0;
+		jitterSum = 0;
+	}
+
+	/** Возвращает строковое представление статистики.
+	 * Пример вывода:
+	 * <pre>
+	 * {@code
+	 * GameLoop 60.0 Гц: тиков 600, запоздало 2, отброшено 0, джиттер средний 0.08 мс, максимальный 3.41 мс
+	 * }
+	 * </pre>
+	 * @return Форматированная строка для вывода на консоль.
+	 */
+	@Override
+	public String toString() {
+		return String.format(java.util.Locale.ROOT,
+		  "%s %.1f Гц: тиков %d, запоздало %d, отброшено %d, джиттер средний %.2f мс, максимальный %.2f мс",
+		  getClass().getSimpleName(), 1e9 / period, tickCount, overrunCount, droppedCount,
+		  getMeanJitter() / 1e6, maxJitter / 1e6);
+	}
+
+	// тело потока цикла
+	private void run(Runnable tick) {
+		Thread self = Thread.currentThread();
+		long next = System.nanoTime();
+		while (thread == self) {
+			long now = System.nanoTime();
+			if (now < next) {
+				LockSupport.parkNanos(this, next - now);
+				continue;
+			}
+
+			// очередной тик и навёрстывание
+			for (int caught = 0; now >= next && thread == self; caught++) {
+				if (caught == maxCatchUp) {
+					long behind = (now - next) / period + 1;
+					droppedCount += behind;
+					next += behind * period;
+					break;
+				}
+
+				long jitter = now - next;
+				if (jitter >= period)
+					overrunCount++;
+				if (jitter > maxJitter)
+					maxJitter = jitter;
+				jitterSum += jitter;
+
+				tick.run();
+				tickCount++;
+				next += period;
+				now = System.nanoTime();
+			}
+		}
+	}
+
+	public static void main(String[] args) throws InterruptedException {
+		GameLoop loop = new GameLoop(60);
+		loop.start(() -> {
+			// имитация неравномерной нагрузки
+			if (loop.getTickCount() % 30 == 29)
+				LockSupport.parkNanos(40_000_000);
+		});
+		Thread.sleep(2000);
+		loop.stop();
+		System.out.println(loop);
+	}
+}
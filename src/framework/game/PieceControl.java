@@ -45,4 +45,15 @@ public interface PieceControl
 	default void rotate() {
 		throw new UnsupportedOperationException();
 	}
+	
+	/** Переставляет фигуру в размещение.
+	 * Действие выполняется только если игра активна.
+	 * @param placement Упакованное размещение, см.
+	 * {@link framework.matrix.model.pieces.PlacementGenerator}.
+	 * @return true, если фигура переставлена.
+	 * @throws UnsupportedOperationException действие не определено для данной игры
+	 */
+	default boolean place(int placement) {
+		throw new UnsupportedOperationException();
+	}
 }
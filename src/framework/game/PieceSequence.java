@@ -0,0 +1,105 @@
+package framework.game;
+
+/** Последовательность разновидностей фигур с окном предпросмотра.
+ * Следующие фигуры вычисляются заранее и хранятся в кольцевом буфере заданной глубины,
+ * поэтому просмотр любой из них - это чтение из массива. Буфер заполняется при первом
+ * обращении и после каждой выданной фигуры пополняется одной новой.
+ *
+ * Состояние последовательности можно сохранить: {@link #snapshot()} возвращает
+ * независимую копию, выдающую те же фигуры, что и оригинал.
+ *
+ * Последовательность не синхронизирована.
+ *
+ * @author Игорь
+ * @param <S> Тип фигур.
+ */
+public abstract class PieceSequence<S>
+{
+	/** Глубина предпросмотра по умолчанию. */
+	public static final int DEFAULT_DEPTH = 5;
+
+	private final Object[] preview;		// кольцевой буфер следующих фигур
+	private int            head;		// индекс ближайшей фигуры в буфере
+	private int            count;		// число вычисленных фигур в буфере
+
+	/** Конструирует последовательность.
+	 * @param depth Глубина предпросмотра.
+	 * @throws IllegalArgumentException глубина < 1
+	 */
+	protected PieceSequence(int depth) {
+		if (depth < 1)
+			throw new IllegalArgumentException("глубина " + depth);
+
+		this.preview = new Object[depth];
+		this.head = 0;
+		this.count = 0;
+	}
+
+	/** Конструирует копию последовательности.
+	 * @param other Оригинал.
+	 */
+	protected PieceSequence(PieceSequence<S> other) {
+		this.preview = other.preview.clone();
+		this.head = other.head;
+		this.count = other.count;
+	}
+
+	/** Выдает следующую фигуру.
+	 * @return
+	 */
+	public S next() {
+		S piece = peek(0);
+		preview[head] = generate();
+		head = (head + 1) % preview.length;
+		return piece;
+	}
+
+	/** Возвращает фигуру из окна предпросмотра, не выдавая ее.
+	 * @param i Номер фигуры, 0 - следующая.
+	 * @return
+	 * @throws IndexOutOfBoundsException номер вне [0, глубина)
+	 */
+	@SuppressWarnings("unchecked")
+	public S peek(int i) {
+		if (i < 0 || i >= preview.length)
+			throw new IndexOutOfBoundsException("номер " + i);
+
+		for (; count < preview.length; count++)
+			preview[(head + count) % preview.length] = generate();
+		return (S)preview[(head + i) % preview.length];
+	}
+
+	/** Возвращает глубину предпросмотра.
+	 * @return
+	 */
+	public int getDepth() {
+		return preview.length;
+	}
+
+	/** Возвращает независимую копию последовательности в текущем состоянии.
+	 * @return
+	 */
+	public abstract PieceSequence<S> snapshot();
+
+	/** Вычисляет очередную фигуру, которая попадет в конец окна предпросмотра.
+	 * @return
+	 */
+	protected abstract S generate();
+
+	/** Возвращает строковое представление окна предпросмотра.
+	 * Пример вывода:
+	 * <pre>
+	 * {@code
+	 * BagSequence [T, I, S, O, Z]
+	 * }
+	 * </pre>
+	 * @return Форматированная строка для вывода на консоль.
+	 */
+	@Override
+	public String toString() {
+		StringBuilder bldr = new StringBuilder(getClass().getSimpleName()).append(" [");
+		for (int i = 0; i < preview.length; i++)
+			bldr.append(i == 0 ? "" : ", ").append(peek(i));
+		return bldr.append(']').toString();
+	}
+}
@@ -0,0 +1,76 @@
+package framework.game;
+
+/** Последовательность равновероятных случайных фигур.
+ * Случайные числа вычисляет генератор SplitMix64, все состояние которого - одно число,
+ * поэтому последовательность воспроизводима по зерну и копируется без затрат.
+ *
+ * @author Игорь
+ * @param <S> Тип фигур.
+ */
+public class RandomSequence<S> extends PieceSequence<S>
+{
+	protected final S[] kinds;		// разновидности фигур, не изменять
+	private long        state;		// состояние генератора
+
+	/** Конструирует последовательность с глубиной предпросмотра по умолчанию.
+	 * @param kinds Разновидности фигур, например {@code TetrisPiece.values()}.
+	 * @param seed Зерно генератора.
+	 * @throws NullPointerException разновидности null
+	 * @throws IllegalArgumentException разновидностей нет
+	 */
+	public RandomSequence(S[] kinds, long seed) {
+		this(kinds, seed, DEFAULT_DEPTH);
+	}
+
+	/** Конструирует последовательность.
+	 * @param kinds Разновидности фигур, например {@code TetrisPiece.values()}.
+	 * @param seed Зерно генератора.
+	 * @param depth Глубина предпросмотра.
+	 * @throws NullPointerException разновидности null
+	 * @throws IllegalArgumentException разновидностей нет, глубина < 1
+	 */
+	public RandomSequence(S[] kinds, long seed, int depth) {
+		super(depth);
+		if (kinds.length == 0)
+			throw new IllegalArgumentException("разновидностей нет");
+
+		this.kinds = kinds.clone();
+		this.state = seed;
+	}
+
+	/** Конструирует копию последовательности.
+	 * @param other Оригинал.
+	 */
+	protected RandomSequence(RandomSequence<S> other) {
+		super(other);
+		this.kinds = other.kinds;
+		this.state = other.state;
+	}
+
+	/** {@inheritDoc}
+	 */
+	@Override
+	public RandomSequence<S> snapshot() {
+		return new RandomSequence<>(this);
+	}
+
+	/** {@inheritDoc}
+	 */
+	@Override
+	protected S generate() {
+		return kinds[nextInt(kinds.length)];
+	}
+
+	/** Возвращает следующее случайное число.
+	 * @param bound Граница (0, 2^31).
+	 * @return Число из [0, bound).
+	 */
+	protected int nextInt(int bound) {
+		// SplitMix64
+		long z = (state += 0x9E3779B97F4A7C15L);
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		z = z ^ (z >>> 31);
+		return (int)(((z >>> 32) * bound) >>> 32);
+	}
+}
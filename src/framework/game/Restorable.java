@@ -0,0 +1,35 @@
+package framework.game;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/** Игра, состояние которой можно сохранить и восстановить.
+ * Состояние - все, что нужно, чтобы продолжить игру с того же места так, как она
+ * продолжилась бы без сохранения: матрица, текущая фигура, позиция в последовательности
+ * фигур, счет. Сохраненные состояния служат ключевыми кадрами повторов
+ * ({@link framework.game.replay.ReplayRecorder}) и годятся для автосохранения.
+ *
+ * @author Игорь
+ */
+public interface Restorable
+{
+	/** Сохраняет состояние запущенной игры.
+	 * Вызывайте под блокировкой игры.
+	 * @param out Приемник состояния.
+	 * @throws IOException ошибка записи
+	 * @throws IllegalStateException игра не запущена
+	 */
+	void saveState(DataOutput out) throws IOException;
+
+	/** Восстанавливает состояние в только что запущенной игре.
+	 * Игра должна быть создана так же, как сохраненная, например по тому же зерну:
+	 * состояние последовательности фигур восстанавливается продвижением собственной
+	 * последовательности игры.
+	 * Вызывайте под блокировкой игры.
+	 * @param in Источник состояния.
+	 * @throws IOException ошибка чтения, состояние повреждено
+	 * @throws IllegalStateException игра не запущена либо уже продвинулась
+	 */
+	void restoreState(DataInput in) throws IOException;
+}
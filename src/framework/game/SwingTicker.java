@@ -0,0 +1,54 @@
+package framework.game;
+
+import javax.swing.Timer;
+
+/** Источник тиков на основе таймера Swing.
+ * Тики выполняются в потоке диспетчеризации событий (EDT), как и обработка ввода и
+ * рисование, поэтому медленное рисование задерживает следующий тик. Таймер создается
+ * при первом запуске.
+ * 
+ * @author Игорь
+ */
+public class SwingTicker implements Ticker 
+{
+	private final int period;	// [мс] период тиков
+	private Timer     timer;	// таймер Swing, null - не запускался
+	
+	/** Конструирует источник тиков.
+	 * @param period [мс] Период тиков.
+	 * @throws IllegalArgumentException период < 1
+	 */
+	public SwingTicker(int period) {
+		if (period < 1)
+			throw new IllegalArgumentException("период < 1");
+		this.period = period;
+	}
+	
+	/** {@inheritDoc}
+	 */
+	@Override
+	public void start(Runnable tick) {
+		if (tick == null)
+			throw new NullPointerException();
+		
+		stop();
+		timer = new Timer(period, (e) -> tick.run());
+		timer.setInitialDelay(0);
+		timer.start();
+	}
+
+	/** {@inheritDoc}
+	 */
+	@Override
+	public void stop() {
+		if (timer != null)
+			timer.stop();
+	}
+	
+	/** Возвращает период тиков.
+	 * @return [мс]
+	 */
+	public int getPeriod() {
+		return period;
+	}
+}
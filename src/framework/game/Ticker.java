@@ -0,0 +1,26 @@
+package framework.game;
+
+/** Источник тиков игры.
+ * Периодически вызывает обработчик тика, пока не будет остановлен. Первый тик
+ * выполняется сразу после запуска. Игра сама отвечает за синхронизацию обработчика
+ * с остальными своими методами, поэтому источник может вызывать его из любого потока.
+ * 
+ * @author Игорь
+ * @see SwingTicker
+ * @see GameLoop
+ */
+public interface Ticker 
+{
+	/** Запускает тики.
+	 * Если тики уже идут, они сначала останавливаются.
+	 * @param tick Обработчик тика.
+	 * @throws NullPointerException обработчик null
+	 */
+	void start(Runnable tick);
+	
+	/** Останавливает тики.
+	 * После возврата новые тики не начинаются, однако уже начавшийся в другом потоке
+	 * тик может еще выполняться. Если тики не идут, ничего не делает.
+	 */
+	void stop();
+}
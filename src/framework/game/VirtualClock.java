@@ -0,0 +1,66 @@
+package framework.game;
+
+/** Виртуальные часы - источник тиков, управляемый вызывающим.
+ * Тики выполняются только в {@link #step(int)}, в вызывающем потоке и без задержек,
+ * поэтому игра с такими часами не зависит ни от реального времени, ни от Swing и может
+ * моделироваться на сервере без дисплея во много раз быстрее реального времени.
+ * Тик, который реальный источник выполнил бы сразу после запуска, выполняется первым
+ * шагом.
+ * 
+ * @author Игорь
+ * @see framework.game.Game#step(int)
+ */
+public class VirtualClock implements Ticker 
+{
+	private Runnable tick;		// обработчик тика, null - часы остановлены
+	private long     time;		// число выполненных тиков
+	
+	/** {@inheritDoc}
+	 */
+	@Override
+	public void start(Runnable tick) {
+		if (tick == null)
+			throw new NullPointerException();
+		this.tick = tick;
+	}
+
+	/** {@inheritDoc}
+	 */
+	@Override
+	public void stop() {
+		tick = null;
+	}
+	
+	/** Выполняет тики.
+	 * Останавливается раньше, если часы остановлены во время тика.
+	 * @param n Число тиков.
+	 * @return Число выполненных тиков.
+	 * @throws IllegalArgumentException число тиков < 0
+	 */
+	public int step(int n) {
+		if (n < 0)
+			throw new IllegalArgumentException("число тиков " + n);
+		
+		int count = 0;
+		for (Runnable t = tick; count < n && t != null; t = tick) {
+			t.run();
+			time++;
+			count++;
+		}
+		return count;
+	}
+	
+	/** Проверяет, идут ли часы.
+	 * @return
+	 */
+	public boolean isRunning() {
+		return tick != null;
+	}
+	
+	/** Возвращает виртуальное время.
+	 * @return Число тиков, выполненных с момента создания часов.
+	 */
+	public long getTime() {
+		return time;
+	}
+}
@@ -0,0 +1,23 @@
+package framework.game.replay;
+
+/** Действия игрока, записываемые в повтор.
+ * Порядковый номер константы - код действия в формате повтора, поэтому порядок
+ * констант не менять, новые добавлять только в конец.
+ *
+ * @author Игорь
+ */
+public enum Input
+{
+	/** {@link framework.game.PieceControl#moveLeft()} */
+	LEFT,
+	/** {@link framework.game.PieceControl#moveRight()} */
+	RIGHT,
+	/** {@link framework.game.PieceControl#moveUp()} */
+	UP,
+	/** {@link framework.game.PieceControl#moveDown()} */
+	DOWN,
+	/** {@link framework.game.PieceControl#rotate()} */
+	ROTATE,
+	/** {@link framework.game.PieceControl#place(int)}, с аргументом - размещением */
+	PLACE
+}
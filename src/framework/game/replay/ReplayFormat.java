@@ -0,0 +1,76 @@
+package framework.game.replay;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/** Формат повтора.
+ * Заголовок: сигнатура (4 байта), версия (1 байт), зерно игры (8 байт), ширина и
+ * высота матрицы (varint). Дальше записи, каждая начинается с varint (дельта << 3 | код):
+ * дельта - число тиков гравитации с предыдущей записи, код - действие {@link Input}
+ * либо служебный код. У действия PLACE следует varint размещения. Запись END завершает
+ * повтор, за ней хеш матрицы (8 байт) и число удаленных строк (varint).
+ *
+ * Версия 2 добавляет ключевые кадры и индекс. Запись KEYFRAME - длина (varint) и
+ * сохраненное состояние игры {@link framework.game.Restorable} после всех действий
+ * своего тика. За записью END следует индекс: по 16 байт на кадр - время кадра и
+ * смещение его записи от начала файла, по возрастанию времени. Завершает файл хвост
+ * фиксированной длины {@link #TRAILER}: смещение индекса (8 байт), время окончания
+ * игры (8 байт), число кадров (4 байта) и сигнатура. Версия 1 - без кадров и индекса.
+ *
+ * varint - беззнаковое целое по 7 бит в байте, младшие группы первыми, старший бит
+ * байта - признак продолжения. Многобайтовые числа без varint записываются от старших
+ * байт к младшим.
+ *
+ * @author Игорь
+ */
+final class ReplayFormat
+{
+	static final int  MAGIC   = 0x54525031;	// "TRP1"
+	static final byte VERSION = 2;
+
+	static final int CODE_BITS = 3;			// бит кода в первом varint записи
+	static final int END       = 6;			// код завершения повтора
+	static final int KEYFRAME  = 7;			// код ключевого кадра
+
+	static final int HEADER      = 4 + 1 + 8;		// байт в заголовке до размеров матрицы
+	static final int INDEX_ENTRY = 8 + 8;			// байт на кадр в индексе
+	static final int TRAILER     = 8 + 8 + 4 + 4;	// байт в хвосте
+
+	static final int MAX_RECORD = 10 + 10 + 8;	// байт в самой длинной записи
+
+	private ReplayFormat() {}
+
+	// записывает беззнаковое varint
+	static void putVarLong(ByteBuffer buffer, long value) {
+		while ((value & ~0x7FL) != 0) {
+			buffer.put((byte)(value & 0x7F | 0x80));
+			value >>>= 7;
+		}
+		buffer.put((byte)value);
+	}
+
+	// читает беззнаковое varint
+	static long getVarLong(ByteBuffer buffer) throws IOException {
+		try {
+			long value = 0;
+			for (int shift = 0; shift < Long.SIZE; shift += 7) {
+				byte b = buffer.get();
+				value |= (long)(b & 0x7F) << shift;
+				if (b >= 0)
+					return value;
+			}
+		} catch (BufferUnderflowException e) {
+			throw new IOException("повтор обрывается");
+		}
+		throw new IOException("varint длиннее 10 байт");
+	}
+
+	// читает varint, не превышающее int
+	static int getVarInt(ByteBuffer buffer) throws IOException {
+		long value = getVarLong(buffer);
+		if (value >>> 32 != 0)
+			throw new IOException("значение " + value + " вне int");
+		return (int)value;
+	}
+}
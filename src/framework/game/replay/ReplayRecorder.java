@@ -0,0 +1,288 @@
+package framework.game.replay;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import framework.game.Restorable;
+
+/** Запись повтора игры.
+ * Повтор - зерно игры и действия игрока с отметками времени в тиках гравитации,
+ * см. {@link ReplayFormat}. Время записывается дельтами, так что типичное действие
+ * занимает 1 байт, а тики без действий не занимают места вовсе. Записи накапливаются
+ * в буфере и пишутся в канал NIO крупными блоками.
+ *
+ * Запись ведет игра, которой передан объект записи ({@link framework.game.Game#setRecorder(ReplayRecorder)}):
+ * она вызывает {@link #begin(long, int, int)} при запуске, {@link #tick()} на каждый тик,
+ * {@link #input(Input)} на каждое действие игрока и {@link #finish(long, long)} по окончании.
+ * Игра {@link Restorable} каждые {@link #getKeyframeInterval()} тиков записывает ключевой
+ * кадр - свое полное состояние {@link #keyframe(Restorable)}. Индекс кадров пишется в конец
+ * повтора, по нему {@link ReplayViewer} переходит к любому тику, не воспроизводя повтор
+ * с начала.
+ * Методы записи не выбрасывают IOException: первая ошибка ввода-вывода запоминается,
+ * дальнейшая запись прекращается, а ошибка выбрасывается при закрытии {@link #close()}.
+ *
+ * @author Игорь
+ */
+public class ReplayRecorder implements Closeable
+{
+	/** Период ключевых кадров по умолчанию [тиков]. */
+	public static final long DEFAULT_KEYFRAME_INTERVAL = 600;
+	
+	private static final int BUFFER_SIZE = 8192;	// [байт] размер буфера записи
+
+	private final WritableByteChannel channel;	// канал повтора
+	private final ByteBuffer buffer;			// буфер записи
+	private long         time;					// число записанных тиков
+	private long         last;					// время последней записи
+	private boolean      begun;					// признак "заголовок записан"
+	private boolean      finished;				// признак "повтор завершен"
+	private IOException  error;					// первая ошибка ввода-вывода
+	private long         written;				// [байт] передано в канал
+	private long         keyframeInterval;		// [тиков] период ключевых кадров, 0 - нет
+	private long         lastKeyframe;			// время последнего кадра
+	private long[]       index;					// [кадр * 2] время и смещение кадра
+	private int          keyframes;				// число кадров
+	private final ByteArrayOutputStream state;	// буфер состояния кадра
+	private final DataOutputStream stateOut;	// запись состояния в буфер
+
+	/** Конструирует запись в файл.
+	 * Файл создается либо перезаписывается.
+	 * @param file Путь к файлу повтора.
+	 * @throws IOException не удалось открыть файл
+	 */
+	public ReplayRecorder(Path file) throws IOException {
+		this(FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+		  StandardOpenOption.TRUNCATE_EXISTING));
+	}
+
+	/** Конструирует запись в канал.
+	 * @param channel Канал повтора, закрывается вместе с записью.
+	 * @throws NullPointerException канал null
+	 */
+	public ReplayRecorder(WritableByteChannel channel) {
+		if (channel == null)
+			throw new NullPointerException();
+
+		this.channel = channel;
+		this.buffer = ByteBuffer.allocate(BUFFER_SIZE);
+		this.keyframeInterval = DEFAULT_KEYFRAME_INTERVAL;
+		this.index = new long[32];
+		this.state = new ByteArrayOutputStream(256);
+		this.stateOut = new DataOutputStream(state);
+	}
+	
+	/** Возвращает период ключевых кадров.
+	 * @return [тиков] 0 - кадры не записываются.
+	 */
+	public long getKeyframeInterval() {
+		return keyframeInterval;
+	}
+	
+	/** Устанавливает период ключевых кадров.
+	 * Чем чаще кадры, тем быстрее переход к произвольному тику и тем больше повтор.
+	 * @param ticks Период [тиков], 0 - не записывать кадры.
+	 * @throws IllegalArgumentException период < 0
+	 */
+	public void setKeyframeInterval(long ticks) {
+		if (ticks < 0)
+			throw new IllegalArgumentException("период " + ticks);
+		this.keyframeInterval = ticks;
+	}
+
+	/** Начинает повтор: записывает заголовок.
+	 * @param seed Зерно игры.
+	 * @param width Ширина матрицы.
+	 * @param height Высота матрицы.
+	 * @throws IllegalStateException повтор уже начат
+	 */
+	public void begin(long seed, int width, int height) {
+		if (begun)
+			throw new IllegalStateException("повтор уже начат");
+
+		begun = true;
+		buffer.putInt(ReplayFormat.MAGIC);
+		buffer.put(ReplayFormat.VERSION);
+		buffer.putLong(seed);
+		ReplayFormat.putVarLong(buffer, width);
+		ReplayFormat.putVarLong(buffer, height);
+	}
+
+	/** Отмечает тик гравитации.
+	 * Вызывается до обработки тика игрой.
+	 */
+	public void tick() {
+		time++;
+	}
+
+	/** Проверяет, пора ли записать ключевой кадр.
+	 * @return true, если с последнего кадра прошел период.
+	 */
+	public boolean isKeyframeDue() {
+		return keyframeInterval > 0 && begun && !finished && time - lastKeyframe >= keyframeInterval;
+	}
+	
+	/** Записывает ключевой кадр - состояние игры после всех действий текущего тика.
+	 * Вызывается до {@link #tick()} следующего тика.
+	 * @param game Игра.
+	 * @throws IllegalStateException повтор не начат или завершен
+	 */
+	public void keyframe(Restorable game) {
+		state.reset();
+		try {
+			game.saveState(stateOut);
+		} catch (IOException e) {
+			throw new IllegalStateException(e);		// в память пишется без ошибок
+		}
+		
+		long offset = written + buffer.position();
+		record(ReplayFormat.KEYFRAME);
+		ReplayFormat.putVarLong(buffer, state.size());
+		if (buffer.remaining() < state.size())
+			flush();
+		if (buffer.remaining() >= state.size())
+			buffer.put(state.toByteArray());
+		else
+			write(ByteBuffer.wrap(state.toByteArray()));
+		
+		if (index.length < 2 * keyframes + 2)
+			index = Arrays.copyOf(index, index.length * 2);
+		index[2 * keyframes] = time;
+		index[2 * keyframes + 1] = offset;
+		keyframes++;
+		lastKeyframe = time;
+	}
+	
+	/** Записывает действие игрока.
+	 * @param input Действие без аргумента.
+	 * @throws IllegalStateException повтор не начат или завершен
+	 * @throws IllegalArgumentException действие с аргументом
+	 */
+	public void input(Input input) {
+		if (input == Input.PLACE)
+			throw new IllegalArgumentException("действие с аргументом");
+		record(input.ordinal());
+	}
+
+	/** Записывает действие игрока с аргументом.
+	 * @param input Действие.
+	 * @param arg Аргумент действия.
+	 * @throws IllegalStateException повтор не начат или завершен
+	 * @throws IllegalArgumentException действие без аргумента
+	 */
+	public void input(Input input, int arg) {
+		if (input != Input.PLACE)
+			throw new IllegalArgumentException("действие без аргумента");
+		record(input.ordinal());
+		ReplayFormat.putVarLong(buffer, arg & 0xFFFFFFFFL);
+	}
+
+	/** Завершает повтор: записывает итог игры, индекс кадров и сбрасывает буфер в канал.
+	 * Канал не закрывается.
+	 * @param hash Хеш матрицы по окончании игры.
+	 * @param lines Число удаленных строк.
+	 * @throws IllegalStateException повтор не начат или завершен
+	 */
+	public void finish(long hash, long lines) {
+		record(ReplayFormat.END);
+		buffer.putLong(hash);
+		ReplayFormat.putVarLong(buffer, lines);
+		
+		long indexOffset = written + buffer.position();
+		for (int i = 0; i < keyframes; i++) {
+			if (buffer.remaining() < ReplayFormat.INDEX_ENTRY)
+				flush();
+			buffer.putLong(index[2 * i]);
+			buffer.putLong(index[2 * i + 1]);
+		}
+		if (buffer.remaining() < ReplayFormat.TRAILER)
+			flush();
+		buffer.putLong(indexOffset);
+		buffer.putLong(time);
+		buffer.putInt(keyframes);
+		buffer.putInt(ReplayFormat.MAGIC);
+		finished = true;
+		flush();
+	}
+
+	/** Проверяет, завершен ли повтор.
+	 * @return
+	 */
+	public boolean isFinished() {
+		return finished;
+	}
+
+	/** Возвращает число записанных ключевых кадров.
+	 * @return
+	 */
+	public int getKeyframeCount() {
+		return keyframes;
+	}
+	
+	/** Возвращает число записанных тиков.
+	 * @return
+	 */
+	public long getTime() {
+		return time;
+	}
+
+	/** Возвращает первую ошибку ввода-вывода.
+	 * @return null, если ошибок не было.
+	 */
+	public IOException getError() {
+		return error;
+	}
+
+	/** Сбрасывает буфер и закрывает канал.
+	 * Незавершенный повтор остается незавершенным и не воспроизводится.
+	 * @throws IOException ошибка записи или закрытия, в том числе запомненная
+	 */
+	@Override
+	public void close() throws IOException {
+		flush();
+		try {
+			channel.close();
+		} catch (IOException e) {
+			if (error == null)
+				error = e;
+		}
+		if (error != null)
+			throw error;
+	}
+
+	// начинает запись с дельтой времени, освобождая место в буфере
+	private void record(int code) {
+		if (!begun || finished)
+			throw new IllegalStateException(begun ? "повтор завершен" : "повтор не начат");
+
+		if (buffer.remaining() < ReplayFormat.MAX_RECORD)
+			flush();
+		ReplayFormat.putVarLong(buffer, (time - last) << ReplayFormat.CODE_BITS | code);
+		last = time;
+	}
+
+	// пишет содержимое буфера в канал
+	private void flush() {
+		buffer.flip();
+		write(buffer);
+		buffer.clear();
+	}
+	
+	// пишет данные в канал; после ошибки данные отбрасываются
+	private void write(ByteBuffer data) {
+		written += data.remaining();
+		try {
+			while (error == null && data.hasRemaining())
+				channel.write(data);
+		} catch (IOException e) {
+			error = e;
+		}
+	}
+}
@@ -0,0 +1,231 @@
+package framework.game.replay;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.LongFunction;
+
+import framework.game.Game;
+import framework.game.Restorable;
+import framework.game.VirtualClock;
+
+/** Просмотр повтора с переходом к произвольному тику.
+ * Файл повтора отображается в память целиком, при открытии читаются только заголовок
+ * и хвост, поэтому открытие не зависит от длины повтора. Переход {@link #seek(long)}
+ * ищет двоичным поиском по индексу ближайший предшествующий ключевой кадр, восстанавливает
+ * из него игру и воспроизводит оставшиеся действия. Переход вперед в пределах
+ * того же кадра продолжает воспроизведение с текущей позиции.
+ *
+ * Игра просмотра принадлежит просмотру: не модифицируйте ее, иначе следующие переходы
+ * разойдутся с записью. Просмотр не синхронизирован.
+ *
+ * @author Игорь
+ * @param <G> Тип игры.
+ */
+public class ReplayViewer<G extends Game<?, ?> & Restorable> implements Closeable
+{
+	private final FileChannel channel;			// канал файла повтора
+	private final ByteBuffer  file;				// отображение файла
+	private final LongFunction<? extends G> games;	// фабрика игр по зерну
+	private final long        seed;				// зерно игры
+	private final int         width, height;	// размеры матрицы
+	private final int         start;			// смещение первой записи
+	private final int         index;			// смещение индекса кадров
+	private final int         keyframes;		// число кадров
+	private final long        duration;			// время окончания игры
+
+	// текущая позиция
+	private G          game;		// игра в текущей позиции, null - нет
+	private ByteBuffer records;		// записи, позиция - следующая запись
+	private long       time;		// текущий тик
+	private long       last;		// время последней прочитанной записи
+	private boolean    ended;		// признак "запись завершения прочитана"
+
+	/** Открывает повтор.
+	 * @param file Путь к файлу повтора версии 2 и выше.
+	 * @param games Фабрика игр по зерну.
+	 * @throws IOException ошибка чтения, файл не повтор, повтор без индекса, файл больше 2 Гб
+	 * @throws NullPointerException аргументы null
+	 */
+	public ReplayViewer(Path file, LongFunction<? extends G> games) throws IOException {
+		if (games == null)
+			throw new NullPointerException();
+		
+		this.games = games;
+		this.channel = FileChannel.open(file, StandardOpenOption.READ);
+		try {
+			long size = channel.size();
+			if (size > Integer.MAX_VALUE)
+				throw new IOException("файл " + size + " байт");
+			this.file = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+			
+			ByteBuffer header = this.file.duplicate();
+			if (size < ReplayFormat.HEADER + ReplayFormat.TRAILER || header.getInt() != ReplayFormat.MAGIC)
+				throw new IOException("не повтор");
+			byte version = header.get();
+			if (version < 2 || version > ReplayFormat.VERSION)
+				throw new IOException("версия повтора " + version + " без индекса");
+			this.seed = header.getLong();
+			this.width = ReplayFormat.getVarInt(header);
+			this.height = ReplayFormat.getVarInt(header);
+			this.start = header.position();
+			
+			int trailer = (int)size - ReplayFormat.TRAILER;
+			long offset = this.file.getLong(trailer);
+			this.duration = this.file.getLong(trailer + 8);
+			this.keyframes = this.file.getInt(trailer + 16);
+			if (this.file.getInt(trailer + 20) != ReplayFormat.MAGIC || keyframes < 0 ||
+			  offset != trailer - (long)keyframes * ReplayFormat.INDEX_ENTRY || offset < start || duration < 0)
+				throw new IOException("повтор не завершен или поврежден");
+			this.index = (int)offset;
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/** Возвращает время окончания записанной игры.
+	 * @return [тиков]
+	 */
+	public long getDuration() {
+		return duration;
+	}
+
+	/** Возвращает число ключевых кадров.
+	 * @return
+	 */
+	public int getKeyframeCount() {
+		return keyframes;
+	}
+
+	/** Возвращает время ключевого кадра.
+	 * @param i Номер кадра.
+	 * @return [тиков]
+	 * @throws IndexOutOfBoundsException номер вне [0, число кадров)
+	 */
+	public long getKeyframeTime(int i) {
+		if (i < 0 || i >= keyframes)
+			throw new IndexOutOfBoundsException("номер " + i);
+		return file.getLong(index + i * ReplayFormat.INDEX_ENTRY);
+	}
+
+	/** Возвращает текущий тик.
+	 * @return [тиков] 0 - переходов не было.
+	 */
+	public long getTime() {
+		return time;
+	}
+
+	/** Возвращает игру в текущей позиции.
+	 * @return null, если переходов не было.
+	 */
+	public G getGame() {
+		return game;
+	}
+
+	/** Переходит к тику.
+	 * Игра в позиции тика - после тика и всех действий игрока до следующего тика.
+	 * @param tick Тик, больше времени окончания - окончание.
+	 * @return Игра в позиции тика.
+	 * @throws IOException повтор поврежден или не соответствует игре фабрики
+	 * @throws IllegalArgumentException тик < 0
+	 */
+	public G seek(long tick) throws IOException {
+		if (tick < 0)
+			throw new IllegalArgumentException("тик " + tick);
+		tick = Math.min(tick, duration);
+		
+		// последний кадр не позже тика
+		int lo = 0, hi = keyframes - 1, k = -1;
+		while (lo <= hi) {
+			int mid = (lo + hi) >>> 1;
+			if (getKeyframeTime(mid) <= tick) {
+				k = mid;
+				lo = mid + 1;
+			}
+			else
+				hi = mid - 1;
+		}
+		long from = k < 0 ? 0 : getKeyframeTime(k);
+		if (game == null || time > tick || time < from)
+			restart(k);
+		
+		while (!ended) {
+			int mark = records.position();
+			long head = ReplayFormat.getVarLong(records);
+			long at = last + (head >>> ReplayFormat.CODE_BITS);
+			int code = (int)head & (1 << ReplayFormat.CODE_BITS) - 1;
+			if (at > tick) {
+				records.position(mark);
+				break;
+			}
+			advance(at);
+			last = at;
+			if (code == ReplayFormat.END)
+				ended = true;
+			else if (code == ReplayFormat.KEYFRAME)
+				Replayer.skip(records, ReplayFormat.getVarInt(records));
+			else
+				Replayer.apply(game, code, records);
+		}
+		advance(tick);
+		return game;
+	}
+
+	/** Закрывает файл повтора.
+	 * @throws IOException ошибка закрытия
+	 */
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	// создает игру заново из кадра k, -1 - с начала повтора
+	private void restart(int k) throws IOException {
+		game = games.apply(seed);
+		if (width != game.getMatrix().getWidth() || height != game.getMatrix().getHeight())
+			throw new IOException(String.format("размеры матрицы повтора %dx%d", width, height));
+		game.setTicker(new VirtualClock());
+		game.start();
+		
+		records = file.duplicate();
+		ended = false;
+		if (k < 0) {
+			records.position(start);
+			time = last = 0;
+			return;
+		}
+		
+		long offset = file.getLong(index + k * ReplayFormat.INDEX_ENTRY + 8);
+		if (offset < start || offset >= index)
+			throw new IOException("смещение кадра " + offset);
+		records.position((int)offset);
+		long head = ReplayFormat.getVarLong(records);
+		if (((int)head & (1 << ReplayFormat.CODE_BITS) - 1) != ReplayFormat.KEYFRAME)
+			throw new IOException("по смещению " + offset + " не кадр");
+		byte[] state = new byte[ReplayFormat.getVarInt(records)];
+		if (state.length > records.remaining())
+			throw new IOException("повтор обрывается");
+		records.get(state);
+		game.restoreState(new DataInputStream(new ByteArrayInputStream(state)));
+		time = last = getKeyframeTime(k);
+	}
+
+	// продвигает игру до тика
+	private void advance(long tick) {
+		while (time < tick) {
+			int n = (int)Math.min(tick - time, Integer.MAX_VALUE);
+			int done = game.step(n);
+			time += n;
+			if (done < n) {		// игра окончена, дальше время идет без нее
+				time = tick;
+				return;
+			}
+		}
+	}
+}
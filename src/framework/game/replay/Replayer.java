@@ -0,0 +1,164 @@
+package framework.game.replay;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.LongFunction;
+
+import framework.game.Game;
+import framework.game.VirtualClock;
+
+/** Воспроизведение повторов без дисплея.
+ * Игра создается фабрикой по зерну из повтора и проигрывается на виртуальных часах
+ * {@link VirtualClock} с максимальной скоростью: между действиями часы продвигаются
+ * сразу на записанное число тиков. Проверка повтора {@link #verify(ByteBuffer)} сравнивает
+ * итог воспроизведения - время окончания, хеш матрицы и число удаленных строк - с
+ * записанным.
+ *
+ * Фабрика должна создавать игру так же, как была создана записанная, например
+ * {@code Tetris::new} для игр, сконструированных по зерну. Объект воспроизведения
+ * не синхронизирован, каждому потоку нужен свой.
+ *
+ * @author Игорь
+ * @param <G> Тип игры.
+ */
+public class Replayer<G extends Game<?, ?>>
+{
+	private final LongFunction<? extends G> games;	// фабрика игр по зерну
+	private long    expectedHash;		// записанный хеш матрицы
+	private long    expectedLines;		// записанное число удаленных строк
+	private boolean diverged;			// признак "игра закончилась раньше записанной"
+
+	/** Конструирует воспроизведение.
+	 * @param games Фабрика игр по зерну.
+	 * @throws NullPointerException фабрика null
+	 */
+	public Replayer(LongFunction<? extends G> games) {
+		if (games == null)
+			throw new NullPointerException();
+		this.games = games;
+	}
+
+	/** Читает файл повтора целиком.
+	 * @param file Путь к файлу.
+	 * @return Буфер с содержимым файла, готовый к чтению.
+	 * @throws IOException ошибка чтения, файл больше 2 Гб
+	 */
+	public static ByteBuffer read(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			long size = channel.size();
+			if (size > Integer.MAX_VALUE)
+				throw new IOException("файл " + size + " байт");
+			ByteBuffer buffer = ByteBuffer.allocate((int)size);
+			while (buffer.hasRemaining())
+				if (channel.read(buffer) < 0)
+					throw new IOException("файл обрывается");
+			buffer.flip();
+			return buffer;
+		}
+	}
+
+	/** Воспроизводит повтор.
+	 * @param replay Повтор от текущей позиции буфера, позиция продвигается за итог игры.
+	 * @return Игра в состоянии по окончании повтора, остановленная.
+	 * @throws IOException повтор поврежден или не соответствует игре фабрики
+	 */
+	public G play(ByteBuffer replay) throws IOException {
+		G game = create(replay, games);
+		game.setTicker(new VirtualClock());
+		game.start();
+		diverged = false;
+		for (;;) {
+			long head = ReplayFormat.getVarLong(replay);
+			long delta = head >>> ReplayFormat.CODE_BITS;
+			int code = (int)head & (1 << ReplayFormat.CODE_BITS) - 1;
+			advance(game, delta);
+
+			if (code == ReplayFormat.END) {
+				if (replay.remaining() < Long.BYTES)
+					throw new IOException("повтор обрывается");
+				expectedHash = replay.getLong();
+				expectedLines = ReplayFormat.getVarLong(replay);
+				break;
+			}
+			if (code == ReplayFormat.KEYFRAME) {
+				skip(replay, ReplayFormat.getVarInt(replay));	// для перехода, не для проверки
+				continue;
+			}
+			apply(game, code, replay);
+		}
+		if (game.getState() != Game.State.NOT_STARTED)
+			game.stop();
+		return game;
+	}
+
+	/** Проверяет повтор.
+	 * @param replay Повтор от текущей позиции буфера, позиция продвигается за итог игры.
+	 * @return true, если итог воспроизведения совпадает с записанным.
+	 * @throws IOException повтор поврежден или не соответствует игре фабрики
+	 */
+	public boolean verify(ByteBuffer replay) throws IOException {
+		G game = play(replay);
+		return !diverged && game.getMatrix().stateHash() == expectedHash && game.getLines() == expectedLines;
+	}
+
+	/** Проверяет файл повтора.
+	 * @param file Путь к файлу.
+	 * @return true, если итог воспроизведения совпадает с записанным.
+	 * @throws IOException ошибка чтения, повтор поврежден или не соответствует игре фабрики
+	 * @see #verify(ByteBuffer)
+	 */
+	public boolean verify(Path file) throws IOException {
+		return verify(read(file));
+	}
+
+	// читает заголовок повтора и создает по нему игру
+	static <G extends Game<?, ?>> G create(ByteBuffer replay, LongFunction<? extends G> games) throws IOException {
+		if (replay.remaining() < ReplayFormat.HEADER || replay.getInt() != ReplayFormat.MAGIC)
+			throw new IOException("не повтор");
+		byte version = replay.get();
+		if (version < 1 || version > ReplayFormat.VERSION)
+			throw new IOException("версия повтора " + version);
+
+		G game = games.apply(replay.getLong());
+		int width = ReplayFormat.getVarInt(replay), height = ReplayFormat.getVarInt(replay);
+		if (width != game.getMatrix().getWidth() || height != game.getMatrix().getHeight())
+			throw new IOException(String.format("размеры матрицы повтора %dx%d", width, height));
+		return game;
+	}
+	
+	// выполняет действие игрока, аргумент читается из повтора
+	static void apply(Game<?, ?> game, int code, ByteBuffer replay) throws IOException {
+		if (code >= Input.values().length)
+			throw new IOException("код записи " + code);
+		switch (Input.values()[code]) {
+			case LEFT:   game.moveLeft();	break;
+			case RIGHT:  game.moveRight();	break;
+			case UP:     game.moveUp();		break;
+			case DOWN:   game.moveDown();	break;
+			case ROTATE: game.rotate();		break;
+			case PLACE:  game.place(ReplayFormat.getVarInt(replay));	break;
+		}
+	}
+	
+	// пропускает байты повтора
+	static void skip(ByteBuffer replay, int length) throws IOException {
+		if (length > replay.remaining())
+			throw new IOException("повтор обрывается");
+		replay.position(replay.position() + length);
+	}
+
+	// продвигает часы игры, отмечая расхождение, если игра закончилась раньше
+	private void advance(G game, long ticks) {
+		while (ticks > 0) {
+			int n = (int)Math.min(ticks, Integer.MAX_VALUE);
+			if (game.step(n) < n) {
+				diverged = true;
+				return;
+			}
+			ticks -= n;
+		}
+	}
+}
@@ -2,7 +2,6 @@ package framework.matrix.model.array;
 
 import java.awt.Dimension;
 import java.awt.Point;
-import java.lang.reflect.Array;
 import java.util.*;
 
 /** Адаптер 2D массива, основа иерархии модели Матрицы.
@@ -10,9 +9,10 @@ import java.util.*;
  *  оптимизирует отправку слушателям событий
  *  осуществляет переход от задания элементов индексами к координатам Point
  *  
- * Прямоугольный массив фиксированной структуры. Для создания и работы с массивом используются 
- * механизмы рефлексии. Тип элементов произвольный, однако рекомендуется перечисление
- * или неизменяемый.
+ * Прямоугольный массив фиксированной структуры. Элементы хранятся в подменяемом
+ * хранилище {@link Storage}, по умолчанию выбираемом по типу элементов: для перечислений
+ * это коды порядковых номеров в массиве byte/short, для остальных массив ссылок.
+ * Тип элементов произвольный, однако рекомендуется перечисление или неизменяемый.
  *  
  * Операция чтения выполняется в методе {@link #get(Point)}, операция записи в
  * {@link #set(Point, Object)}. Это атомарные действия, к их выполнению сводятся
@@ -22,7 +22,30 @@ import java.util.*;
  * слушатели изменений получают объект {@link ElementsChangeEvent} с индексами
  * измененных элементов. Если установлен флаг немедленного уведомления слушателей.
  * В противном случае, изменения только запоминаются до момента установки флага вновь.
- * Это и есть оптимизация.
+ * Это и есть оптимизация. Журнал изменений - битовая карта измененных элементов
+ * {@link CellSet} и снимок их исходных значений в хранилище того же типа, что и
+ * основное, поэтому поиск взаимных компенсаций линеен и почти не создает объектов.
+ * 
+ * Если слушателей нет, события не создаются вовсе. Если установлен флаг повторного
+ * использования событий {@link #setReusingEvents(boolean)}, все уведомления отправляют
+ * один и тот же объект события, и путь уведомления не создает объектов. Такое событие
+ * действительно только во время обработки. Изменение массива из обработчика события
+ * безопасно: вложенные уведомления получают новые объекты событий.
+ * 
+ * Массив может вести хеш Зобриста своего состояния {@link #setHashing(boolean)}: каждой
+ * паре (ячейка, значение) сопоставлен фиксированный 64-битный ключ, хеш - это XOR ключей
+ * всех непустых элементов. Каждое фактическое изменение обновляет его за O(1), в том числе
+ * внутри серии модификаций, поэтому {@link #stateHash()} всегда соответствует текущему
+ * содержимому, а взаимно компенсированные изменения возвращают прежний хеш. Ключи не
+ * зависят от экземпляра: одинаковые массивы одинаковых размеров имеют одинаковый хеш.
+ * Ключ перечисления вычисляется по порядковому номеру константы, поэтому хеш одинаков и
+ * в разных запусках JVM. Ключ прочих элементов вычисляется по hashCode(), и для
+ * воспроизводимого хеша он должен быть стабильным (не хешем идентичности).
+ * 
+ * Копия массива {@link #fork()} независима от оригинала, но создается за время, пропорциональное
+ * числу строк: хранилище копирует строки при записи, поэтому неизмененные строки остаются
+ * общими. Слушатели и журнал текущей серии не копируются. Снимок {@link #snapshot()} - копия,
+ * запрещающая модификации.
  * 
  * Для задания элемента используются объекты Point, вместо размерностей - Dimension.
  * Ошибка выхода ArrayIndexOutOfBounds заменена на OutOfBounds. Более ничего не напоминает
@@ -32,12 +55,22 @@ import java.util.*;
  */
 public class ArrayAdapter<E> extends ChangeListened
 {     
-	private Object      array;           	// 2D массив элементов
-	private Class<E>    elemType;        	// описывает тип элементов
+	private final Storage<E> storage;		// хранилище элементов
+	private final Class<E>   elemType;     	// описывает тип элементов
+	private final int        width;			// ширина массива
+	private final int        height;		// высота массива
 	private boolean     firingImmediately;	// флаг немедленного уведомления слушателей
 											//  в случае фактического изменения элемента
-	private Set<Point> 	modifiedCells;    	// индексы измененных элементов
-	private List<E>     initialElems;     	// исходные значения этих элементов    
+	private final CellSet    modifiedCells;	// индексы измененных элементов
+	private final Storage<E> initialElems;	// исходные значения этих элементов    
+	private boolean     reusingEvents;		// флаг повторного использования объекта события
+	private ElementsChangeEvent reusableEvent;	// повторно используемое событие
+	private int         dispatchDepth;		// глубина вложенности уведомлений
+	private Object[]    rowElems;			// прежние значения элементов изменяемой строки
+	private int[]       rowChanges;			// абсциссы фактически изменяемых элементов строки
+	private boolean     hashing;			// флаг ведения хеша состояния
+	private long        stateHash;			// хеш Зобриста состояния
+	private boolean     readOnly;			// признак "снимок только для чтения"
   
 	/** Конструирует адаптера заданных размеров.
 	 * Позже их изменить нельзя.
@@ -48,16 +81,89 @@ public class ArrayAdapter<E> extends ChangeListened
 	 * @throws IllegalArgumentException описывается примитив, размеры < 1x1
 	 */
 	public ArrayAdapter(Class<E> elemType, Dimension size) {
+		this(elemType, Storage.create(elemType, size));
+	}
+	
+	/** Конструирует адаптера поверх заданного хранилища.
+	 * Размеры массива определяются хранилищем, позже их изменить нельзя.
+	 * Флаг немедленного уведомления слушателей установлен.
+	 * @param elemType Описывает тип элементов.
+	 * @param storage Хранилище элементов, все элементы должны быть null.
+	 * @throws NullPointerException аргументы null
+	 * @throws IllegalArgumentException описывается примитив, размеры < 1x1
+	 */
+	public ArrayAdapter(Class<E> elemType, Storage<E> storage) {
 		if (elemType.isPrimitive())
 			throw new IllegalArgumentException("примитивный тип");
-       	if (size.width < 1 || size.height < 1)
+       	if (storage.getWidth() < 1 || storage.getHeight() < 1)
        		throw new IllegalArgumentException("размеры < 1x1");
          
+       	this.storage = storage;
        	this.elemType = elemType;
-       	this.array = Array.newInstance(elemType, size.height, size.width); 
+       	this.width = storage.getWidth();
+       	this.height = storage.getHeight();
        	this.firingImmediately = true;
-       	this.modifiedCells = new LinkedHashSet<>();
-       	this.initialElems = new ArrayList<>();  
+       	this.modifiedCells = new CellSet(width, height);
+       	this.initialElems = Storage.create(elemType, new Dimension(width, height));  
+	}
+	
+	/** Конструирует копию адаптера.
+	 * Хранилище копируется {@link Storage#fork()}, строки разделяются с оригиналом до
+	 * первой записи. Слушатели и журнал текущей серии оригинала не копируются, флаг
+	 * немедленного уведомления слушателей установлен. Флаги повторного использования событий
+	 * и ведения хеша копируются.
+	 * @param original Копируемый адаптер.
+	 * @throws NullPointerException оригинал null
+	 * @throws UnsupportedOperationException хранилище не поддерживает копирование
+	 */
+	protected ArrayAdapter(ArrayAdapter<E> original) {
+		this.storage = original.storage.fork();
+		this.elemType = original.elemType;
+		this.width = original.width;
+		this.height = original.height;
+		this.firingImmediately = true;
+		this.modifiedCells = new CellSet(width, height);
+		this.initialElems = original.initialElems.fork();	// содержимое вне журнала не важно
+		setReusingEvents(original.reusingEvents);
+		this.hashing = original.hashing;
+		this.stateHash = original.stateHash;
+	}
+	
+	/** Создает независимую копию массива.
+	 * Время создания пропорционально числу строк, неизмененные строки разделяются
+	 * копиями. Слушатели не копируются.
+	 * @return Копия с теми же элементами.
+	 * @throws UnsupportedOperationException хранилище не поддерживает копирование
+	 */
+	public ArrayAdapter<E> fork() {
+		return new ArrayAdapter<>(this);
+	}
+	
+	/** Создает снимок массива - копию только для чтения.
+	 * Модифицирующие действия снимка выбрасывают UnsupportedOperationException.
+	 * @return Снимок с теми же элементами.
+	 * @throws UnsupportedOperationException хранилище не поддерживает копирование
+	 * @see #fork()
+	 */
+	public ArrayAdapter<E> snapshot() {
+		ArrayAdapter<E> snapshot = fork();
+		snapshot.markReadOnly();
+		return snapshot;
+	}
+	
+	/** Делает массив снимком только для чтения.
+	 * Используется наследниками для построения снимка из типизированной копии.
+	 * @see #snapshot()
+	 */
+	protected void markReadOnly() {
+		readOnly = true;
+	}
+	
+	/** Проверяет, является ли массив снимком только для чтения.
+	 * @return
+	 */
+	public boolean isReadOnly() {
+		return readOnly;
 	}
    
 	/** Возвращает элемент массива.
@@ -68,13 +174,20 @@ public class ArrayAdapter<E> extends ChangeListened
 	 * @throws OutOfBoundsException координаты выходят за границы
 	 */
 	public E get(Point cell) {
-		try {
-			Object line = Array.get(array, cell.y);
-			Object elem = Array.get(line, cell.x);
-			return elemType.cast(elem);
-		} catch (ArrayIndexOutOfBoundsException e) {
-			throw new OutOfBoundsException(cell);
-		}
+		return get(cell.x, cell.y);
+	}
+	
+	/** Возвращает элемент массива.
+	 * Атомарное не модифицирующее действие.
+	 * @param x Абсцисса элемента.
+	 * @param y Ордината элемента.
+	 * @return Значение элемента.
+	 * @throws OutOfBoundsException координаты выходят за границы
+	 */
+	public E get(int x, int y) {
+		if (x < 0 || x >= width || y < 0 || y >= height)
+			throw new OutOfBoundsException(x, y);
+		return storage.get(x, y);
 	}
    
 	/** Устанавливает элемент массива.
@@ -86,24 +199,169 @@ public class ArrayAdapter<E> extends ChangeListened
 	 * @throws OutOfBoundsException координаты выходят за границы
 	 */
 	protected E set(Point cell, E elem) {
-		try {
-			Object line = Array.get(array, cell.y);
-			E oldElem = elemType.cast(Array.get(line, cell.x));
-			if (!Objects.equals(oldElem, elem)) {
-				Array.set(line, cell.x, elem);
-				if (firingImmediately) {
-					fireStateChanged(new ElementsChangeEvent(this, new Point(cell)));
+		return set(cell.x, cell.y, elem);
+	}
+	
+	/** Устанавливает элемент массива.
+	 * Атомарное модифицирующее действие.
+	 * @param x Абсцисса элемента.
+	 * @param y Ордината элемента.
+	 * @param elem Новое значение элемента.
+	 * @return Старое значение элемента.
+	 * @throws OutOfBoundsException координаты выходят за границы
+	 * @throws UnsupportedOperationException элемент не может быть изменен, см.
+	 * {@link #checkModifiable(int, int)}, массив только для чтения
+	 */
+	protected E set(int x, int y, E elem) {
+		if (x < 0 || x >= width || y < 0 || y >= height)
+			throw new OutOfBoundsException(x, y);
+		checkWritable();
+		checkModifiable(x, y);
+		
+		E oldElem = storage.get(x, y);
+		if (!Objects.equals(oldElem, elem)) {
+			storage.set(x, y, elem);
+			if (hashing)
+				stateHash ^= hashKey(x, y, oldElem) ^ hashKey(x, y, elem);
+			onElementChanged(x, y, oldElem, elem);
+			if (firingImmediately) {
+				if (hasChangeListeners()) {
+					ElementsChangeEvent e = obtainEvent();
+					e.addCell(x, y);
+					fireElementsChanged(e);
 				}
-				else if (modifiedCells.add(new Point(cell))) {
-					initialElems.add(oldElem);
-				}     
 			}
-			return oldElem;
-		} catch (ArrayIndexOutOfBoundsException e) {
-			throw new OutOfBoundsException(cell);
+			else if (modifiedCells.add(x, y)) {
+				initialElems.set(x, y, oldElem);
+			}     
 		}
+		return oldElem;
 	}    
 
+	/** Обработчик фактического изменения элемента.
+	 * Вызывается после записи нового значения, но до уведомления слушателей, поэтому
+	 * производные структуры данных, поддерживаемые подклассом, к моменту уведомления
+	 * уже согласованы с массивом. Заглушка, переопределите при необходимости.
+	 * @param x Абсцисса элемента.
+	 * @param y Ордината элемента.
+	 * @param oldElem Старое значение элемента.
+	 * @param newElem Новое значение элемента.
+	 */
+	protected void onElementChanged(int x, int y, E oldElem, E newElem) {}
+	
+	/** Проверяет, может ли элемент быть изменен.
+	 * Вызывается каждым модифицирующим действием до каких-либо изменений.
+	 * Заглушка, разрешающая любые изменения, переопределите при необходимости.
+	 * @param x Абсцисса элемента, в границах массива.
+	 * @param y Ордината элемента, в границах массива.
+	 * @throws UnsupportedOperationException элемент не может быть изменен
+	 */
+	protected void checkModifiable(int x, int y) {}
+	
+	/** Копирует строку массива в другую строку.
+	 * Модифицирующее действие над строкой целиком: элементы копируются хранилищем за
+	 * одну операцию, а проверка {@link #checkModifiable(int, int)}, обработчик
+	 * {@link #onElementChanged(int, int, Object, Object)} и журнал касаются только фактически
+	 * изменяемых элементов. Слушатели получают не более 1 события.
+	 * @param fromY Ордината копируемой строки.
+	 * @param toY Ордината изменяемой строки.
+	 * @throws OutOfBoundsException ординаты выходят за границы
+	 * @throws UnsupportedOperationException элемент не может быть изменен,
+	 * строка не изменяется; массив только для чтения
+	 */
+	protected void copyRow(int fromY, int toY) {
+		checkRow(fromY);
+		checkRow(toY);
+		checkWritable();
+		if (fromY == toY)
+			return;
+		
+		int count = 0;
+		for (int x = 0; x < width; x++)
+			if (!Objects.equals(storage.get(x, toY), storage.get(x, fromY)))
+				count = stashRowElem(x, toY, count);
+		
+		if (count != 0) {
+			storage.copyRow(fromY, toY);
+			rowChanged(toY, count);
+		}
+	}
+	
+	/** Заполняет строку массива одним значением.
+	 * Модифицирующее действие над строкой целиком, см. {@link #copyRow(int, int)}.
+	 * @param y Ордината строки.
+	 * @param elem Значение элементов.
+	 * @throws OutOfBoundsException ордината выходит за границы
+	 * @throws UnsupportedOperationException элемент не может быть изменен,
+	 * строка не изменяется; массив только для чтения
+	 */
+	protected void fillRow(int y, E elem) {
+		checkRow(y);
+		checkWritable();
+		
+		int count = 0;
+		for (int x = 0; x < width; x++)
+			if (!Objects.equals(storage.get(x, y), elem))
+				count = stashRowElem(x, y, count);
+		
+		if (count != 0) {
+			storage.fillRow(y, elem);
+			rowChanged(y, count);
+		}
+	}
+	
+	// проверяет и запоминает прежнее значение изменяемого элемента строки
+	private int stashRowElem(int x, int y, int count) {
+		checkModifiable(x, y);
+		if (rowElems == null) {
+			rowElems = new Object[width];
+			rowChanges = new int[width];
+		}
+		rowElems[count] = storage.get(x, y);
+		rowChanges[count] = x;
+		return count + 1;
+	}
+	
+	// вызывает обработчик и ведет журнал для измененных элементов строки
+	@SuppressWarnings("unchecked")
+	private void rowChanged(int y, int count) {
+		boolean innerSeries = firingImmediately;
+		if (innerSeries) setFiringImmediately(false);
+		
+		try {
+			for (int i = 0; i < count; i++) {
+				int x = rowChanges[i];
+				E oldElem = (E)rowElems[i];
+				rowElems[i] = null;
+				E newElem = storage.get(x, y);
+				if (hashing)
+					stateHash ^= hashKey(x, y, oldElem) ^ hashKey(x, y, newElem);
+				onElementChanged(x, y, oldElem, newElem);
+				if (modifiedCells.add(x, y))
+					initialElems.set(x, y, oldElem);
+			}
+		}
+		finally {
+			if (innerSeries) setFiringImmediately(true);
+		}
+	}
+	
+	/** Проверяет, допускает ли массив модификации.
+	 * Вызывается модифицирующими действиями до каких-либо изменений, в том числе
+	 * производных структур данных подкласса.
+	 * @throws UnsupportedOperationException массив только для чтения
+	 */
+	protected void checkWritable() {
+		if (readOnly)
+			throw new UnsupportedOperationException("снимок только для чтения");
+	}
+	
+	// проверяет ординату строки
+	private void checkRow(int y) {
+		if (y < 0 || y >= height)
+			throw new OutOfBoundsException(0, y);
+	}
+
 	/** Возвращает флаг немедленного уведомления слушателей.
 	 * @return
 	 */
@@ -120,39 +378,131 @@ public class ArrayAdapter<E> extends ChangeListened
 	protected void setFiringImmediately(boolean aFlag) {
        if (!this.firingImmediately && aFlag) {
            // взаимные компенсации?
-           int count = 0;
-           for (Iterator<Point> cellIterator = modifiedCells.iterator(); cellIterator.hasNext(); ) {
-               if (Objects.equals(get(cellIterator.next()), initialElems.get(count))) {
-                   cellIterator.remove();
-                   initialElems.remove(count);
-               }
-               else {
-                   count++;
-               }
+           ElementsChangeEvent e = null;
+           if (hasChangeListeners()) {
+        	   for (int i = 0; i < modifiedCells.size(); i++) {
+        		   int x = modifiedCells.getX(i);
+        		   int y = modifiedCells.getY(i);
+        		   if (!Objects.equals(storage.get(x, y), initialElems.get(x, y))) {
+        			   if (e == null)
+        				   e = obtainEvent();
+        			   e.addCell(x, y);
+        		   }
+        	   }
            }
+           modifiedCells.clear();
            
-           if (modifiedCells.size() > 0) {
-               fireStateChanged(new ElementsChangeEvent(this, modifiedCells.toArray(new Point[0])));                    
-               modifiedCells.clear();
-               initialElems.clear();
+           if (e != null) {
+               fireElementsChanged(e);                    
            }
        }
        
        this.firingImmediately = aFlag;
    }
+	
+	/** Возвращает флаг повторного использования объекта события.
+	 * @return
+	 */
+	public boolean isReusingEvents() {
+		return reusingEvents;
+	}
+	
+	/** Устанавливает флаг повторного использования объекта события.
+	 * По умолчанию флаг сброшен, и каждое уведомление создает новый объект события.
+	 * @param aFlag true, чтобы уведомления отправляли один и тот же объект события.
+	 * Устанавливайте, только если все слушатели обрабатывают событие сразу, не сохраняя
+	 * ссылку на него.
+	 */
+	public void setReusingEvents(boolean aFlag) {
+		if (aFlag && reusableEvent == null)
+			reusableEvent = new ElementsChangeEvent(this);
+		this.reusingEvents = aFlag;
+	}
+	
+	// выдает пустое событие: повторно используемое, если оно разрешено и не занято
+	private ElementsChangeEvent obtainEvent() {
+		if (reusingEvents && dispatchDepth == 0) {
+			reusableEvent.clearCells();
+			return reusableEvent;
+		}
+		return new ElementsChangeEvent(this);
+	}
+	
+	// уведомляет слушателей, отслеживая вложенность уведомлений
+	private void fireElementsChanged(ElementsChangeEvent e) {
+		dispatchDepth++;
+		try {
+			fireStateChanged(e);
+		}
+		finally {
+			dispatchDepth--;
+		}
+	}
+
+	/** Возвращает флаг ведения хеша состояния.
+	 * @return
+	 */
+	public boolean isHashing() {
+		return hashing;
+	}
+	
+	/** Устанавливает флаг ведения хеша состояния.
+	 * Установка флага вычисляет хеш заново за один проход по массиву, дальше он
+	 * обновляется каждым изменением элемента.
+	 * @param aFlag true, чтобы вести хеш.
+	 */
+	public void setHashing(boolean aFlag) {
+		if (aFlag && !hashing)
+			stateHash = computeHash();
+		this.hashing = aFlag;
+	}
+	
+	/** Возвращает хеш Зобриста состояния массива.
+	 * Если хеш не ведется, он вычисляется за один проход по массиву.
+	 * @return XOR ключей всех непустых элементов, 0 - массив пуст.
+	 */
+	public long stateHash() {
+		return hashing ? stateHash : computeHash();
+	}
+	
+	// вычисляет хеш состояния заново
+	private long computeHash() {
+		long hash = 0;
+		for (int y = 0; y < height; y++)
+			for (int x = 0; x < width; x++)
+				hash ^= hashKey(x, y, storage.get(x, y));
+		return hash;
+	}
+	
+	// ключ Зобриста значения элемента в ячейке, null - 0; перечисления по порядковому
+	// номеру, прочие по hashCode()
+	private long hashKey(int x, int y, E elem) {
+		if (elem == null)
+			return 0;
+		int code = elem instanceof Enum ? ((Enum<?>)elem).ordinal() : elem.hashCode();
+		return mixKey(y * width + x, code);
+	}
+	
+	// фиксированный ключ пары (ячейка, код значения), финализатор SplitMix64
+	private static long mixKey(int cell, int code) {
+		long z = ((long)cell << 32 | code & 0xFFFFFFFFL) + 0x9E3779B97F4A7C15L;
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
 
 	/** Очищает массив.
 	 * Всем элементам присваивается null значение.
 	 * Устанавливается флаг немедленного уведомления слушателей.
+	 * @throws UnsupportedOperationException массив только для чтения
 	 */
 	public void clear() {
+		checkWritable();
 		setFiringImmediately(false);
        
-		Dimension size = size();
-		Point cell = new Point();
-		for (cell.y = 0; cell.y < size.height; cell.y++)
-			for (cell.x = 0; cell.x < size.width; cell.x++)
-				set(cell, null);
+		for (int y = 0; y < height; y++)
+			for (int x = 0; x < width; x++)
+				set(x, y, null);
        
        	setFiringImmediately(true);
 	}
@@ -161,11 +511,9 @@ public class ArrayAdapter<E> extends ChangeListened
 	 * @return
 	 */
 	public boolean isEmpty() {
-		Dimension size = size();
-		Point cell = new Point();
-		for (cell.y = 0; cell.y < size.height; cell.y++)
-			for (cell.x = 0; cell.x < size.width; cell.x++)
-				if (get(cell) != null) return false;
+		for (int y = 0; y < height; y++)
+			for (int x = 0; x < width; x++)
+				if (storage.get(x, y) != null) return false;
 		
 		return true;
 	}
@@ -181,9 +529,23 @@ public class ArrayAdapter<E> extends ChangeListened
   	 * @return
   	 */
   	public Dimension size() {
-  		return new Dimension(
-		  Array.getLength(Array.get(array, 0)),
-  		  Array.getLength(array));
+  		return new Dimension(width, height);
+  	}
+  	
+  	/** Возвращает ширину массива.
+  	 * В отличие от {@link #size()} не создает объектов.
+  	 * @return
+  	 */
+  	public int getWidth() {
+  		return width;
+  	}
+  	
+  	/** Возвращает высоту массива.
+  	 * В отличие от {@link #size()} не создает объектов.
+  	 * @return
+  	 */
+  	public int getHeight() {
+  		return height;
   	}
 
   	/** Возвращает строковое представление массива.
@@ -200,24 +562,21 @@ public class ArrayAdapter<E> extends ChangeListened
     */
   	@Override
    	public String toString() {
-  		Dimension size = size();
-		Point cell = new Point();
-		
 		// длиннейшее строковое представление?
-		int width = 0;
-		for (cell.y = 0; cell.y < size.height; cell.y++) {
-			for (cell.x = 0; cell.x < size.width; cell.x++) {
-				E elem = get(cell);
-				width = Math.max(Objects.toString(elem).length(), width);
+		int elemWidth = 0;
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				E elem = storage.get(x, y);
+				elemWidth = Math.max(Objects.toString(elem).length(), elemWidth);
 			}
 		}
 	   
 		// формирование строки
-		String format = "%" + ++width + "s";
-		StringBuilder bldr = new StringBuilder((size.width * width + 1) * size.height);
-		for (cell.y = 0; cell.y < size.height; cell.y++) {
-			for (cell.x = 0; cell.x < size.width; cell.x++) {
-				E elem = get(cell);
+		String format = "%" + ++elemWidth + "s";
+		StringBuilder bldr = new StringBuilder((width * elemWidth + 1) * height);
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				E elem = storage.get(x, y);
 				bldr.append(String.format(format, Objects.toString(elem)));      
 			}
 			bldr.append('\n');
@@ -248,5 +607,62 @@ public class ArrayAdapter<E> extends ChangeListened
    		array.setFiringImmediately(true);
    		
    		array.clear();
+   		
+   		array.setHashing(true);
+   		long empty = array.stateHash();
+   		array.set(0, 0, 7);
+   		long seven = array.stateHash();
+   		array.setFiringImmediately(false);
+   		array.set(0, 0, 8);
+   		array.set(1, 1, 9);
+   		array.set(1, 1, null);
+   		array.set(0, 0, 7);
+   		System.out.println("хеш после компенсации в серии " + (array.stateHash() == seven ? "прежний" : "другой"));
+   		array.setFiringImmediately(true);
+   		array.clear();
+   		System.out.println("хеш пустого массива " + (array.stateHash() == empty ? "прежний" : "другой"));
+   		
+   		System.out.println("нагрузка: 5 000 000 случайных чтений и записей");
+   		ArrayAdapter<java.math.RoundingMode> load = new ArrayAdapter<>(
+   		  java.math.RoundingMode.class, new Dimension(BENCH_WIDTH, BENCH_HEIGHT));
+   		java.math.RoundingMode[] modes = java.math.RoundingMode.values();
+   		Random random = new Random(0);
+   		for (int round = 0; round < 4; round++) {
+   			load.setHashing(round == 3);
+   			long start = System.nanoTime();
+   			int nulls = 0;
+   			for (int i = 0; i < 5_000_000; i++) {
+   				int x = random.nextInt(BENCH_WIDTH);
+   				int y = random.nextInt(BENCH_HEIGHT);
+   				if ((i & 1) == 0)
+   					load.set(x, y, modes[i % modes.length]);
+   				else if (load.get(x, y) == null)
+   					nulls++;
+   			}
+   			System.out.printf("проход %d: %d мс (null %d)%s%n", round, (System.nanoTime() - start) / 1_000_000, nulls,
+   			  load.isHashing() ? ", с хешем " + (load.stateHash() == load.computeHash() ? "верным" : "неверным") : "");
+   		}
+   		
+   		System.out.println("уведомления: 1 000 000 изменений, слушатель читает ячейки");
+   		int[] sum = new int[1];
+   		load.addChangeListener((e) -> {
+   			ElementsChangeEvent ece = (ElementsChangeEvent)e;
+   			for (int i = 0; i < ece.getCellCount(); i++)
+   				sum[0] += ece.getX(i) + ece.getY(i);
+   		});
+   		com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean)
+   		  java.lang.management.ManagementFactory.getThreadMXBean();
+   		load.setHashing(false);
+   		for (int round = 0; round < 4; round++) {
+   			load.setReusingEvents(round % 2 == 1);
+   			long bytes = bean.getThreadAllocatedBytes(Thread.currentThread().getId());
+   			for (int i = 0; i < 1_000_000; i++)
+   				load.set(i % BENCH_WIDTH, i / BENCH_WIDTH % BENCH_HEIGHT, modes[i % (modes.length - 1)]);
+   			bytes = bean.getThreadAllocatedBytes(Thread.currentThread().getId()) - bytes;
+   			System.out.printf("повторное использование %b: %d Кб%n", load.isReusingEvents(), bytes / 1024);
+   		}
    	}
+   	
+   	private static final int BENCH_WIDTH  = 10;
+   	private static final int BENCH_HEIGHT = 20;
 }
@@ -0,0 +1,91 @@
+package framework.matrix.model.array;
+
+import java.awt.Dimension;
+import java.util.Arrays;
+
+/** Хранилище элементов-перечислений, не более 254 констант.
+ * Элемент кодируется байтом: 0 - null, иначе порядковый номер константы + 1.
+ * Каждая строка кодов - отдельный массив. Строки копируются при записи: копия хранилища
+ * {@link #fork()} и перенос строки {@link #copyRow(int, int)} разделяют массивы строк, а
+ * первая запись в разделяемую строку создает ее собственную копию.
+ *
+ * @author Игорь
+ * @param <E> Тип элементов, перечисление.
+ */
+final class ByteEnumStorage<E> implements Storage<E>
+{
+	static final int CAPACITY = 0xFF;	// число кодов, включая null
+
+	private final E[]       constants;	// константы перечисления
+	private final byte[][]  rows;		// строки кодов элементов, возможно разделяемые
+	private final boolean[] owned;		// [строка] строка не разделяется с другими
+	private final int       width;		// ширина хранилища
+	private final int       height;		// высота хранилища
+
+	ByteEnumStorage(E[] constants, Dimension size) {
+		this.constants = constants;
+		this.width = size.width;
+		this.height = size.height;
+		this.rows = new byte[height][width];
+		this.owned = new boolean[height];
+		Arrays.fill(owned, true);
+	}
+
+	// копия, разделяющая все строки с оригиналом
+	private ByteEnumStorage(ByteEnumStorage<E> other) {
+		this.constants = other.constants;
+		this.width = other.width;
+		this.height = other.height;
+		this.rows = other.rows.clone();
+		this.owned = new boolean[height];
+		Arrays.fill(other.owned, false);
+	}
+
+	@Override
+	public E get(int x, int y) {
+		int code = rows[y][x] & 0xFF;
+		return code == 0 ? null : constants[code - 1];
+	}
+
+	@Override
+	public void set(int x, int y, E elem) {
+		writable(y)[x] = (byte)(elem == null ? 0 : ((Enum<?>)elem).ordinal() + 1);
+	}
+
+	@Override
+	public void copyRow(int fromY, int toY) {
+		if (fromY != toY) {
+			rows[toY] = rows[fromY];
+			owned[toY] = owned[fromY] = false;
+		}
+	}
+
+	@Override
+	public void fillRow(int y, E elem) {
+		Arrays.fill(writable(y), (byte)(elem == null ? 0 : ((Enum<?>)elem).ordinal() + 1));
+	}
+
+	@Override
+	public Storage<E> fork() {
+		return new ByteEnumStorage<>(this);
+	}
+
+	// строка, доступная для записи: разделяемая строка копируется
+	private byte[] writable(int y) {
+		if (!owned[y]) {
+			rows[y] = rows[y].clone();
+			owned[y] = true;
+		}
+		return rows[y];
+	}
+
+	@Override
+	public int getWidth() {
+		return width;
+	}
+
+	@Override
+	public int getHeight() {
+		return height;
+	}
+}
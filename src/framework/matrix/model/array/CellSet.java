@@ -0,0 +1,286 @@
+package framework.matrix.model.array;
+
+import java.awt.Dimension;
+import java.awt.Point;
+import java.io.Serializable;
+import java.util.*;
+
+/** Упорядоченная коллекция координат ячеек 2D массива.
+ * Замена {@code LinkedHashSet<Point>} без объектов Point: ячейка упаковывается
+ * в int (y * ширина + x), порядок добавления хранится в массиве int, принадлежность
+ * проверяется по битовой карте. Поэтому коллекция привязана к размерам массива,
+ * координаты вне его границ в нее не добавить.
+ *
+ * Перебор без создания объектов:
+ * <pre>
+ * {@code
+ * for (int i = 0; i < cells.size(); i++)
+ *     matrix.get(cells.getX(i), cells.getY(i));
+ * }
+ * </pre>
+ * Итератор {@link #iterator()} и {@link #toSet()} оставлены для совместимости с
+ * API на основе {@code Set<Point>}, они создают объекты Point.
+ *
+ * @author Игорь
+ */
+public final class CellSet implements Iterable<Point>, Serializable
+{
+	private static final long serialVersionUID = 4108290376165183713L;
+
+	private final int    width;		// ширина массива
+	private final int    height;	// высота массива
+	private final long[] members;	// битовая карта принадлежности
+	private int[]        cells;		// упакованные координаты в порядке добавления
+	private int          size;		// число ячеек
+
+	/** Конструирует пустую коллекцию.
+	 * @param width Ширина массива.
+	 * @param height Высота массива.
+	 * @throws IllegalArgumentException размеры < 1x1
+	 */
+	public CellSet(int width, int height) {
+		if (width < 1 || height < 1)
+			throw new IllegalArgumentException("размеры < 1x1");
+
+		this.width = width;
+		this.height = height;
+		this.members = new long[(width * height + Long.SIZE - 1) / Long.SIZE];
+		this.cells = new int[4];
+		this.size = 0;
+	}
+
+	/** Конструирует пустую коллекцию.
+	 * @param size Размеры массива.
+	 * @throws NullPointerException размеры null
+	 * @throws IllegalArgumentException размеры < 1x1
+	 */
+	public CellSet(Dimension size) {
+		this(size.width, size.height);
+	}
+
+	/** Конструирует копию коллекции.
+	 * @param other Копируемая коллекция.
+	 * @throws NullPointerException коллекция null
+	 */
+	public CellSet(CellSet other) {
+		this.width = other.width;
+		this.height = other.height;
+		this.members = other.members.clone();
+		this.cells = Arrays.copyOf(other.cells, Math.max(other.size, 4));
+		this.size = other.size;
+	}
+
+	/** Преобразует коллекцию Point.
+	 * Порядок следования сохраняется.
+	 * @param cells Коллекция координат.
+	 * @param size Размеры массива.
+	 * @return Новая коллекция.
+	 * @throws NullPointerException аргументы null, координаты-элемент коллекции null
+	 * @throws OutOfBoundsException координаты выходят за границы
+	 */
+	public static CellSet of(Collection<Point> cells, Dimension size) {
+		CellSet set = new CellSet(size);
+		for (Point c : cells)
+			set.add(c.x, c.y);
+		return set;
+	}
+
+	/** Добавляет ячейку.
+	 * @param x Абсцисса ячейки.
+	 * @param y Ордината ячейки.
+	 * @return true, если ячейки не было в коллекции.
+	 * @throws OutOfBoundsException координаты выходят за границы
+	 */
+	public boolean add(int x, int y) {
+		if (!inBounds(x, y))
+			throw new OutOfBoundsException(x, y);
+
+		int index = y * width + x;
+		long bit = 1L << index;
+		if ((members[index / Long.SIZE] & bit) != 0)
+			return false;
+
+		members[index / Long.SIZE] |= bit;
+		if (size == cells.length)
+			cells = Arrays.copyOf(cells, 2 * size);
+		cells[size++] = index;
+		return true;
+	}
+
+	/** Добавляет ячейку.
+	 * @param cell Координаты ячейки.
+	 * @return true, если ячейки не было в коллекции.
+	 * @throws NullPointerException координаты null
+	 * @throws OutOfBoundsException координаты выходят за границы
+	 */
+	public boolean add(Point cell) {
+		return add(cell.x, cell.y);
+	}
+
+	/** Проверяет, содержит ли коллекция ячейку.
+	 * @param x Абсцисса ячейки.
+	 * @param y Ордината ячейки.
+	 * @return true, если содержит. Ячейки вне границ массива не содержатся никогда.
+	 */
+	public boolean contains(int x, int y) {
+		if (!inBounds(x, y))
+			return false;
+
+		int index = y * width + x;
+		return (members[index / Long.SIZE] & 1L << index) != 0;
+	}
+
+	/** Проверяет, содержит ли коллекция ячейку.
+	 * @param cell Координаты ячейки.
+	 * @return true, если содержит.
+	 * @throws NullPointerException координаты null
+	 */
+	public boolean contains(Point cell) {
+		return contains(cell.x, cell.y);
+	}
+
+	/** Удаляет все ячейки.
+	 * Время пропорционально числу ячеек коллекции, а не размерам массива.
+	 */
+	public void clear() {
+		for (int i = 0; i < size; i++)
+			members[cells[i] / Long.SIZE] = 0;
+		size = 0;
+	}
+
+	/** Возвращает число ячеек.
+	 * @return
+	 */
+	public int size() {
+		return size;
+	}
+
+	/** Проверяет, пуста ли коллекция.
+	 * @return
+	 */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/** Возвращает абсциссу i-й по порядку добавления ячейки.
+	 * @param i Номер ячейки.
+	 * @return
+	 * @throws IndexOutOfBoundsException номер вне [0, size)
+	 */
+	public int getX(int i) {
+		return cells[checkIndex(i)] % width;
+	}
+
+	/** Возвращает ординату i-й по порядку добавления ячейки.
+	 * @param i Номер ячейки.
+	 * @return
+	 * @throws IndexOutOfBoundsException номер вне [0, size)
+	 */
+	public int getY(int i) {
+		return cells[checkIndex(i)] / width;
+	}
+
+	/** Возвращает упакованные координаты i-й по порядку добавления ячейки.
+	 * @param i Номер ячейки.
+	 * @return y * ширина + x
+	 * @throws IndexOutOfBoundsException номер вне [0, size)
+	 */
+	public int get(int i) {
+		return cells[checkIndex(i)];
+	}
+
+	/** Возвращает ширину массива.
+	 * @return
+	 */
+	public int getWidth() {
+		return width;
+	}
+
+	/** Возвращает высоту массива.
+	 * @return
+	 */
+	public int getHeight() {
+		return height;
+	}
+
+	/** Проверяет, находятся ли координаты в границах массива.
+	 * @param x Абсцисса ячейки.
+	 * @param y Ордината ячейки.
+	 * @return
+	 */
+	public boolean inBounds(int x, int y) {
+		return x >= 0 && x < width && y >= 0 && y < height;
+	}
+
+	/** Преобразует в коллекцию Point.
+	 * @return Новая коллекция, порядок следования сохраняется.
+	 */
+	public Set<Point> toSet() {
+		Set<Point> set = new LinkedHashSet<>(size, 1);
+		for (int i = 0; i < size; i++)
+			set.add(new Point(cells[i] % width, cells[i] / width));
+		return set;
+	}
+
+	/** Возвращает итератор.
+	 * Каждый вызов next() создает новый объект Point.
+	 * @return Итератор по координатам ячеек в порядке добавления.
+	 */
+	@Override
+	public Iterator<Point> iterator() {
+		return new Iterator<Point>() {
+			int count = 0;
+
+			@Override
+			public boolean hasNext() {
+				return count != size;
+			}
+
+			@Override
+			public Point next() {
+				if (count == size)
+					throw new NoSuchElementException();
+				int index = cells[count++];
+				return new Point(index % width, index / width);
+			}
+		};
+	}
+
+  	/** Возвращает строковое представление коллекции.
+    * Формат совпадает с {@link framework.matrix.model.bricks.Cells#toString(Set)}.
+    * Пример вывода:
+    * <pre>
+    * {@code
+    * cells 3: (1, 2) (3, 4) (5, 6)
+    * }
+    * </pre>
+    * @return Форматированная строка для вывода на консоль.
+    */
+	@Override
+	public String toString() {
+		StringBuilder bldr = new StringBuilder("cells " + size + ':');
+		for (int i = 0; i < size; i++)
+			bldr.append(String.format(" (%d, %d)", cells[i] % width, cells[i] / width));
+		return bldr.toString();
+	}
+
+	// проверяет номер ячейки
+	private int checkIndex(int i) {
+		if (i < 0 || i >= size)
+			throw new IndexOutOfBoundsException("номер " + i);
+		return i;
+	}
+
+	public static void main(String[] args) {
+		CellSet cells = new CellSet(6, 4);
+		cells.add(1, 2);
+		cells.add(3, 0);
+		cells.add(1, 2);
+		cells.add(5, 3);
+		System.out.println(cells);
+		System.out.println("содержит (3, 0) " + cells.contains(3, 0) + ", (0, 3) " + cells.contains(0, 3));
+		System.out.println(new CellSet(cells).toSet());
+		cells.clear();
+		System.out.println(cells);
+	}
+}
@@ -1,6 +1,6 @@
 package framework.matrix.model.array;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 
 import javax.swing.event.ChangeEvent;
 import javax.swing.event.ChangeListener;
@@ -8,12 +8,19 @@ import javax.swing.event.ChangeListener;
 /** Основа класса, изменения объектов которого отслеживаются.
  * Решает задачи регистрации и уведомления слушателей.
  * 
+ * Слушатели хранятся в массиве, копируемом при регистрации и отмене регистрации.
+ * Уведомление перебирает текущий массив без блокировок и создания объектов, а слушатель
+ * может добавлять и удалять слушателей прямо из обработчика: изменения вступят в силу
+ * со следующего уведомления.
+ * 
  * @author Игорь
  * @see ChangeListener
  */
 public abstract class ChangeListened 
 {  
-    private ArrayList<ChangeListener> listeners = new ArrayList<>();
+    private static final ChangeListener[] NO_LISTENERS = new ChangeListener[0];
+    
+    private ChangeListener[] listeners = NO_LISTENERS;	// копируется при изменении
        
     /** Регистрирует нового слушателя.
      * @param l Слушатель изменений.
@@ -23,10 +30,12 @@ public abstract class ChangeListened
     public void addChangeListener(ChangeListener l) {
         if (l == null)
             throw new IllegalArgumentException("слушатель null");
-        if (listeners.contains(l))
+        if (indexOf(l) >= 0)
             throw new IllegalStateException("слушатель уже добавлен");
         
-        listeners.add(l);
+        ChangeListener[] copy = Arrays.copyOf(listeners, listeners.length + 1);
+        copy[listeners.length] = l;
+        listeners = copy;
     }
 
     /** Отменяет регистрацию слушателя.
@@ -37,10 +46,22 @@ public abstract class ChangeListened
     public void removeChangeListener(ChangeListener l) {
         if (l == null)
             throw new IllegalArgumentException("слушатель null");
-        if (!listeners.contains(l))
+        int index = indexOf(l);
+        if (index < 0)
             throw new IllegalStateException("такого слушателя нет");
         
-        listeners.remove(l);
+        ChangeListener[] copy = new ChangeListener[listeners.length - 1];
+        System.arraycopy(listeners, 0, copy, 0, index);
+        System.arraycopy(listeners, index + 1, copy, index, copy.length - index);
+        listeners = copy;
+    }
+    
+    /** Проверяет, зарегистрирован ли хотя бы один слушатель.
+     * Позволяет не создавать событие, которое некому отправлять.
+     * @return
+     */
+    protected boolean hasChangeListeners() {
+        return listeners.length != 0;
     }
     
     /** Уведомляет слушателей.
@@ -56,8 +77,7 @@ public abstract class ChangeListened
      * @throws IllegalArgumentException Если аргумент null.
      */
     protected void fireStateChanged(Object source) {
-        ChangeEvent e = new ChangeEvent(source);
-        listeners.forEach((l) -> l.stateChanged(e));
+        fireStateChanged(new ChangeEvent(source));
     }
     
     /** Уведомляет слушателей.
@@ -68,6 +88,15 @@ public abstract class ChangeListened
         if (e == null)
             throw new IllegalArgumentException("событие null");
     	
-        listeners.forEach((l) -> l.stateChanged(e)); 
+        for (ChangeListener l : listeners)
+            l.stateChanged(e);
+    }
+    
+    // ищет слушателя, -1 если не найден
+    private int indexOf(ChangeListener l) {
+        for (int i = 0; i < listeners.length; i++)
+            if (listeners[i].equals(l))
+                return i;
+        return -1;
     }
 }
@@ -2,58 +2,114 @@ package framework.matrix.model.array;
 
 import java.awt.Point;
 import java.util.Iterator;
-import java.util.NoSuchElementException;
 
 import javax.swing.event.ChangeEvent;
 
 /** Событие изменения элементов 2D массива.
  * Предоставляет координаты измененных элементов.
  * 
+ * Координаты доступны без создания объектов Point:
+ * <pre>
+ * {@code
+ * for (int i = 0; i < e.getCellCount(); i++)
+ *     array.get(e.getX(i), e.getY(i));
+ * }
+ * </pre>
+ * Источник может повторно использовать объект события
+ * ({@link ArrayAdapter#setReusingEvents(boolean)}), тогда событие действительно только
+ * во время обработки: не сохраняйте ссылку на него и не передавайте в другие потоки.
+ * 
  * @author Игорь
  */
 public class ElementsChangeEvent extends ChangeEvent implements Iterable<Point>
 {
 	private static final long serialVersionUID = 2736915267736448905L;
 
-	private class CellIterator implements Iterator<Point> 
-	{      
-       int count = 0;
-       
-       @Override
-       public boolean hasNext() {
-           return count != cells.length;
-       }
-
-       @Override
-       public Point next() {
-           if (count == cells.length)
-               throw new NoSuchElementException();
-           return cells[count++];
-       }
-   }
-
-	private Point[] cells;
+	private CellSet cells;
 
 	/** Конструирует событие.
+	 * Координаты копируются, повторяющиеся координаты учитываются один раз.
     * @param source Источник событий.
     * @param cells Координаты измененных элементов.
-    * @throws NullPointerException Если массив null.
+    * @throws NullPointerException Если массив null, либо координаты-элемент массива null.
     * @throws IllegalArgumentException Если источник null, либо массив пустой.
+    * @throws OutOfBoundsException Если координаты выходят за границы источника.
     */
    	public ElementsChangeEvent(ArrayAdapter<?> source, Point... cells) {
        super(source);
        if (cells.length == 0)
            throw new IllegalArgumentException("массив пустой");   
        
+       this.cells = new CellSet(source.getWidth(), source.getHeight());
+       for (Point c : cells)
+    	   this.cells.add(c);
+   }
+   	
+   	/** Конструирует событие.
+   	 * Коллекция не копируется, не модифицируйте ее после передачи событию.
+    * @param source Источник событий.
+    * @param cells Координаты измененных элементов.
+    * @throws NullPointerException Если коллекция null.
+    * @throws IllegalArgumentException Если источник null, коллекция пустая,
+    * либо размеры коллекции и источника различаются.
+    */
+   	public ElementsChangeEvent(ArrayAdapter<?> source, CellSet cells) {
+       super(source);
+       if (cells.isEmpty())
+           throw new IllegalArgumentException("коллекция пустая");
+       if (cells.getWidth() != source.getWidth() || cells.getHeight() != source.getHeight())
+    	   throw new IllegalArgumentException("размеры коллекции и источника различаются");
+       
        this.cells = cells;
    }
+   	
+   	// конструирует пустое событие для повторного использования источником
+   	ElementsChangeEvent(ArrayAdapter<?> source) {
+   		super(source);
+   		this.cells = new CellSet(source.getWidth(), source.getHeight());
+   	}
+   	
+   	/** Возвращает число измененных элементов.
+   	 * @return
+   	 */
+   	public int getCellCount() {
+   		return cells.size();
+   	}
+   	
+   	/** Возвращает абсциссу i-го измененного элемента.
+   	 * @param i Номер элемента.
+   	 * @return
+   	 * @throws IndexOutOfBoundsException номер вне [0, getCellCount())
+   	 */
+   	public int getX(int i) {
+   		return cells.getX(i);
+   	}
+   	
+   	/** Возвращает ординату i-го измененного элемента.
+   	 * @param i Номер элемента.
+   	 * @return
+   	 * @throws IndexOutOfBoundsException номер вне [0, getCellCount())
+   	 */
+   	public int getY(int i) {
+   		return cells.getY(i);
+   	}
+   	
+   	// очищает повторно используемое событие
+   	void clearCells() {
+   		cells.clear();
+   	}
+   	
+   	// добавляет координаты в повторно используемое событие
+   	void addCell(int x, int y) {
+   		cells.add(x, y);
+   	}
         
    	/** Возвращает итератор.
     * @return Итератор по координатам измененных элементов.
     */
    	@Override
    	public Iterator<Point> iterator() {
-   		return new CellIterator();
+   		return cells.iterator();
    	}
 
    	/** Возвращает строковое представление.
@@ -69,9 +125,9 @@ public class ElementsChangeEvent extends ChangeEvent implements Iterable<Point>
     */
    	@Override
    	public String toString() {
-   		String str = getClass().getSimpleName() + ' ' + cells.length + ':';
-   		for (Point c : cells)
-   			str += String.format(" (%d, %d)", c.x, c.y);
+   		String str = getClass().getSimpleName() + ' ' + cells.size() + ':';
+   		for (int i = 0; i < cells.size(); i++)
+   			str += String.format(" (%d, %d)", cells.getX(i), cells.getY(i));
    		return str;           
    	}
    	
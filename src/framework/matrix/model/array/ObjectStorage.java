@@ -0,0 +1,85 @@
+package framework.matrix.model.array;
+
+import java.awt.Dimension;
+import java.util.Arrays;
+
+/** Хранилище произвольных элементов.
+ * Каждая строка ссылок - отдельный массив. Строки копируются при записи: копия хранилища
+ * {@link #fork()} и перенос строки {@link #copyRow(int, int)} разделяют массивы строк, а
+ * первая запись в разделяемую строку создает ее собственную копию.
+ *
+ * @author Игорь
+ * @param <E> Тип элементов.
+ */
+final class ObjectStorage<E> implements Storage<E>
+{
+	private final Object[][] rows;		// строки элементов, возможно разделяемые
+	private final boolean[]  owned;		// [строка] строка не разделяется с другими
+	private final int        width;		// ширина хранилища
+	private final int        height;	// высота хранилища
+
+	ObjectStorage(Dimension size) {
+		this.width = size.width;
+		this.height = size.height;
+		this.rows = new Object[height][width];
+		this.owned = new boolean[height];
+		Arrays.fill(owned, true);
+	}
+
+	// копия, разделяющая все строки с оригиналом
+	private ObjectStorage(ObjectStorage<E> other) {
+		this.width = other.width;
+		this.height = other.height;
+		this.rows = other.rows.clone();
+		this.owned = new boolean[height];
+		Arrays.fill(other.owned, false);
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public E get(int x, int y) {
+		return (E)rows[y][x];
+	}
+
+	@Override
+	public void set(int x, int y, E elem) {
+		writable(y)[x] = elem;
+	}
+
+	@Override
+	public void copyRow(int fromY, int toY) {
+		if (fromY != toY) {
+			rows[toY] = rows[fromY];
+			owned[toY] = owned[fromY] = false;
+		}
+	}
+
+	@Override
+	public void fillRow(int y, E elem) {
+		Arrays.fill(writable(y), elem);
+	}
+
+	@Override
+	public Storage<E> fork() {
+		return new ObjectStorage<>(this);
+	}
+
+	// строка, доступная для записи: разделяемая строка копируется
+	private Object[] writable(int y) {
+		if (!owned[y]) {
+			rows[y] = rows[y].clone();
+			owned[y] = true;
+		}
+		return rows[y];
+	}
+
+	@Override
+	public int getWidth() {
+		return width;
+	}
+
+	@Override
+	public int getHeight() {
+		return height;
+	}
+}
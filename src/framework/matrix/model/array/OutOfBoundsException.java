@@ -11,7 +11,11 @@ public class OutOfBoundsException extends RuntimeException
 	private static final long serialVersionUID = -519659368780180705L;
 
 	public OutOfBoundsException(Point p) {
-		super(String.format("координаты (%d, %d)", p.x, p.y));
+		this(p.x, p.y);
+	}
+
+	public OutOfBoundsException(int x, int y) {
+		super(String.format("координаты (%d, %d)", x, y));
 	}
 
 }
@@ -0,0 +1,91 @@
+package framework.matrix.model.array;
+
+import java.awt.Dimension;
+import java.util.Arrays;
+
+/** Хранилище элементов-перечислений, не более 65534 констант.
+ * Элемент кодируется short: 0 - null, иначе порядковый номер константы + 1.
+ * Каждая строка кодов - отдельный массив. Строки копируются при записи: копия хранилища
+ * {@link #fork()} и перенос строки {@link #copyRow(int, int)} разделяют массивы строк, а
+ * первая запись в разделяемую строку создает ее собственную копию.
+ *
+ * @author Игорь
+ * @param <E> Тип элементов, перечисление.
+ */
+final class ShortEnumStorage<E> implements Storage<E>
+{
+	static final int CAPACITY = 0xFFFF;	// число кодов, включая null
+
+	private final E[]       constants;	// константы перечисления
+	private final short[][] rows;		// строки кодов элементов, возможно разделяемые
+	private final boolean[] owned;		// [строка] строка не разделяется с другими
+	private final int       width;		// ширина хранилища
+	private final int       height;		// высота хранилища
+
+	ShortEnumStorage(E[] constants, Dimension size) {
+		this.constants = constants;
+		this.width = size.width;
+		this.height = size.height;
+		this.rows = new short[height][width];
+		this.owned = new boolean[height];
+		Arrays.fill(owned, true);
+	}
+
+	// копия, разделяющая все строки с оригиналом
+	private ShortEnumStorage(ShortEnumStorage<E> other) {
+		this.constants = other.constants;
+		this.width = other.width;
+		this.height = other.height;
+		this.rows = other.rows.clone();
+		this.owned = new boolean[height];
+		Arrays.fill(other.owned, false);
+	}
+
+	@Override
+	public E get(int x, int y) {
+		int code = rows[y][x] & 0xFFFF;
+		return code == 0 ? null : constants[code - 1];
+	}
+
+	@Override
+	public void set(int x, int y, E elem) {
+		writable(y)[x] = (short)(elem == null ? 0 : ((Enum<?>)elem).ordinal() + 1);
+	}
+
+	@Override
+	public void copyRow(int fromY, int toY) {
+		if (fromY != toY) {
+			rows[toY] = rows[fromY];
+			owned[toY] = owned[fromY] = false;
+		}
+	}
+
+	@Override
+	public void fillRow(int y, E elem) {
+		Arrays.fill(writable(y), (short)(elem == null ? 0 : ((Enum<?>)elem).ordinal() + 1));
+	}
+
+	@Override
+	public Storage<E> fork() {
+		return new ShortEnumStorage<>(this);
+	}
+
+	// строка, доступная для записи: разделяемая строка копируется
+	private short[] writable(int y) {
+		if (!owned[y]) {
+			rows[y] = rows[y].clone();
+			owned[y] = true;
+		}
+		return rows[y];
+	}
+
+	@Override
+	public int getWidth() {
+		return width;
+	}
+
+	@Override
+	public int getHeight() {
+		return height;
+	}
+}
@@ -0,0 +1,93 @@
+package framework.matrix.model.array;
+
+import java.awt.Dimension;
+
+/** Хранилище элементов 2D массива.
+ * Подменяемая основа {@link ArrayAdapter}: адаптер отвечает за проверку координат
+ * и уведомление слушателей, хранилище - только за чтение и запись элементов.
+ * Координаты, передаваемые хранилищу, всегда корректны, повторно их не проверять.
+ *
+ * Фабрика {@link #create(Class, Dimension)} выбирает реализацию по типу элементов:
+ * для перечислений элементы кодируются порядковыми номерами в массивах byte/short,
+ * для остальных типов используется массив ссылок. Все варианты хранят каждую строку
+ * отдельным массивом, без рефлексии, и копируют строки при записи.
+ *
+ * @author Игорь
+ * @param <E> Тип элементов.
+ */
+public interface Storage<E>
+{
+	/** Возвращает элемент.
+	 * @param x Абсцисса элемента.
+	 * @param y Ордината элемента.
+	 * @return Значение элемента, м.б. null.
+	 */
+	E get(int x, int y);
+
+	/** Устанавливает элемент.
+	 * @param x Абсцисса элемента.
+	 * @param y Ордината элемента.
+	 * @param elem Новое значение элемента, м.б. null.
+	 */
+	void set(int x, int y, E elem);
+
+	/** Копирует строку в другую строку.
+	 * Реализации копируют строку целиком на уровне массива.
+	 * @param fromY Ордината копируемой строки.
+	 * @param toY Ордината изменяемой строки.
+	 */
+	default void copyRow(int fromY, int toY) {
+		for (int x = 0; x < getWidth(); x++)
+			set(x, toY, get(x, fromY));
+	}
+
+	/** Заполняет строку одним значением.
+	 * @param y Ордината строки.
+	 * @param elem Значение элементов, м.б. null.
+	 */
+	default void fillRow(int y, E elem) {
+		for (int x = 0; x < getWidth(); x++)
+			set(x, y, elem);
+	}
+
+	/** Создает независимую копию хранилища.
+	 * Реализации могут разделять данные с оригиналом до первой записи в любое из хранилищ.
+	 * @return Копия с теми же размерами и элементами.
+	 * @throws UnsupportedOperationException хранилище не поддерживает копирование
+	 */
+	default Storage<E> fork() {
+		throw new UnsupportedOperationException();
+	}
+
+	/** Возвращает ширину хранилища.
+	 * @return
+	 */
+	int getWidth();
+
+	/** Возвращает высоту хранилища.
+	 * @return
+	 */
+	int getHeight();
+
+	/** Создает хранилище, наиболее подходящее для типа элементов.
+	 * Все элементы изначально null.
+	 * @param elemType Описывает тип элементов.
+	 * @param size Размеры хранилища.
+	 * @return Новое хранилище.
+	 * @throws NullPointerException аргументы null
+	 * @throws IllegalArgumentException размеры < 1x1
+	 */
+	static <E> Storage<E> create(Class<E> elemType, Dimension size) {
+		if (size.width < 1 || size.height < 1)
+			throw new IllegalArgumentException("размеры < 1x1");
+		
+		if (elemType.isEnum()) {
+			E[] constants = elemType.getEnumConstants();
+			if (constants.length < ByteEnumStorage.CAPACITY)
+				return new ByteEnumStorage<>(constants, size);
+			if (constants.length < ShortEnumStorage.CAPACITY)
+				return new ShortEnumStorage<>(constants, size);
+		}
+		return new ObjectStorage<>(size);
+	}
+}
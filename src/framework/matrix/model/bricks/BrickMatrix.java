@@ -66,6 +66,27 @@ public class BrickMatrix<B> extends ArrayAdapter<B>
 	public BrickMatrix(Class<B> brickType, Dimension size) {
 		super(brickType, size);
 	}      
+	
+	/** Конструирует копию матрицы.
+	 * @param original Копируемая матрица.
+	 * @throws NullPointerException оригинал null
+	 * @see ArrayAdapter#ArrayAdapter(ArrayAdapter)
+	 */
+	protected BrickMatrix(BrickMatrix<B> original) {
+		super(original);
+	}
+	
+	@Override
+	public BrickMatrix<B> fork() {
+		return new BrickMatrix<>(this);
+	}
+	
+	@Override
+	public BrickMatrix<B> snapshot() {
+		BrickMatrix<B> snapshot = fork();
+		snapshot.markReadOnly();
+		return snapshot;
+	}
 
 	/** Проверяет, содержит ли ячейка матрицы блок.
 	 * @param cell Координаты проверяемой ячейки.
@@ -74,7 +95,17 @@ public class BrickMatrix<B> extends ArrayAdapter<B>
 	 * @throws OutOfBoundsException координаты выходят за границы
 	 */
 	public boolean contains(Point cell) {
-		return get(cell) != null;
+		return contains(cell.x, cell.y);
+	}
+	
+	/** Проверяет, содержит ли ячейка матрицы блок.
+	 * @param x Абсцисса проверяемой ячейки.
+	 * @param y Ордината проверяемой ячейки.
+	 * @return true, если ячейка содержит блок. Иначе false.
+	 * @throws OutOfBoundsException координаты выходят за границы
+	 */
+	public boolean contains(int x, int y) {
+		return get(x, y) != null;
 	}
 	
 	/** Добавляет блок в ячейку матрицы.
@@ -88,12 +119,25 @@ public class BrickMatrix<B> extends ArrayAdapter<B>
 	 * @throws IllegalArgumentException блок null
 	 */
 	public void add(Point cell, B brick) {
-		if (contains(cell))
-			throw new IllegalStateException(String.format("ячейка (%d, %d) не пуста", cell.x, cell.y));
+		add(cell.x, cell.y, brick);
+	}
+	
+	/** Добавляет блок в ячейку матрицы.
+	 * @param x Абсцисса целевой ячейки.
+	 * @param y Ордината целевой ячейки.
+	 * @param brick Добавляемый блок.
+	 * @throws OutOfBoundsException координаты выходят за границы
+	 * @throws IllegalStateException ячейка не пуста
+	 * @throws IllegalArgumentException блок null
+	 * @see #add(Point, Object)
+	 */
+	public void add(int x, int y, B brick) {
+		if (contains(x, y))
+			throw new IllegalStateException(String.format("ячейка (%d, %d) не пуста", x, y));
 		if (brick == null)
 			throw new IllegalArgumentException("блок null");
        
-		set(cell, brick);
+		set(x, y, brick);
 	}
 
 	/** Удаляет блок из ячейки матрицы.
@@ -105,10 +149,22 @@ public class BrickMatrix<B> extends ArrayAdapter<B>
 	 * @throws IllegalStateException ячейка пуста
 	 */
 	public B remove(Point cell) {
-		if (!contains(cell))
-			throw new IllegalStateException(String.format("ячейка (%d, %d) пуста", cell.x, cell.y));
+		return remove(cell.x, cell.y);
+	}
+	
+	/** Удаляет блок из ячейки матрицы.
+	 * @param x Абсцисса целевой ячейки.
+	 * @param y Ордината целевой ячейки.
+	 * @return Удаленный блок.
+	 * @throws OutOfBoundsException координаты выходят за границы
+	 * @throws IllegalStateException ячейка пуста
+	 * @see #remove(Point)
+	 */
+	public B remove(int x, int y) {
+		if (!contains(x, y))
+			throw new IllegalStateException(String.format("ячейка (%d, %d) пуста", x, y));
 	       
-       	return set(cell, null);
+       	return set(x, y, null);
 	}
 
 	/** Заменяет блок в ячейке матрицы.
@@ -123,11 +179,24 @@ public class BrickMatrix<B> extends ArrayAdapter<B>
 	 * @throws IllegalArgumentException блок null, равен заменяемому
 	 */
 	public void replace(Point cell, B newBrick) {
-		if (!contains(cell))
-			throw new IllegalStateException(String.format("ячейка (%d, %d) пуста", cell.x, cell.y));
+		replace(cell.x, cell.y, newBrick);
+	}
+	
+	/** Заменяет блок в ячейке матрицы.
+	 * @param x Абсцисса целевой ячейки.
+	 * @param y Ордината целевой ячейки.
+	 * @param newBrick Заменяющий блок.
+	 * @throws OutOfBoundsException координаты выходят за границы
+	 * @throws IllegalStateException ячейка пуста
+	 * @throws IllegalArgumentException блок null, равен заменяемому
+	 * @see #replace(Point, Object)
+	 */
+	public void replace(int x, int y, B newBrick) {
+		if (!contains(x, y))
+			throw new IllegalStateException(String.format("ячейка (%d, %d) пуста", x, y));
 		if (newBrick == null)
 			throw new IllegalArgumentException("блок null");
-		if (newBrick.equals(set(cell, newBrick)))
+		if (newBrick.equals(set(x, y, newBrick)))
 			throw new IllegalArgumentException("блок равен заменямому");
 	}
       
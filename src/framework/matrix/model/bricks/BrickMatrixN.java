@@ -3,7 +3,9 @@ package framework.matrix.model.bricks;
 import java.awt.Dimension;
 import java.awt.Point;
 import java.util.*;
+import java.util.function.IntPredicate;
 
+import framework.matrix.model.array.CellSet;
 import framework.matrix.model.array.OutOfBoundsException;
 
 /** Матрица для манипуляции группами блоков.
@@ -16,11 +18,21 @@ import framework.matrix.model.array.OutOfBoundsException;
  * Методы xxxAll выполняют действие над N блоками, методы с префиксом xxxSome
  * над M, M c [0, N].
  * 
+ * Параллельно с блоками матрица ведет битовую доску занятости: по 1 слову long
+ * на строку, либо по несколько слов для матриц шире 64 ячеек. Бит установлен, если
+ * ячейка содержит блок. Доска обновляется при каждой фактической модификации, поэтому
+ * запросы {@link #isRowFull(int)}, {@link #rowMask(int)}, {@link #fullRows()} и
+ * {@link #occupiedCount(int)} сводятся к битовым операциям без создания коллекций.
+ * 
  * @author Игорь
  * @param <B> Тип блоков. Рекомендуется перечисление или неизменяемый тип.
  */
 public class BrickMatrixN<B> extends BrickMatrix<B> 
 {
+	private final int    words;			// число слов доски на строку
+	private final long   lastWordMask;	// значащие биты последнего слова строки
+	private final long[] occupancy;		// битовая доска занятости, построчно
+	
 	/** Конструирует матрицу стандартных размеров.
 	 * @param brickType Описывает тип блоков.
 	 * @throws NullPointerException аргумент null
@@ -28,6 +40,9 @@ public class BrickMatrixN<B> extends BrickMatrix<B>
 	 */
     public BrickMatrixN(Class<B> brickType) {
         super(brickType);
+        words = (getWidth() + Long.SIZE - 1) / Long.SIZE;
+        lastWordMask = -1L >>> (words * Long.SIZE - getWidth());
+        occupancy = new long[words * getHeight()];
     }  
 
 	/** Конструирует матрицу.
@@ -38,6 +53,192 @@ public class BrickMatrixN<B> extends BrickMatrix<B>
 	 */
     public BrickMatrixN(Class<B> brickType, Dimension size) {
         super(brickType, size);
+        words = (getWidth() + Long.SIZE - 1) / Long.SIZE;
+        lastWordMask = -1L >>> (words * Long.SIZE - getWidth());
+        occupancy = new long[words * getHeight()];
+    }
+    
+	/** Конструирует копию матрицы.
+	 * Битовая доска копируется, строки блоков разделяются с оригиналом до первой записи.
+	 * @param original Копируемая матрица.
+	 * @throws NullPointerException оригинал null
+	 */
+    protected BrickMatrixN(BrickMatrixN<B> original) {
+    	super(original);
+    	words = original.words;
+    	lastWordMask = original.lastWordMask;
+    	occupancy = original.occupancy.clone();
+    }
+    
+    @Override
+    public BrickMatrixN<B> fork() {
+    	return new BrickMatrixN<>(this);
+    }
+    
+    @Override
+    public BrickMatrixN<B> snapshot() {
+    	BrickMatrixN<B> snapshot = fork();
+    	snapshot.markReadOnly();
+    	return snapshot;
+    }
+    
+    /** {@inheritDoc}
+     * Проверка выполняется по битовой доске.
+     */
+    @Override
+    public boolean contains(int x, int y) {
+    	if (x < 0 || x >= getWidth() || y < 0 || y >= getHeight())
+    		throw new OutOfBoundsException(x, y);
+    	return (occupancy[y * words + x / Long.SIZE] & 1L << x) != 0;
+    }
+    
+    /** Проверяет, заполнена ли строка матрицы целиком.
+     * @param y Ордината строки.
+     * @return true, если каждая ячейка строки содержит блок. Иначе false.
+     * @throws OutOfBoundsException ордината выходит за границы
+     */
+    public boolean isRowFull(int y) {
+    	checkRow(y);
+    	int last = y * words + words - 1;
+    	for (int i = y * words; i < last; i++)
+    		if (occupancy[i] != -1L) return false;
+    	return occupancy[last] == lastWordMask;
+    }
+    
+    /** Возвращает маску занятости строки.
+     * Бит x установлен, если ячейка (x, y) содержит блок.
+     * @param y Ордината строки.
+     * @return Маска строки.
+     * @throws OutOfBoundsException ордината выходит за границы
+     * @throws UnsupportedOperationException ширина матрицы > 64, используйте {@link #rowMask(int, int)}
+     */
+    public long rowMask(int y) {
+    	if (words != 1)
+    		throw new UnsupportedOperationException("ширина > " + Long.SIZE);
+    	checkRow(y);
+    	return occupancy[y];
+    }
+    
+    /** Возвращает слово маски занятости строки.
+     * Бит i слова установлен, если ячейка (64 * word + i, y) содержит блок.
+     * @param y Ордината строки.
+     * @param word Номер слова.
+     * @return Слово маски строки.
+     * @throws OutOfBoundsException ордината выходит за границы
+     * @throws IllegalArgumentException номер слова вне [0, (ширина + 63) / 64)
+     */
+    public long rowMask(int y, int word) {
+    	checkRow(y);
+    	if (word < 0 || word >= words)
+    		throw new IllegalArgumentException("номер слова " + word);
+    	return occupancy[y * words + word];
+    }
+    
+    /** Возвращает ординаты заполненных строк.
+     * @return Ординаты по возрастанию, массив м.б. пустым.
+     */
+    public int[] fullRows() {
+    	int count = 0;
+    	for (int y = 0; y < getHeight(); y++)
+    		if (isRowFull(y)) count++;
+    	
+    	int[] rows = new int[count];
+    	for (int y = 0, i = 0; i < count; y++)
+    		if (isRowFull(y)) rows[i++] = y;
+    	return rows;
+    }
+    
+    /** Подсчитывает блоки в строке матрицы.
+     * @param y Ордината строки.
+     * @return Число не пустых ячеек строки.
+     * @throws OutOfBoundsException ордината выходит за границы
+     */
+    public int occupiedCount(int y) {
+    	checkRow(y);
+    	int count = 0;
+    	for (int i = y * words; i < (y + 1) * words; i++)
+    		count += Long.bitCount(occupancy[i]);
+    	return count;
+    }
+    
+    /** Удаляет строки матрицы, сдвигая вышележащие строки вниз.
+     * Освободившиеся верхние строки становятся пустыми.
+     * @param rows Ординаты удаляемых строк, порядок и повторы не важны.
+     * @return Число удаленных строк.
+     * @throws NullPointerException массив null
+     * @throws OutOfBoundsException ордината выходит за границы, матрица не изменяется
+     * @throws UnsupportedOperationException изменяемая ячейка защищена от модификаций,
+     * матрица не изменяется
+     * @see #compactRows(IntPredicate)
+     */
+    public int clearRows(int... rows) {
+    	boolean[] removed = new boolean[getHeight()];
+    	for (int y : rows) {
+    		checkRow(y);
+    		removed[y] = true;
+    	}
+    	return compactRows((y) -> removed[y]);
+    }
+    
+    /** Удаляет строки матрицы, отобранные условием, сдвигая вышележащие строки вниз.
+     * Освободившиеся верхние строки становятся пустыми. Строки переносятся целиком
+     * за один проход снизу вверх, слушатели получают не более 1 события с ячейками,
+     * которые фактически изменились.
+     * @param removed Условие удаления строки по ее ординате, проверяется по разу для
+     * каждой строки.
+     * @return Число удаленных строк.
+     * @throws NullPointerException условие null
+     * @throws UnsupportedOperationException изменяемая ячейка защищена от модификаций,
+     * матрица не изменяется
+     */
+    public int compactRows(IntPredicate removed) {
+    	int height = getHeight();
+    	
+    	// источник каждой строки, -1 - пустая строка
+    	int[] sources = new int[height];
+    	int to = height - 1;
+    	for (int y = height - 1; y >= 0; y--)
+    		if (!removed.test(y)) sources[to--] = y;
+    	int count = to + 1;
+    	if (count == 0)
+    		return 0;
+    	checkWritable();
+    	Arrays.fill(sources, 0, count, -1);
+    	
+    	// все изменяемые ячейки модифицируемы?
+    	for (int y = height - 1; y >= 0; y--) {
+    		if (sources[y] == y)
+    			continue;
+    		for (int x = 0; x < getWidth(); x++) {
+    			B brick = sources[y] < 0 ? null : get(x, sources[y]);
+    			if (!Objects.equals(get(x, y), brick))
+    				checkModifiable(x, y);
+    		}
+    	}
+    	
+        boolean innerSeries = isFiringImmediately();
+        if (innerSeries) startSeries();
+
+        try {
+        	for (int y = height - 1; y >= 0; y--) {
+        		if (sources[y] < 0)
+        			fillRow(y, null);
+        		else
+        			copyRow(sources[y], y);
+        	}
+        }
+        finally {
+            if (innerSeries) stopSeries();
+        }
+        return count;
+    }
+    
+    /** Обновляет битовую доску.
+     */
+    @Override
+    protected void onElementChanged(int x, int y, B oldBrick, B newBrick) {
+    	if ((oldBrick == null) != (newBrick == null))
+    		occupancy[y * words + x / Long.SIZE] ^= 1L << x;
     }
 
     /** Возвращает элементы массива.
@@ -49,10 +250,22 @@ public class BrickMatrixN<B> extends BrickMatrix<B>
 	 * @throws IllegalArgumentException коллекция пустая
      */
     public List<B> get(Set<Point> cells) {
+        return get(toCellSet(cells));  
+    }
+    
+    /** Возвращает элементы массива.
+     * @param cells Координаты элементов.
+     * @return Значения элементов, в т.ч. null.
+     * @throws NullPointerException коллекция null
+	 * @throws IllegalArgumentException коллекция пустая, размеры коллекции и матрицы различаются
+	 * @see #get(Set)
+     */
+    public List<B> get(CellSet cells) {
         check(cells);
 
         List<B> bricks = new ArrayList<>(cells.size());
-        cells.forEach((c) -> bricks.add(get(c)));
+        for (int i = 0; i < cells.size(); i++)
+        	bricks.add(get(cells.getX(i), cells.getY(i)));
         return bricks;  
     }
 
@@ -64,8 +277,22 @@ public class BrickMatrixN<B> extends BrickMatrix<B>
 	 * @throws IllegalArgumentException коллекция пустая
      */
     public boolean containsAll(Set<Point> cells) {
-    	for (B b : get(cells))
-    		if (b == null) return false;
+    	return containsAll(toCellSet(cells));
+    }
+    
+    /** Проверяет, содержат ли все ячейки матрицы блоки.
+     * Проверка выполняется по битовой доске, без создания объектов.
+     * @param cells Координаты проверяемых ячеек.
+     * @return true, если все ячейки заполнены. Иначе false.
+     * @throws NullPointerException коллекция null
+	 * @throws IllegalArgumentException коллекция пустая, размеры коллекции и матрицы различаются
+	 * @see #containsAll(Set)
+     */
+    public boolean containsAll(CellSet cells) {
+    	check(cells);
+    	
+    	for (int i = 0; i < cells.size(); i++)
+    		if (!contains(cells.getX(i), cells.getY(i))) return false;
     	return true;
     }
     
@@ -82,14 +309,29 @@ public class BrickMatrixN<B> extends BrickMatrix<B>
 	 * любой блок null
      */
     public void addAll(Set<Point> cells, List<B> bricks) {
-        check (cells, bricks);
+        check(cells, bricks);
+        addAll(toCellSet(cells), bricks);
+    }
+    
+    /** Добавляет блоки во все ячейки матрицы.
+     * @param cells Координаты целевых ячеек.
+     * @param bricks Добавляемые блоки.
+     * @throws NullPointerException коллекции null
+	 * @throws IllegalStateException любая из ячеек не пуста
+	 * @throws IllegalArgumentException коллекции пусты, размеры различаются, 
+	 * любой блок null
+	 * @see #addAll(Set, List)
+     */
+    public void addAll(CellSet cells, List<B> bricks) {
+        check(cells, bricks);
 
         boolean innerSeries = isFiringImmediately();
         if (innerSeries) startSeries();
 
         try {                
             Iterator<B> b = bricks.iterator();
-            cells.forEach((c) -> add(c, b.next()));
+            for (int i = 0; i < cells.size(); i++)
+            	add(cells.getX(i), cells.getY(i), b.next());
         }
         finally {
             if (innerSeries) stopSeries();
@@ -111,6 +353,18 @@ public class BrickMatrixN<B> extends BrickMatrix<B>
 	 * @throws IllegalArgumentException коллекция пуста
      */
     public List<B> removeAll(Set<Point> cells) {
+        return removeAll(toCellSet(cells));
+    }
+    
+    /** Удаляет блоки из всех ячеек матрицы.
+     * @param cells Координаты целевых ячеек.
+     * @return Удаленные блоки.
+     * @throws NullPointerException коллекция null
+	 * @throws IllegalStateException любая из ячеек пуста
+	 * @throws IllegalArgumentException коллекция пуста, размеры коллекции и матрицы различаются
+	 * @see #removeAll(Set)
+     */
+    public List<B> removeAll(CellSet cells) {
         check(cells);
 
         boolean innerSeries = isFiringImmediately();
@@ -118,7 +372,8 @@ public class BrickMatrixN<B> extends BrickMatrix<B>
 
         try { 
             List<B> bricks = new ArrayList<>(cells.size());
-            cells.forEach((c) -> bricks.add(remove(c)));
+            for (int i = 0; i < cells.size(); i++)
+            	bricks.add(remove(cells.getX(i), cells.getY(i)));
             return bricks;
         }
         finally {
@@ -144,13 +399,28 @@ public class BrickMatrixN<B> extends BrickMatrix<B>
      */
     public void replaceAll(Set<Point> cells, List<B> newBricks) {         
         check(cells, newBricks);
+        replaceAll(toCellSet(cells), newBricks);
+    }
+    
+    /** Заменяет блоки во всех ячейках матрицы.
+     * @param cells Координаты целевых ячеек.
+     * @param newBricks Заменяющие блоки.
+     * @throws NullPointerException коллекции null
+	 * @throws IllegalStateException любая из ячеек пуста
+	 * @throws IllegalArgumentException коллекции пусты, размеры различаются,
+	 * любой блок null, равен заменяемому
+	 * @see #replaceAll(Set, List)
+     */
+    public void replaceAll(CellSet cells, List<B> newBricks) {         
+        check(cells, newBricks);
 
         boolean innerSeries = isFiringImmediately();
         if (innerSeries) startSeries();
 
         try {
             Iterator<B> b = newBricks.iterator();
-            cells.forEach((c) -> replace(c, b.next()));
+            for (int i = 0; i < cells.size(); i++)
+            	replace(cells.getX(i), cells.getY(i), b.next());
         }
         finally {
             if (innerSeries) stopSeries();
@@ -176,25 +446,51 @@ public class BrickMatrixN<B> extends BrickMatrix<B>
     public boolean transferAll(Set<Point> fromCells, Set<Point> toCells) {
         check(fromCells, toCells);
         
+        CellSet from = toCellSet(fromCells);
+        CellSet to = new CellSet(getWidth(), getHeight());
+        for (Point c : toCells) {
+        	if (!to.inBounds(c.x, c.y)) {
+        		// ячейку за границами не занять: перенос невозможен
+        		for (int i = 0; i < from.size(); i++)
+        			if (!contains(from.getX(i), from.getY(i)))
+        				throw new IllegalStateException(String.format(
+        				  "ячейка (%d, %d) пуста", from.getX(i), from.getY(i)));
+        		return false;
+        	}
+        	to.add(c.x, c.y);
+        }
+        return transferAll(from, to);
+    }
+    
+    /** Переносит блоки из всех ячеек матрицы в другие ячейки.
+     * Ячейки за границами матрицы коллекция содержать не может, поэтому перенос
+     * не удается только из-за занятых ячеек назначения.
+     * @param fromCells Координаты исходных ячеек.
+     * @param toCells Координаты целевых ячеек.
+     * @return true, если удалось перенести все N блоков. Иначе false.
+     * @throws NullPointerException коллекции null
+	 * @throws IllegalStateException любая из исходных ячеек пуста
+	 * @throws IllegalArgumentException коллекции пусты, размеры различаются
+	 * @see #transferAll(Set, Set)
+     */
+    public boolean transferAll(CellSet fromCells, CellSet toCells) {
+        check(fromCells, toCells);
+        
         boolean innerSeries = isFiringImmediately();
         if (innerSeries) startSeries(); 
 
         try {
             List<B> bricks = removeAll(fromCells);
               
-            Iterator<B> bit = bricks.iterator();
-            for (Point c : toCells) {
+            for (int i = 0; i < toCells.size(); i++) {
                 try {
-                    add(c, bit.next());
+                    add(toCells.getX(i), toCells.getY(i), bricks.get(i));
                 } 
-                catch (OutOfBoundsException | IllegalStateException e) {
-                    for (Point c2 : toCells) {
-                        if (c2.equals(c)) {
-                            addAll(fromCells, bricks);
-                            return false;
-                        }
-                        remove(c2);
-                    }
+                catch (IllegalStateException e) {
+                    for (int j = 0; j < i; j++)
+                        remove(toCells.getX(j), toCells.getY(j));
+                    addAll(fromCells, bricks);
+                    return false;
                 }
             }
             return true;
@@ -218,36 +514,55 @@ public class BrickMatrixN<B> extends BrickMatrix<B>
     public int transferSome(Set<Point> fromCells, Set<Point> toCells) {
         check(fromCells, toCells);  
         
-        boolean innerSeries = isFiringImmediately();
-        if (innerSeries) startSeries(); 
+        CellSet from = new CellSet(getWidth(), getHeight());
+        CellSet to = new CellSet(getWidth(), getHeight());
+        Iterator<Point> toIt = toCells.iterator();
+        for (Point cfrom : fromCells) {
+        	Point cto = toIt.next();
+        	if (contains(cfrom.x, cfrom.y)) {
+        		if (!to.inBounds(cto.x, cto.y))
+        			return 0;
+        		from.add(cfrom.x, cfrom.y);
+        		to.add(cto.x, cto.y);
+        	}
+        }
+        if (from.isEmpty())
+        	return 0;
+        return transferAll(from, to) ? from.size() : 0;
+    }
+    
+    /** Переносит блоки из некоторых ячеек матрицы в другие ячейки.
+     * @param fromCells Координаты исходных ячеек.
+     * @param toCells Координаты целевых ячеек.
+     * @return Число перемещенных блоков.
+     * @throws NullPointerException коллекции null
+	 * @throws IllegalArgumentException коллекции пусты, размеры различаются
+	 * @see #transferSome(Set, Set)
+     */
+    public int transferSome(CellSet fromCells, CellSet toCells) {
+        check(fromCells, toCells);  
         
-        try {  
-            Set<Point> fromCells2  = new LinkedHashSet<>();
-            Set<Point> toCells2    = new LinkedHashSet<>();   
-            Iterator<Point> fromIt = fromCells.iterator();
-            Iterator<Point> toIt   = toCells.iterator();
-            get(fromCells).forEach((brick) -> {
-                Point cfrom = fromIt.next();
-                Point cto = toIt.next();
-                if (brick != null) {
-                    fromCells2.add(cfrom);
-                    toCells2.add(cto);
-                }
-            });
-            if (transferAll(fromCells2, toCells2))
-                return fromCells2.size();
-            return 0;
+        CellSet from = new CellSet(getWidth(), getHeight());
+        CellSet to = new CellSet(getWidth(), getHeight());
+        for (int i = 0; i < fromCells.size(); i++) {
+        	if (contains(fromCells.getX(i), fromCells.getY(i))) {
+        		from.add(fromCells.getX(i), fromCells.getY(i));
+        		to.add(toCells.getX(i), toCells.getY(i));
+        	}
         }
-        finally {
-            if (innerSeries) stopSeries();
-        }  
+        if (from.isEmpty())
+        	return 0;
+        return transferAll(from, to) ? from.size() : 0;
     }
     
     /** Подсчитывает блоки в ячейках всей матрицы.
      * @return Число не пустых ячеек.
      */
     public int count() {
-    	return count(Cells.all(size()));
+    	int count = 0;
+    	for (long word : occupancy)
+    		count += Long.bitCount(word);
+    	return count;
     }
     
     /** Подсчитывает блоки в ячейках матрицы.
@@ -258,9 +573,22 @@ public class BrickMatrixN<B> extends BrickMatrix<B>
 	 * @throws IllegalArgumentException коллекция пустая
      */
     public int count(Set<Point> cells) {
+        return count(toCellSet(cells));
+    }
+    
+    /** Подсчитывает блоки в ячейках матрицы.
+     * @param cells Координаты проверяемых ячеек.
+     * @return Число не пустых ячеек.
+     * @throws NullPointerException коллекция null
+	 * @throws IllegalArgumentException коллекция пустая, размеры коллекции и матрицы различаются
+	 * @see #count(Set)
+     */
+    public int count(CellSet cells) {
+    	check(cells);
+    	
         int count = 0;
-        for (B b : get(cells))
-            if (b != null) count++;
+        for (int i = 0; i < cells.size(); i++)
+            if (contains(cells.getX(i), cells.getY(i))) count++;
         return count;
     }
     
@@ -273,12 +601,26 @@ public class BrickMatrixN<B> extends BrickMatrix<B>
 	 * @throws IllegalArgumentException коллекция пустая, блок null
      */
     public int count(Set<Point> cells, B brick) {
+    	return count(toCellSet(cells), brick);
+    }
+    
+    /** Подсчитывает определенные блоки в ячейках матрицы.
+     * @param cells Координаты проверяемых ячеек.
+     * @param block Блок для сравнения.
+     * @return Число совпадений.
+     * @throws NullPointerException коллекция null
+	 * @throws IllegalArgumentException коллекция пустая, размеры коллекции и матрицы различаются,
+	 * блок null
+	 * @see #count(Set, Object)
+     */
+    public int count(CellSet cells, B brick) {
     	if (brick == null)
     		throw new IllegalArgumentException("блок null");
+    	check(cells);
     	
         int count = 0;
-        for (B b : get(cells))
-            if (brick.equals(b)) count++;
+        for (int i = 0; i < cells.size(); i++)
+            if (brick.equals(get(cells.getX(i), cells.getY(i)))) count++;
         return count;
     }
     
@@ -300,6 +642,47 @@ public class BrickMatrixN<B> extends BrickMatrix<B>
     	return super.toString() + "blocks: " + count() + '\n';
     }
     
+    // проверяет ординату строки
+    private void checkRow(int y) {
+    	if (y < 0 || y >= getHeight())
+    		throw new OutOfBoundsException(0, y);
+    }
+    
+    // преобразует коллекцию координат
+    private CellSet toCellSet(Set<Point> cells) {
+    	check(cells);
+    	return CellSet.of(cells, size());
+    }
+    
+    // проверяет аргумент как коллекцию
+    private void check(CellSet cells) {
+    	if (cells == null)   
+    		throw new NullPointerException("коллекция координат");
+       	if (cells.isEmpty())
+       		throw new IllegalArgumentException("коллекция координат: пустая");
+       	if (cells.getWidth() != getWidth() || cells.getHeight() != getHeight())
+       		throw new IllegalArgumentException("коллекция координат: размеры матрицы различаются");
+    }
+    
+    // проверяет аргументы как коллекции
+    private void check(CellSet cells, List<B> bricks) {
+    	check(cells);
+
+       	if (bricks == null)  
+       		throw new NullPointerException("коллекция блоков");
+       	if (bricks.size() != cells.size()) 
+       		throw new IllegalArgumentException("коллекции: размеры различаются");
+    }
+    
+    // проверяет аргументы как коллекции
+    private void check(CellSet cells1, CellSet cells2) {
+    	check(cells1);
+    	check(cells2);
+        
+    	if (cells1.size() != cells2.size())
+          	throw new IllegalArgumentException("коллекции: размеры различаются");   
+    }
+    
     // проверяет аргумент как коллекцию
     private void check(Set<Point> cells) {
     	if (cells == null)   
@@ -336,5 +719,10 @@ public class BrickMatrixN<B> extends BrickMatrix<B>
    		
    		matrix.addAll(Cells.row(0, 3), Collections.nCopies(3, 0));
    		matrix.transferSome(Cells.row(0, 6), Cells.row(1, 6));
+   		matrix.addAll(Cells.area(0, 2, 6, 2), Collections.nCopies(12, 1));
+   		System.out.println("заполненные строки " + Arrays.toString(matrix.fullRows()) +
+   		  ", блоков в строке 1: " + matrix.occupiedCount(1) +
+   		  ", маска строки 1: " + Long.toBinaryString(matrix.rowMask(1)));
+   		System.out.println("удалено строк " + matrix.clearRows(matrix.fullRows()));
    }            
 }
@@ -6,5 +6,27 @@ package framework.matrix.model.pieces;
  */
 public enum Direction 
 {
-	LEFT, RIGHT, UP, DOWN
+	LEFT(-1, 0), RIGHT(1, 0), UP(0, -1), DOWN(0, 1);
+	
+	private final int dx;	// приращение абсциссы
+	private final int dy;	// приращение ординаты
+	
+	private Direction(int dx, int dy) {
+		this.dx = dx;
+		this.dy = dy;
+	}
+	
+	/** Возвращает приращение абсциссы при сдвиге на 1 столбец.
+	 * @return -1, 0 или 1
+	 */
+	public int getDX() {
+		return dx;
+	}
+	
+	/** Возвращает приращение ординаты при сдвиге на 1 строку.
+	 * @return -1, 0 или 1
+	 */
+	public int getDY() {
+		return dy;
+	}
 }
@@ -4,6 +4,7 @@ import java.awt.Dimension;
 import java.awt.Point;
 import java.util.*;
 
+import framework.matrix.model.array.CellSet;
 import framework.matrix.model.array.OutOfBoundsException;
 import framework.matrix.model.bricks.Cells;
 
@@ -31,35 +32,76 @@ public class MoveablePiece<B> extends Piece<B>
 		super(matrix, cells, bricks);
 	}	
 	
+	/** Конструирует фигуру.
+     * @param matrix Матрица, в которую добавляется фигура.
+     * @param cells Координаты целевых ячеек.
+     * @param bricks Добавляемые блоки.
+	 * @throws NotEnoughSpaceException не хватило места в матрице
+	 * @throws NullPointerException аргументы null
+	 * @throws IllegalArgumentException коллекции пусты, размеры различаются, блоки null,
+	 * размеры коллекции координат и матрицы различаются
+	 */
+	public MoveablePiece(PieceMatrix<B, ?> matrix, CellSet cells, List<B> bricks) 
+	  throws NotEnoughSpaceException 
+	{
+		super(matrix, cells, bricks);
+	}	
+	
+	/** Конструирует копию фигуры в копии ее матрицы.
+	 * @param original Копируемая фигура.
+	 * @param matrix Копия матрицы оригинала.
+	 * @throws NullPointerException аргументы null
+	 */
+	protected MoveablePiece(MoveablePiece<B> original, PieceMatrix<B, ?> matrix) {
+		super(original, matrix);
+	}
+	
+	@Override
+	protected MoveablePiece<B> copy(PieceMatrix<B, ?> matrix) {
+		return new MoveablePiece<>(this, matrix);
+	}
+	
 	/**{@inheritDoc}
 	 * @throws IllegalStateException фигура не существует
 	 */
 	@Override
 	public boolean move(Direction dir) {
-		if (!isExist())
-			throw new IllegalStateException("фигура не существует");
+		if (!canMove(dir))
+			return false;
         
-		Set<Point> toCells = copyCells();
-		toCells.forEach((c) -> {
-            switch (dir) {
-                case LEFT:  c.x --; break;
-                case RIGHT: c.x ++; break;
-                case UP:    c.y --; break;
-                case DOWN:  c.y ++; break;
-            }
-        });
+		int dx = dir.getDX(), dy = dir.getDY();
+		CellSet fromCells = cellSet();
+		CellSet toCells = new CellSet(fromCells.getWidth(), fromCells.getHeight());
+		for (int i = 0; i < fromCells.size(); i++)
+			toCells.add(fromCells.getX(i) + dx, fromCells.getY(i) + dy);
 		
 		unlock(true);
-		boolean moved = matrix.transferAll(cells, toCells);
+		boolean moved = matrix.transferAll(fromCells, toCells);
 		unlock(false);
 		
 		if (moved) {
-			cells = toCells;
+			setCells(toCells);
 			return true;
 		}
 		return false;
 	}
 	
+	/**{@inheritDoc}
+	 * @throws IllegalStateException фигура не существует
+	 */
+	@Override
+	public boolean canMove(Direction dir) {
+		if (!isExist())
+			throw new IllegalStateException("фигура не существует");
+		
+		int dx = dir.getDX(), dy = dir.getDY();
+		CellSet fromCells = cellSet();
+		for (int i = 0; i < fromCells.size(); i++)
+			if (!matrix.isFreeFor(fromCells.getX(i) + dx, fromCells.getY(i) + dy, this))
+				return false;
+		return true;
+	}
+	
 	public static void main(String[] args) {
 		PieceMatrix<Integer, Integer> matrix = new PieceMatrix<>(
 		  Integer.class, new Dimension(6, 4), new CreatorStub2());
@@ -4,8 +4,8 @@ import java.awt.Point;
 import java.awt.Rectangle;
 import java.util.*;
 
+import framework.matrix.model.array.CellSet;
 import framework.matrix.model.array.OutOfBoundsException;
-import framework.matrix.model.bricks.Cells;
 
 /** Фигура блоков в матрице.
  * Фигура - совокупность блоков, рассматриваемых как единое целое. Фигура состоит
@@ -19,12 +19,17 @@ import framework.matrix.model.bricks.Cells;
  * Любое обращение к фигуре приведет к ошибке, всегда проверяйте состояние с помощью
  * {@link #isExist()}.
  * 
- * Класс содержит заглушки методов {@link #move(Direction)} и {@link #rotate()}.
- * Переопределите их если требуются действия сдвига или поворота.
+ * Класс содержит заглушки методов {@link #move(Direction)} и {@link #rotate()}, а также
+ * проверок {@link #canMove(Direction)} и {@link #canRotate()}. Переопределите их если
+ * требуются действия сдвига или поворота.
  * 
  * Чтобы выполнить модифицирующие действия над блоками фигуры, окружите их вызовами
  * {@link #unlock(boolean)}. Каждое действие должно начитаться с проверки состояния
- * фигуры.
+ * фигуры. Матрица ведет индекс владельцев ячеек, поэтому новые координаты ячеек
+ * фигуры задавайте только через {@link #setCells(CellSet)}.
+ * 
+ * Координаты ячеек хранятся в {@link CellSet} ({@link #cellSet()}). Поле {@link #cells}
+ * и {@link #copyCells()} представляют их как Set&lt;Point&gt; для прежних подклассов.
  * 
  * @author Игорь
  * @param <B> Тип блоков.
@@ -32,8 +37,10 @@ import framework.matrix.model.bricks.Cells;
 public class Piece<B>
 {
 	protected PieceMatrix<B, ?> matrix;	// рабочая матрица
-	protected Set<Point> cells;			// координаты ячеек фигуры
+	protected Set<Point> cells;			// координаты ячеек фигуры, представление только для чтения
+	private CellSet cellSet;			// координаты ячеек фигуры
 	private boolean exist;				// признак "фигура существует"
+			  int id;					// номер фигуры в матрице, 0 - не назначен
 	
 	/** Конструирует пустую фигуру.
 	 * Исходя из определения, такая фигура не существует с самого начала.
@@ -51,6 +58,22 @@ public class Piece<B>
 	 */
 	public Piece(PieceMatrix<B, ?> matrix, Set<Point> cells, List<B> bricks) 
 	  throws NotEnoughSpaceException 
+	{
+		this(matrix, CellSet.of(cells, matrix.size()), bricks);
+	}
+	
+	/** Конструирует фигуру.
+	 * Коллекция координат копируется.
+	 * @param matrix Матрица, в которую добавляется фигура.
+	 * @param cells Координаты целевых ячеек.
+	 * @param bricks Добавляемые блоки.
+	 * @throws NotEnoughSpaceException не хватило места в матрице
+	 * @throws NullPointerException аргументы null
+	 * @throws IllegalArgumentException коллекции пусты, размеры различаются, блоки null,
+	 * размеры коллекции координат и матрицы различаются
+	 */
+	public Piece(PieceMatrix<B, ?> matrix, CellSet cells, List<B> bricks) 
+	  throws NotEnoughSpaceException 
 	{
 		try {
 			matrix.addAll(cells, bricks);
@@ -58,10 +81,30 @@ public class Piece<B>
 		catch (IllegalStateException e) {
 			throw new NotEnoughSpaceException();
 		}
-		matrix.pieces.add(this);
 		this.matrix = matrix;
-		this.cells = cells;
+		this.cellSet = new CellSet(cells);
+		this.cells = new CellsView();
 		this.exist = true;	
+		matrix.register(this);
+	}
+	
+	/** Конструирует копию фигуры в копии ее матрицы.
+	 * Копия получает тот же номер и координаты ячеек, матрица не модифицируется:
+	 * ее блоки и индекс владельцев уже скопированы с оригинала.
+	 * @param original Копируемая фигура.
+	 * @param matrix Копия матрицы оригинала.
+	 * @throws NullPointerException аргументы null
+	 * @see PieceMatrix#fork()
+	 */
+	protected Piece(Piece<B> original, PieceMatrix<B, ?> matrix) {
+		if (matrix == null)
+			throw new NullPointerException();
+		
+		this.matrix = matrix;
+		this.cellSet = new CellSet(original.cellSet);
+		this.cells = new CellsView();
+		this.exist = original.exist;
+		this.id = original.id;
 	}
 	
 	/** Удаляет фигуру из матрицы.
@@ -72,7 +115,7 @@ public class Piece<B>
 			throw new IllegalStateException("фигура не существует");
 		
 		unlock(true);
-		matrix.removeAll(cells);
+		matrix.removeAll(cellSet);
 		unlock(false);
 		
 		destroy();
@@ -86,7 +129,7 @@ public class Piece<B>
 		if (!exist)
 			throw new IllegalStateException("фигура не существует");
 		
-		matrix.pieces.remove(this);
+		matrix.unregister(this);
 		exist = false;	
 	}
 		
@@ -97,6 +140,13 @@ public class Piece<B>
 		return exist;
 	}
 	
+	/** Возвращает матрицу фигуры.
+	 * @return null, если фигура пустая.
+	 */
+	public PieceMatrix<B, ?> getMatrix() {
+		return matrix;
+	}
+	
 	/** Сдвигает фигуру на 1 строку/столбец.
 	 * @param dir Направление перемещения.
 	 * @return true, если удалось сдвинуть.
@@ -107,6 +157,17 @@ public class Piece<B>
 		throw new UnsupportedOperationException();
 	}
 	
+	/** Проверяет, можно ли сдвинуть фигуру на 1 строку/столбец.
+	 * Не модифицирует матрицу и не создает объектов.
+	 * @param dir Направление перемещения.
+	 * @return true, если сдвиг удастся.
+	 * @throws IllegalStateException фигура не существует
+	 * @throws UnsupportedOperationException если действие не поддерживается
+	 */
+	public boolean canMove(Direction dir) {
+		throw new UnsupportedOperationException();
+	}
+	
 	/** Поворачивает фигуру на угол 90* против часовой стрелки.
 	 * @return true, если удалось повернуть.
 	 * @throws IllegalStateException фигура не существует
@@ -116,6 +177,16 @@ public class Piece<B>
 		throw new UnsupportedOperationException();
 	}
 	
+	/** Проверяет, можно ли повернуть фигуру на угол 90* против часовой стрелки.
+	 * Не модифицирует матрицу и не создает объектов.
+	 * @return true, если поворот удастся.
+	 * @throws IllegalStateException фигура не существует
+	 * @throws UnsupportedOperationException если действие не поддерживается
+	 */
+	public boolean canRotate() {
+		throw new UnsupportedOperationException();
+	}
+	
 	/** Возвращает описанную область.
 	 * @return
 	 * @throws IllegalStateException фигура не существует
@@ -124,15 +195,15 @@ public class Piece<B>
 		if (!exist)
 			throw new IllegalStateException("фигура не существует");
 		
-		int left = matrix.size().width - 1;
+		int left = matrix.getWidth() - 1;
         int right  = 0;
-        int top  = matrix.size().height - 1;
+        int top  = matrix.getHeight() - 1;
         int bottom = 0;
-        for (Point c : cells) {
-            left   = Math.min(left, c.x);
-            right  = Math.max(right, c.x);
-            top    = Math.min(top, c.y);
-            bottom = Math.max(bottom, c.y);
+        for (int i = 0; i < cellSet.size(); i++) {
+            left   = Math.min(left, cellSet.getX(i));
+            right  = Math.max(right, cellSet.getX(i));
+            top    = Math.min(top, cellSet.getY(i));
+            bottom = Math.max(bottom, cellSet.getY(i));
         }    
         return new Rectangle(left, top, right - left + 1, bottom - top + 1);  
 	}
@@ -148,12 +219,22 @@ public class Piece<B>
 		
 		unlock(true);
 		try {	
-			matrix.replaceAll(cells, Collections.nCopies(cells.size(), brick));
+			matrix.replaceAll(cellSet, Collections.nCopies(cellSet.size(), brick));
 		} finally {
 			unlock(false);
 		}
 	}
 		
+	/** Создает копию фигуры в копии ее матрицы.
+	 * Подклассы с собственным состоянием переопределяют метод, вызывая свой конструктор копии.
+	 * @param matrix Копия матрицы фигуры.
+	 * @return Копия фигуры.
+	 * @see #Piece(Piece, PieceMatrix)
+	 */
+	protected Piece<B> copy(PieceMatrix<B, ?> matrix) {
+		return new Piece<>(this, matrix);
+	}
+	
 	/** Разблокирует ячейки фигуры.
 	 * @param aFlag true, чтобы снять защиту с ячеек фигуры.
 	 * @throws IllegalStateException фигура не существует
@@ -165,6 +246,40 @@ public class Piece<B>
 		matrix.unlocker = aFlag? this : null;
 	}
 
+	/** Задает новые координаты ячеек фигуры.
+	 * Вызывайте после того, как блоки фигуры перенесены в матрице, чтобы обновить индекс
+	 * владельцев ячеек матрицы.
+	 * @param newCells Координаты ячеек, коллекция не копируется.
+	 * @throws IllegalStateException фигура не существует
+	 */
+	protected void setCells(CellSet newCells) {
+		if (!exist)
+			throw new IllegalStateException("фигура не существует");
+		
+		matrix.disown(this);
+		cellSet = newCells;
+		matrix.own(this);
+	}
+
+	/** Возвращает координаты ячеек фигуры.
+	 * Не модифицируйте коллекцию, новые координаты задавайте через {@link #setCells(CellSet)}.
+	 * @return Коллекция фигуры, не копия.
+	 */
+	protected CellSet cellSet() {
+		return cellSet;
+	}
+
+    /** Предоставляет копию координат ячеек фигуры.
+     * @return
+     * @throws IllegalStateException фигура не существует
+     */
+    protected CellSet copyCellSet() {
+    	if (!exist)
+			throw new IllegalStateException("фигура не существует");
+        
+        return new CellSet(cellSet);
+    }
+
     /** Предоставляет копию координат ячеек фигуры.
      * @return
      * @throws IllegalStateException фигура не существует
@@ -173,9 +288,7 @@ public class Piece<B>
     	if (!exist)
 			throw new IllegalStateException("фигура не существует");
         
-        Set<Point> copy = new LinkedHashSet<>(cells.size(), 1);
-        cells.forEach((c) -> copy.add((Point)c.clone()));
-        return copy;
+        return cellSet.toSet();
     }
 	
   	/** Возвращает строковое представление фигуры.
@@ -195,7 +308,26 @@ public class Piece<B>
 		if (!exist)
 			return "фигура не существует";
 		return getClass().getSimpleName() + " [\n " +
-		  Cells.toString(cells) + '\n' +
+		  cellSet + '\n' +
 		  " разблокировка " + (matrix.unlocker == this ? "вкл\n]" : "выкл\n]");
 	}
+	
+	// координаты ячеек фигуры как Set<Point>, изменения фигуры видны сразу
+	private class CellsView extends AbstractSet<Point>
+	{
+		@Override
+		public int size() {
+			return cellSet.size();
+		}
+		
+		@Override
+		public boolean contains(Object o) {
+			return o instanceof Point && cellSet.contains((Point)o);
+		}
+		
+		@Override
+		public Iterator<Point> iterator() {
+			return cellSet.iterator();
+		}
+	}
 }
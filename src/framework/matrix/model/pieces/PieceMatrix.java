@@ -4,7 +4,7 @@ import java.awt.Dimension;
 import java.awt.Point;
 import java.util.*;
 
-import framework.matrix.model.array.OutOfBoundsException;
+import framework.matrix.model.array.CellSet;
 import framework.matrix.model.bricks.BrickMatrixN;
 import framework.matrix.model.bricks.Cells;
 
@@ -12,10 +12,20 @@ import framework.matrix.model.bricks.Cells;
  * Фигура создается с помощью {@link #create(Object)}, дальнейшие манипуляции над ней
  * уже через интерфейс фигуры. Блоки фигур защищены от модификаций, только сама фигура
  * может манипулировать ими. Для этого она устанавливает переменной unlocker ссылку на
- * себя, чтобы {@link #set(Point, Object)} пропустил изменение элемента фигуры. Пустая
+ * себя, чтобы {@link #checkModifiable(int, int)} пропустил изменение элемента фигуры,
+ * будь то запись отдельного элемента или перенос строк целиком. Пустая
  * ячейка, исходя из определения, не может относиться к фигуре. Проверить, является ли
  * ячейка нейтральной можно с помощью {@link #isNeutral(Point)}.
  * 
+ * Принадлежность ячеек фигурам хранится в индексе владельцев - массиве номеров фигур,
+ * по одному на ячейку. Фигура обновляет его при создании, перемещении и разрушении,
+ * поэтому проверки принадлежности не зависят от числа фигур.
+ * 
+ * Копия матрицы {@link #fork()} переносит фигуры: каждая фигура оригинала получает в
+ * копии двойника с тем же номером, найти его можно {@link #counterpart(Piece)}. Строки
+ * блоков разделяются до первой записи, индекс владельцев копируется. Слушатели и
+ * разблокировка не копируются. Фигуры снимка {@link #snapshot()} не модифицируются.
+ * 
  * @author Игорь
  * @param <B> Тип блоков. Рекомендуется перечисление или неизменяемый тип.
  * @param <P> Тип фигур.
@@ -25,6 +35,8 @@ public class PieceMatrix<B, P> extends BrickMatrixN<B>
 	private PieceCreator<B, P> creator;		// делегат создания фигур
 		    List<Piece<B>> pieces;			// фигуры матрицы
 		    Piece<B> unlocker;				// фигура, разблокировавшая свои ячейки
+	private final int[] owners;				// номера фигур-владельцев ячеек построчно, 0 - нет
+	private int lastPieceId;				// последний выданный номер фигуры
 	
 	/** Конструирует матрицу стандартных размеров.
 	 * @param brickType Описывает тип блоков.
@@ -51,6 +63,36 @@ public class PieceMatrix<B, P> extends BrickMatrixN<B>
 		this.creator = creator;
 		this.pieces = new ArrayList<>();
 		this.unlocker = null;
+		this.owners = new int[size.width * size.height];
+		this.lastPieceId = 0;
+	}
+	
+	/** Конструирует копию матрицы.
+	 * Фигуры оригинала переносятся в копию {@link Piece#copy(PieceMatrix)}.
+	 * @param original Копируемая матрица.
+	 * @throws NullPointerException оригинал null
+	 */
+	protected PieceMatrix(PieceMatrix<B, P> original) {
+		super(original);
+		this.creator = original.creator;
+		this.owners = original.owners.clone();
+		this.lastPieceId = original.lastPieceId;
+		this.unlocker = null;
+		this.pieces = new ArrayList<>(original.pieces.size());
+		for (Piece<B> p : original.pieces)
+			pieces.add(p.copy(this));
+	}
+	
+	@Override
+	public PieceMatrix<B, P> fork() {
+		return new PieceMatrix<>(this);
+	}
+	
+	@Override
+	public PieceMatrix<B, P> snapshot() {
+		PieceMatrix<B, P> snapshot = fork();
+		snapshot.markReadOnly();
+		return snapshot;
 	}
 	
 	/** Создает фигуру в матрице.
@@ -69,11 +111,107 @@ public class PieceMatrix<B, P> extends BrickMatrixN<B>
 	 * @return true, если ячейка не содержит блока ни одной из фигур.
 	 */
 	public boolean isNeutral(Point cell) {
-		for (Piece<B> p : pieces)
-			if (p.cells.contains(cell)) return false;
+		return isNeutral(cell.x, cell.y);
+	}
+	
+	/** Проверяет, является ли ячейка нейтральной.
+	 * @param x Абсцисса проверяемой ячейки.
+	 * @param y Ордината проверяемой ячейки.
+	 * @return true, если ячейка не содержит блока ни одной из фигур.
+	 */
+	public boolean isNeutral(int x, int y) {
+		if (x < 0 || x >= getWidth() || y < 0 || y >= getHeight())
+			return true;
+		return owners[y * getWidth() + x] == 0;
+	}
+	
+	/** Копирует координаты ячеек фигуры, которой принадлежит ячейка.
+	 * Ячейки берутся из индекса владельцев, матрица не просматривается и объекты не
+	 * создаются. Порядок ячеек - порядок блоков фигуры.
+	 * @param x Абсцисса ячейки.
+	 * @param y Ордината ячейки.
+	 * @param cells Упакованные координаты (y * ширина + x) ячеек фигуры, не короче числа ее ячеек.
+	 * @return Число ячеек фигуры, 0 - ячейка нейтральна.
+	 * @throws NullPointerException массив null
+	 * @throws ArrayIndexOutOfBoundsException массив короче числа ячеек фигуры
+	 */
+	public int getOwnerCells(int x, int y, int[] cells) {
+		if (isNeutral(x, y))
+			return 0;
+		int owner = owners[y * getWidth() + x];
+		for (Piece<B> p : pieces) {
+			if (p.id == owner) {
+				CellSet own = p.cellSet();
+				for (int i = 0; i < own.size(); i++)
+					cells[i] = own.get(i);
+				return own.size();
+			}
+		}
+		return 0;
+	}
+	
+	/** Проверяет, можно ли разместить блоки в ячейках.
+	 * Не модифицирует матрицу и не создает объектов.
+	 * @param cells Координаты целевых ячеек.
+	 * @return true, если все ячейки пусты.
+	 * @throws NullPointerException коллекция null
+	 * @throws IllegalArgumentException размеры коллекции и матрицы различаются
+	 */
+	public boolean canPlace(CellSet cells) {
+		if (cells.getWidth() != getWidth() || cells.getHeight() != getHeight())
+			throw new IllegalArgumentException("размеры коллекции и матрицы различаются");
+		
+		for (int i = 0; i < cells.size(); i++)
+			if (contains(cells.getX(i), cells.getY(i))) return false;
 		return true;
 	}
 	
+	/** Проверяет, можно ли разместить блоки в ячейках.
+	 * Не модифицирует матрицу.
+	 * @param cells Координаты целевых ячеек.
+	 * @return true, если все ячейки в границах матрицы и пусты.
+	 * @throws NullPointerException коллекция null, координаты-элемент коллекции null
+	 */
+	public boolean canPlace(Set<Point> cells) {
+		for (Point c : cells)
+			if (!isFree(c.x, c.y, 0)) return false;
+		return true;
+	}
+	
+	// проверяет, свободна ли ячейка для блока фигуры: в границах матрицы, пуста либо уже ее
+	boolean isFreeFor(int x, int y, Piece<?> piece) {
+		return isFree(x, y, piece.id);
+	}
+	
+	// проверяет, в границах ли ячейка и пуста либо принадлежит фигуре с номером owner
+	private boolean isFree(int x, int y, int owner) {
+		if (x < 0 || x >= getWidth() || y < 0 || y >= getHeight())
+			return false;
+		return !contains(x, y) || owner != 0 && owners[y * getWidth() + x] == owner;
+	}
+	
+	/** Заполняет битовые маски занятости строк.
+	 * Бит x маски y установлен, если ячейка (x, y) не пуста и не принадлежит фигуре.
+	 * @param rows Маски строк, не менее высоты матрицы.
+	 * @param except Исключаемая фигура.
+	 * @throws NullPointerException аргументы null
+	 * @throws ArrayIndexOutOfBoundsException масок меньше высоты матрицы
+	 * @throws UnsupportedOperationException ширина матрицы > 64
+	 */
+	public void occupancy(long[] rows, Piece<?> except) {
+		if (getWidth() > Long.SIZE)
+			throw new UnsupportedOperationException("ширина матрицы " + getWidth());
+		
+		int width = getWidth();
+		for (int y = 0; y < getHeight(); y++) {
+			long row = 0;
+			for (int x = 0, i = y * width; x < width; x++, i++)
+				if (contains(x, y) && (except.id == 0 || owners[i] != except.id))
+					row |= 1L << x;
+			rows[y] = row;
+		}
+	}
+	
 	/** Подсчитывает фигуры в матрице.
 	 * @return Число фигур.
 	 */
@@ -81,34 +219,82 @@ public class PieceMatrix<B, P> extends BrickMatrixN<B>
 		return pieces.size();
 	}
 	
-	/** Устанавливает элемент массива.
-	 * Атомарное модифицирующее действие.
-	 * @param cell Координаты элемента.
-	 * @param elem Новое значение элемента.
-	 * @return Старое значение элемента.
-	 * @throws NullPointerException координаты null
-	 * @throws OutOfBoundsException координаты выходят за границы
+	/** Возвращает двойника фигуры в этой матрице.
+	 * Двойник - фигура с тем же номером, перенесенная в копию матрицы {@link #fork()}
+	 * либо оригинал, из которого перенесена фигура этой копии.
+	 * @param piece Фигура этой матрицы, оригинала или другой копии.
+	 * @return null, если двойника нет: фигура разрушена или создана после копирования.
+	 * Фигуры, созданные после копирования в разных копиях, двойниками не являются, но
+	 * могут получить одинаковые номера.
+	 * @throws NullPointerException фигура null
+	 */
+	public Piece<B> counterpart(Piece<?> piece) {
+		if (piece.id == 0)
+			return null;
+		for (Piece<B> p : pieces)
+			if (p.id == piece.id) return p;
+		return null;
+	}
+	
+	/** Проверяет, может ли элемент быть изменен.
+	 * Элемент фигуры может изменить только разблокировавшая свои ячейки фигура.
+	 * @param x Абсцисса элемента.
+	 * @param y Ордината элемента.
 	 * @throws UnsupportedOperationException изменение элемента фигуры
 	 */
 	@Override
-	protected B set(Point cell, B elem) {
-		if (isNeutral(cell) || unlocker != null && unlocker.cells.contains(cell))
-			return super.set(cell, elem);
-		throw new UnsupportedOperationException("изменение элемента фигуры");
+	protected void checkModifiable(int x, int y) {
+		int owner = owners[y * getWidth() + x];
+		if (owner != 0 && (unlocker == null || unlocker.id != owner))
+			throw new UnsupportedOperationException("изменение элемента фигуры");
 	}
 
 	/** Очищает матрицу.
 	 * Удаляет все фигуры и блоки.
 	 * Завершает текущую серию модификаций.
+	 * @throws UnsupportedOperationException матрица только для чтения
 	 */
 	@Override
 	public void clear() {
+		checkWritable();
 		for (Piece<B> p : new ArrayList<>(pieces))
 			p.destroy();
 		unlocker = null;
 		super.clear();
 	}
 	
+	// регистрирует созданную фигуру, ее ячейки становятся принадлежащими ей
+	void register(Piece<B> piece) {
+		if (++lastPieceId == 0)
+			lastPieceId = 1;
+		piece.id = lastPieceId;
+		pieces.add(piece);
+		own(piece);
+	}
+	
+	// отменяет регистрацию разрушаемой фигуры, ее ячейки становятся нейтральными
+	void unregister(Piece<B> piece) {
+		checkWritable();
+		disown(piece);
+		pieces.remove(piece);
+		piece.id = 0;
+	}
+	
+	// отмечает ячейки фигуры в индексе владельцев
+	void own(Piece<B> piece) {
+		CellSet cells = piece.cellSet();
+		for (int i = 0; i < cells.size(); i++)
+			owners[cells.get(i)] = piece.id;
+	}
+	
+	// снимает отметки ячеек фигуры в индексе владельцев
+	void disown(Piece<B> piece) {
+		CellSet cells = piece.cellSet();
+		for (int i = 0; i < cells.size(); i++)
+			if (owners[cells.get(i)] == piece.id)
+				owners[cells.get(i)] = 0;
+	}
+	
   	/** Возвращает строковое представление матрицы.
     * Пример вывода:
     * <pre>
@@ -151,6 +337,21 @@ public class PieceMatrix<B, P> extends BrickMatrixN<B>
 			System.out.println(e);
 		}
 		matrix.clear();					System.out.println(matrix);
+		
+		try {
+			Piece<Integer> piece = matrix.create(0);
+			matrix.create(1);
+			PieceMatrix<Integer, Integer> fork = matrix.fork();
+			fork.counterpart(piece).delete();
+			System.out.println("копия без фигуры 0\n" + fork);
+			System.out.println("оригинал\n" + matrix);
+			
+			PieceMatrix<Integer, Integer> snapshot = matrix.snapshot();
+			matrix.clear();
+			snapshot.remove(new Point(0, 0));
+		} catch (NotEnoughSpaceException | RuntimeException e) {
+			System.out.println(e);
+		}
 	}
 }
 
@@ -0,0 +1,349 @@
+package framework.matrix.model.pieces;
+
+import java.util.Arrays;
+
+/** Генератор размещений фигуры для автоматических игроков.
+ * Перечисляет все различные конечные положения фигуры с таблицей поворотов, достижимые
+ * из текущего ходами влево, вправо, вниз и поворотами: положение конечное, если фигура
+ * в нем не может сдвинуться вниз. Размещения с одинаковыми ячейками (например, у
+ * квадрата во всех положениях) выдаются один раз.
+ *
+ * Поиск ведется в ширину по состояниям (положение, якорь) над битовыми масками занятости
+ * строк, матрица при этом не модифицируется. Буферы генератора переиспользуются между
+ * вызовами, поэтому после прогрева поиск не создает объектов. Ширина матрицы не более 64.
+ *
+ * Размещение - это упакованное число: положение, абсцисса и ордината якоря фигуры,
+ * см. {@link #orientation(int)}, {@link #x(int)}, {@link #y(int)}. Фигура переставляется в
+ * размещение одной модификацией матрицы: {@link #apply(RotatablePiece, int)}.
+ *
+ * Перечислять можно и над произвольной доской - масками занятости строк, например, для
+ * поиска на несколько фигур вперед: {@link #generate(long[], int, int, RotationTable, int, int, int)}.
+ *
+ * Генератор не синхронизирован, каждому потоку нужен свой.
+ *
+ * @author Игорь
+ */
+public class PlacementGenerator
+{
+	private static final int ORIENTATIONS = RotationTable.ORIENTATIONS;
+
+	private long[] rows;			// маски занятости строк матрицы без фигуры
+	private long[] board;			// маски занятости строк текущего поиска
+	private int    width, height;	// размеры матрицы
+	private long[] masks;			// [положение * высота фигуры + строка] маски строк фигуры
+	private final int[] minDX;		// [положение] границы смещений блоков относительно якоря
+	private final int[] maxDX;
+	private final int[] minDY;
+	private final int[] maxDY;
+	private final int[] canonical;	// [положение] первое положение с теми же ячейками
+	private RotationTable table;	// таблица, для которой вычислены маски фигуры
+	private int spanY;				// высота описанной области всех положений фигуры
+
+	private int[] visited;			// [состояние] номер поиска, посетившего состояние
+	private int[] placed;			// [состояние] номер поиска, выдавшего размещение
+	private int[] queue;			// очередь состояний поиска
+	private int   search;			// номер текущего поиска
+	private int   x0, y0;			// наименьшие абсцисса и ордината якоря
+	private int   rangeX, rangeY;	// числа абсцисс и ординат якоря
+
+	private int[] placements;		// найденные размещения
+	private int   count;			// число найденных размещений
+
+	/** Конструирует генератор.
+	 */
+	public PlacementGenerator() {
+		this.rows = new long[0];
+		this.masks = new long[0];
+		this.minDX = new int[ORIENTATIONS];
+		this.maxDX = new int[ORIENTATIONS];
+		this.minDY = new int[ORIENTATIONS];
+		this.maxDY = new int[ORIENTATIONS];
+		this.canonical = new int[ORIENTATIONS];
+		this.visited = new int[0];
+		this.placed = new int[0];
+		this.queue = new int[0];
+		this.placements = new int[0];
+	}
+
+	/** Перечисляет размещения фигуры.
+	 * Предыдущие размещения генератора теряются.
+	 * @param piece Фигура с таблицей поворотов.
+	 * @return Число размещений.
+	 * @throws NullPointerException фигура null
+	 * @throws IllegalStateException фигура не существует, фигура без таблицы поворотов
+	 * @throws UnsupportedOperationException ширина матрицы > 64
+	 */
+	public int generate(RotatablePiece<?> piece) {
+		if (!piece.isExist())
+			throw new IllegalStateException("фигура не существует");
+		if (piece.getTable() == null)
+			throw new IllegalStateException("фигура без таблицы поворотов");
+
+		PieceMatrix<?, ?> matrix = piece.matrix;
+		if (rows.length < matrix.getHeight())
+			rows = new long[matrix.getHeight()];
+		matrix.occupancy(rows, piece);
+		return generate(rows, matrix.getWidth(), matrix.getHeight(), piece.getTable(),
+		  piece.getOrientation(), piece.getAnchorX(), piece.getAnchorY());
+	}
+
+	/** Перечисляет размещения фигуры над доской.
+	 * Предыдущие размещения генератора теряются.
+	 * @param board Маски занятости строк доски: бит x маски y - ячейка (x, y) занята.
+	 * @param width Ширина доски (0, 64].
+	 * @param height Высота доски, не более числа масок.
+	 * @param table Таблица поворотов фигуры.
+	 * @param orientation Исходное положение фигуры [0, 4).
+	 * @param anchorX Исходная абсцисса якоря фигуры.
+	 * @param anchorY Исходная ордината якоря фигуры.
+	 * @return Число размещений, 0 - фигура не помещается в исходном положении.
+	 * @throws NullPointerException доска или таблица null
+	 * @throws IllegalArgumentException размеры недопустимы, положение вне [0, 4)
+	 */
+	public int generate(long[] board, int width, int height, RotationTable table, int orientation,
+	  int anchorX, int anchorY)
+	{
+		if (width < 1 || width > Long.SIZE || height < 1 || height > board.length)
+			throw new IllegalArgumentException(String.format("размеры %dx%d", width, height));
+		if (orientation < 0 || orientation >= ORIENTATIONS)
+			throw new IllegalArgumentException("положение " + orientation);
+
+		this.board = board;
+		this.width = width;
+		this.height = height;
+		prepare(table);
+		count = 0;
+		if (!fits(orientation, anchorX, anchorY))
+			return 0;
+
+		if (++search == 0) {
+			Arrays.fill(visited, 0);
+			Arrays.fill(placed, 0);
+			search = 1;
+		}
+
+		int head = 0, tail = 0;
+		int start = state(orientation, anchorX, anchorY);
+		visited[start] = search;
+		queue[tail++] = start;
+		while (head < tail) {
+			int s = queue[head++];
+			int o = s / (rangeX * rangeY);
+			int x = s % rangeX + x0;
+			int y = s / rangeX % rangeY + y0;
+
+			if (fits(o, x, y + 1))
+				tail = visit(state(o, x, y + 1), tail);
+			else
+				place(o, x, y);
+			if (fits(o, x - 1, y))
+				tail = visit(state(o, x - 1, y), tail);
+			if (fits(o, x + 1, y))
+				tail = visit(state(o, x + 1, y), tail);
+			int next = (o + 1) % ORIENTATIONS;
+			if (fits(next, x, y))
+				tail = visit(state(next, x, y), tail);
+		}
+		return count;
+	}
+
+	/** Возвращает число размещений последнего перечисления.
+	 * @return
+	 */
+	public int size() {
+		return count;
+	}
+
+	/** Возвращает размещение.
+	 * @param i Номер размещения.
+	 * @return Упакованное размещение.
+	 * @throws IndexOutOfBoundsException номер вне [0, size())
+	 */
+	public int get(int i) {
+		if (i < 0 || i >= count)
+			throw new IndexOutOfBoundsException("номер " + i);
+		return placements[i];
+	}
+
+	/** Переставляет фигуру в размещение одной модификацией матрицы.
+	 * @param piece Фигура, для которой перечислены размещения.
+	 * @param placement Упакованное размещение.
+	 * @return true, если фигура переставлена.
+	 * @throws IllegalStateException фигура не существует, фигура без таблицы поворотов
+	 * @see RotatablePiece#place(int, int, int)
+	 */
+	public static boolean apply(RotatablePiece<?> piece, int placement) {
+		return piece.place(orientation(placement), x(placement), y(placement));
+	}
+
+	/** Упаковывает размещение.
+	 * @param orientation Положение фигуры [0, 4).
+	 * @param x Абсцисса якоря [-16384, 16384).
+	 * @param y Ордината якоря [-16384, 16384).
+	 * @return
+	 */
+	public static int pack(int orientation, int x, int y) {
+		return orientation << 30 | (x & 0x7FFF) << 15 | y & 0x7FFF;
+	}
+
+	/** Возвращает положение фигуры размещения.
+	 * @param placement Упакованное размещение.
+	 * @return [0, 4)
+	 */
+	public static int orientation(int placement) {
+		return placement >>> 30;
+	}
+
+	/** Возвращает абсциссу якоря фигуры размещения.
+	 * @param placement Упакованное размещение.
+	 * @return
+	 */
+	public static int x(int placement) {
+		return placement << 2 >> 17;
+	}
+
+	/** Возвращает ординату якоря фигуры размещения.
+	 * @param placement Упакованное размещение.
+	 * @return
+	 */
+	public static int y(int placement) {
+		return placement << 17 >> 17;
+	}
+
+	// вычисляет маски фигуры и размеры буферов для таблицы и матрицы
+	private void prepare(RotationTable table) {
+		if (table != this.table) {
+			this.table = table;
+			int top = Integer.MAX_VALUE, bottom = Integer.MIN_VALUE;
+			for (int o = 0; o < ORIENTATIONS; o++) {
+				minDX[o] = minDY[o] = Integer.MAX_VALUE;
+				maxDX[o] = maxDY[o] = Integer.MIN_VALUE;
+				for (int i = 0; i < table.size(); i++) {
+					minDX[o] = Math.min(minDX[o], table.getDX(o, i));
+					maxDX[o] = Math.max(maxDX[o], table.getDX(o, i));
+					minDY[o] = Math.min(minDY[o], table.getDY(o, i));
+					maxDY[o] = Math.max(maxDY[o], table.getDY(o, i));
+				}
+				top = Math.min(top, minDY[o]);
+				bottom = Math.max(bottom, maxDY[o]);
+			}
+			spanY = bottom - top + 1;
+			if (masks.length < ORIENTATIONS * spanY)
+				masks = new long[ORIENTATIONS * spanY];
+			Arrays.fill(masks, 0);
+			for (int o = 0; o < ORIENTATIONS; o++)
+				for (int i = 0; i < table.size(); i++)
+					masks[o * spanY + table.getDY(o, i) - minDY[o]] |= 1L << (table.getDX(o, i) - minDX[o]);
+
+			// положения с одинаковыми ячейками
+			for (int o = 0; o < ORIENTATIONS; o++) {
+				canonical[o] = o;
+				for (int c = 0; c < o && canonical[o] == o; c++)
+					if (maxDX[c] - minDX[c] == maxDX[o] - minDX[o] && maxDY[c] - minDY[c] == maxDY[o] - minDY[o] &&
+					  sameMasks(c, o))
+						canonical[o] = c;
+			}
+		}
+
+		// якорь, при котором хотя бы одно положение фигуры в границах матрицы
+		int minX = Integer.MAX_VALUE, maxX = Integer.MIN_VALUE, minY = Integer.MAX_VALUE, maxY = Integer.MIN_VALUE;
+		for (int o = 0; o < ORIENTATIONS; o++) {
+			minX = Math.min(minX, -minDX[o]);
+			maxX = Math.max(maxX, width - 1 - maxDX[o]);
+			minY = Math.min(minY, -minDY[o]);
+			maxY = Math.max(maxY, height - 1 - maxDY[o]);
+		}
+		x0 = minX;
+		y0 = minY;
+		rangeX = Math.max(maxX - minX + 1, 1);
+		rangeY = Math.max(maxY - minY + 1, 1);
+
+		int states = ORIENTATIONS * rangeX * rangeY;
+		if (visited.length < states) {
+			visited = new int[states];
+			placed = new int[states];
+			queue = new int[states];
+			placements = new int[states];
+			search = 0;
+		}
+	}
+
+	// проверяет, совпадают ли маски строк положений
+	private boolean sameMasks(int a, int b) {
+		for (int r = 0; r <= maxDY[a] - minDY[a]; r++)
+			if (masks[a * spanY + r] != masks[b * spanY + r])
+				return false;
+		return true;
+	}
+
+	// проверяет, помещается ли фигура в положении с якорем (x, y) в границах матрицы на свободных ячейках
+	private boolean fits(int o, int x, int y) {
+		int left = x + minDX[o], top = y + minDY[o];
+		if (left < 0 || top < 0 || x + maxDX[o] >= width || y + maxDY[o] >= height)
+			return false;
+		for (int r = 0, height = maxDY[o] - minDY[o]; r <= height; r++)
+			if ((board[top + r] & masks[o * spanY + r] << left) != 0)
+				return false;
+		return true;
+	}
+
+	// номер состояния
+	private int state(int o, int x, int y) {
+		return (o * rangeY + (y - y0)) * rangeX + (x - x0);
+	}
+
+	// ставит состояние в очередь, если оно еще не посещено
+	private int visit(int s, int tail) {
+		if (visited[s] != search) {
+			visited[s] = search;
+			queue[tail++] = s;
+		}
+		return tail;
+	}
+
+	// добавляет конечное положение, если размещения с теми же ячейками еще нет
+	private void place(int o, int x, int y) {
+		int c = canonical[o];
+		int s = state(c, x + minDX[o] - minDX[c], y + minDY[o] - minDY[c]);
+		if (placed[s] != search) {
+			placed[s] = search;
+			placements[count++] = pack(o, x, y);
+		}
+	}
+
+	public static void main(String[] args) throws NotEnoughSpaceException {
+		PieceMatrix<games.TetrisBrick, games.TetrisPiece> matrix =
+		  new PieceMatrix<>(games.TetrisBrick.class, new games.TetrisPieceCreator());
+		PlacementGenerator generator = new PlacementGenerator();
+
+		// пустая матрица
+		for (games.TetrisPiece kind : games.TetrisPiece.values()) {
+			Piece<games.TetrisBrick> piece = matrix.create(kind);
+			System.out.println(kind + ": " + generator.generate((RotatablePiece<?>)piece));
+			piece.delete();
+		}
+
+		// неровное дно
+		java.util.Random random = new java.util.Random(0);
+		for (int y = matrix.getHeight() - 6; y < matrix.getHeight(); y++)
+			for (int x = 0; x < matrix.getWidth(); x++)
+				if (random.nextInt(3) == 0)
+					matrix.add(x, y, games.TetrisBrick.values()[0]);
+		RotatablePiece<?> piece = (RotatablePiece<?>)matrix.create(games.TetrisPiece.T);
+		int n = generator.generate(piece);
+		StringBuilder bldr = new StringBuilder("T: " + n);
+		for (int i = 0; i < n; i++) {
+			int p = generator.get(i);
+			bldr.append(String.format(" %d(%d, %d)", orientation(p), x(p), y(p)));
+		}
+		System.out.println(bldr);
+		apply(piece, generator.get(n - 1));
+		System.out.println(matrix);
+
+		final int N = 200_000;
+		long start = System.nanoTime();
+		for (int i = 0; i < N; i++)
+			generator.generate(piece);
+		System.out.printf("%.2f мкс на перечисление%n", (System.nanoTime() - start) / 1e3 / N);
+	}
+}
@@ -6,6 +6,7 @@ import java.awt.Rectangle;
 import java.awt.geom.Point2D;
 import java.util.*;
 
+import framework.matrix.model.array.CellSet;
 import framework.matrix.model.array.OutOfBoundsException;
 import framework.matrix.model.bricks.Cells;
 
@@ -29,6 +30,10 @@ import framework.matrix.model.bricks.Cells;
  * X' = ((Y - error.Y) - center.Y) + center.X + offset.X
  * Y' = ((X - error.X) - center.X) + center.Y + offset.Y
  * error = offset
+ *
+ * Фигура, сконструированная по таблице поворотов {@link RotationTable}, ничего не вычисляет:
+ * координаты блоков в следующем положении - сумма координат якоря и смещений из таблицы.
+ * Таблица строится по тем же формулам, поэтому повороты в обоих режимах совпадают.
 
  * @param <B> Тип блоков.
  */
@@ -38,6 +43,9 @@ public class RotatablePiece<B> extends MoveablePiece<B>
     private Point2D.Double[] offsets;   // корректирующие значения координат для углов 90, 180, 270 и 0
     private Point2D.Double   error;     // ошибка значений координат, существует до следующего поворота
     private int              angle;     // [град] угол поворота
+    private RotationTable    table;		// таблица поворотов, null - повороты вычисляются
+    private int              anchorX;	// абсцисса якоря фигуры в режиме таблицы
+    private int              anchorY;	// ордината якоря фигуры в режиме таблицы
     
 	/** Конструктор пустой фигуры.
 	 * Исходя из определения, такая фигура не существует с самого начала.
@@ -62,6 +70,22 @@ public class RotatablePiece<B> extends MoveablePiece<B>
     	this(matrix, cells, bricks, false, false);
     }
     
+    /** Конструктор фигуры, координаты округляются в меньшую сторону на углах 90* и 270*.
+     * @param matrix Матрица, в которую добавляется фигура.
+     * @param cells Координаты целевых ячеек.
+     * @param bricks Добавляемые блоки.
+	 * @throws NotEnoughSpaceException не хватило места в матрице
+	 * @throws NullPointerException аргументы null
+	 * @throws IllegalArgumentException коллекции пусты, размеры различаются, блоки null,
+	 * размеры коллекции координат и матрицы различаются
+	 * @see #RotatablePiece(PieceMatrix, Set, List)
+     */
+    public RotatablePiece(PieceMatrix<B, ?> matrix, CellSet cells, List<B> bricks) 
+	  throws NotEnoughSpaceException 
+    {
+    	this(matrix, cells, bricks, false, false);
+    }
+    
     /** Конструктор фигуры, задаются корректоры поворота для углов 90* и 270*.
      * Округление имеет смысл только если координаты центра дробные.
      * @param matrix Матрица, в которую добавляется фигура.
@@ -76,18 +100,29 @@ public class RotatablePiece<B> extends MoveablePiece<B>
      */
     public RotatablePiece(PieceMatrix<B, ?> matrix, Set<Point> cells, List<B> bricks,
       boolean ceilX, boolean ceilY) throws NotEnoughSpaceException
+    {
+    	this(matrix, CellSet.of(cells, matrix.size()), bricks, ceilX, ceilY);
+    }
+    
+    /** Конструктор фигуры, задаются корректоры поворота для углов 90* и 270*.
+     * @param matrix Матрица, в которую добавляется фигура.
+     * @param cells Координаты целевых ячеек.
+     * @param bricks Добавляемые блоки.
+     * @param ceilX Округлять X в большую сторону?
+     * @param ceilY Округлять Y в большую сторону?
+	 * @throws NotEnoughSpaceException не хватило места в матрице
+	 * @throws NullPointerException аргументы null
+	 * @throws IllegalArgumentException коллекции пусты, размеры различаются, блоки null,
+	 * размеры коллекции координат и матрицы различаются
+	 * @see #RotatablePiece(PieceMatrix, Set, List, boolean, boolean)
+     */
+    public RotatablePiece(PieceMatrix<B, ?> matrix, CellSet cells, List<B> bricks,
+      boolean ceilX, boolean ceilY) throws NotEnoughSpaceException
     {
     	super(matrix, cells, bricks);
     	
-    	Rectangle area = getArea();
-    	this.center = new Point2D.Double(area.x + 0.5 * (area.width - 1), area.y + 0.5 * (area.height - 1));
-    	boolean round = (center.x + center.y) % 1.0 == 0.5;
-    	this.offsets = new Point2D.Double[] {
-            new Point2D.Double(round ? ceilX ? 0.5 : -0.5 : 0, round ? ceilX ? 0.5 : -0.5 : 0),
-            new Point2D.Double(0, 0),
-            new Point2D.Double(round ? ceilX ? 0.5 : -0.5 : 0, round ? ceilX ? 0.5 : -0.5 : 0),
-            new Point2D.Double(0, 0)
-        }; 
+    	this.center = center(getArea());
+    	this.offsets = roundingOffsets(center, ceilX, ceilY);
         this.error = new Point2D.Double();
         this.angle = 0;	
 	}
@@ -105,61 +140,307 @@ public class RotatablePiece<B> extends MoveablePiece<B>
      */
     public RotatablePiece(PieceMatrix<B, ?> matrix, Set<Point> cells, List<B> bricks,
       Point2D.Double[] offsets) throws NotEnoughSpaceException
+    {
+        this(matrix, CellSet.of(cells, matrix.size()), bricks, offsets);
+    }
+    
+    /** Конструктор фигуры, задаются корректоры сдвига-поворота для всех углов.
+     * @param matrix Матрица, в которую добавляется фигура.
+     * @param cells Координаты целевых ячеек.
+     * @param bricks Добавляемые блоки.
+     * @param offsets Корректоры сдвига-поворота.
+	 * @throws NotEnoughSpaceException не хватило места в матрице
+	 * @throws NullPointerException аргументы null
+	 * @throws IllegalArgumentException коллекции пусты, размеры различаются, блоки null,
+	 * размеры коллекции координат и матрицы различаются
+	 * @see #RotatablePiece(PieceMatrix, Set, List, Point2D.Double[])
+     */
+    public RotatablePiece(PieceMatrix<B, ?> matrix, CellSet cells, List<B> bricks,
+      Point2D.Double[] offsets) throws NotEnoughSpaceException
     {
         super (matrix, cells, bricks);
 
-        if (offsets.length != 4 ||
-            offsets[0].x % 0.5 != 0 || offsets[0].y % 0.5 != 0 ||
-            offsets[1].x % 0.5 != 0 || offsets[1].y % 0.5 != 0 ||
-            offsets[2].x % 0.5 != 0 || offsets[2].y % 0.5 != 0 ||
-            offsets[3].x % 0.5 != 0 || offsets[3].y % 0.5 != 0)
-        {
-            throw new IllegalArgumentException();
-        }
-        Rectangle area = getArea();
-        this.center = new Point2D.Double(area.x + 0.5 * (area.width - 1), area.y + 0.5 * (area.height - 1));
+        checkOffsets(offsets);
+        this.center = center(getArea());
         this.offsets = offsets;
         this.error = new Point2D.Double();
         this.angle = 0;
     }
+    
+    /** Конструктор фигуры по таблице поворотов, фигура создается в исходном положении.
+     * @param matrix Матрица, в которую добавляется фигура.
+     * @param table Таблица поворотов.
+     * @param bricks Добавляемые блоки.
+	 * @throws NotEnoughSpaceException не хватило места в матрице
+	 * @throws NullPointerException аргументы null
+	 * @throws OutOfBoundsException координаты выходят за границы
+	 * @throws IllegalArgumentException число блоков и ячеек таблицы различается, блоки null
+     */
+    public RotatablePiece(PieceMatrix<B, ?> matrix, RotationTable table, List<B> bricks)
+      throws NotEnoughSpaceException
+    {
+    	this(matrix, table, table.getOriginX(), table.getOriginY(), bricks);
+    }
+    
+    /** Конструктор фигуры по таблице поворотов.
+     * @param matrix Матрица, в которую добавляется фигура.
+     * @param table Таблица поворотов.
+     * @param x Абсцисса якоря фигуры.
+     * @param y Ордината якоря фигуры.
+     * @param bricks Добавляемые блоки.
+	 * @throws NotEnoughSpaceException не хватило места в матрице
+	 * @throws NullPointerException аргументы null
+	 * @throws OutOfBoundsException координаты выходят за границы
+	 * @throws IllegalArgumentException число блоков и ячеек таблицы различается, блоки null
+     */
+    public RotatablePiece(PieceMatrix<B, ?> matrix, RotationTable table, int x, int y, List<B> bricks)
+      throws NotEnoughSpaceException
+    {
+    	this(matrix, table, 0, x, y, bricks);
+    }
+    
+    /** Конструктор фигуры по таблице поворотов в заданном положении.
+     * Годится для восстановления сохраненной фигуры.
+     * @param matrix Матрица, в которую добавляется фигура.
+     * @param table Таблица поворотов.
+     * @param orientation Положение фигуры [0, 4).
+     * @param x Абсцисса якоря фигуры.
+     * @param y Ордината якоря фигуры.
+     * @param bricks Добавляемые блоки.
+	 * @throws NotEnoughSpaceException не хватило места в матрице
+	 * @throws NullPointerException аргументы null
+	 * @throws OutOfBoundsException координаты выходят за границы
+	 * @throws IllegalArgumentException число блоков и ячеек таблицы различается, блоки null,
+	 * положение вне [0, 4)
+     */
+    public RotatablePiece(PieceMatrix<B, ?> matrix, RotationTable table, int orientation, int x, int y,
+      List<B> bricks) throws NotEnoughSpaceException
+    {
+    	super(matrix, cellsOf(table, checkOrientation(orientation), x, y, matrix), bricks);
+    	
+    	this.table = table;
+    	this.anchorX = x;
+    	this.anchorY = y;
+    	this.angle = orientation * 90;
+    }
+    
+    /** Конструктор копии фигуры в копии ее матрицы.
+     * Центр копируется, корректоры и таблица поворотов неизменяемы и разделяются.
+     * @param original Копируемая фигура.
+     * @param matrix Копия матрицы оригинала.
+	 * @throws NullPointerException аргументы null
+     */
+    protected RotatablePiece(RotatablePiece<B> original, PieceMatrix<B, ?> matrix) {
+    	super(original, matrix);
+    	
+    	this.center = original.center == null ? null : (Point2D.Double)original.center.clone();
+    	this.offsets = original.offsets;
+    	this.error = original.error;
+    	this.angle = original.angle;
+    	this.table = original.table;
+    	this.anchorX = original.anchorX;
+    	this.anchorY = original.anchorY;
+    }
+    
+    @Override
+    protected RotatablePiece<B> copy(PieceMatrix<B, ?> matrix) {
+    	return new RotatablePiece<>(this, matrix);
+    }
+
+    /** Возвращает таблицу поворотов.
+     * @return null, если повороты вычисляются.
+     */
+    public RotationTable getTable() {
+    	return table;
+    }
+    
+    /** Возвращает положение фигуры.
+     * @return [0, 4) число поворотов от исходного положения.
+     */
+    public int getOrientation() {
+    	return angle / 90;
+    }
+    
+    /** Переставляет фигуру в заданное положение за одну модификацию матрицы.
+     * Промежуточные положения не проверяются, см. {@link PlacementGenerator}.
+     * @param orientation Положение фигуры [0, 4).
+     * @param x Абсцисса якоря фигуры.
+     * @param y Ордината якоря фигуры.
+     * @return true, если фигура переставлена; false - целевые ячейки заняты или вне границ.
+	 * @throws IllegalStateException фигура не существует, фигура без таблицы поворотов
+	 * @throws IllegalArgumentException положение вне [0, 4)
+     */
+    public boolean place(int orientation, int x, int y) {
+		if (!isExist())
+			throw new IllegalStateException("фигура не существует");
+		if (table == null)
+			throw new IllegalStateException("фигура без таблицы поворотов");
+		if (orientation < 0 || orientation >= RotationTable.ORIENTATIONS)
+			throw new IllegalArgumentException("положение " + orientation);
+		
+    	for (int i = 0; i < cellSet().size(); i++)
+    		if (!matrix.isFreeFor(x + table.getDX(orientation, i), y + table.getDY(orientation, i), this))
+    			return false;
+    	
+    	CellSet toCells = cellsOf(table, orientation, x, y, matrix);
+		unlock(true);
+		boolean placed = matrix.transferAll(cellSet(), toCells);
+		unlock(false);
+		
+		if (placed) {
+			setCells(toCells);
+			angle = orientation * 90;
+			anchorX = x;
+			anchorY = y;
+		}
+		return placed;
+    }
+    
+    /** Возвращает абсциссу якоря фигуры с таблицей поворотов.
+     * @return
+     */
+    public int getAnchorX() {
+    	return anchorX;
+    }
+    
+    /** Возвращает ординату якоря фигуры с таблицей поворотов.
+     * @return
+     */
+    public int getAnchorY() {
+    	return anchorY;
+    }
 
 	/**{@inheritDoc}
 	 * @throws IllegalStateException фигура не существует
 	 */
     @Override
     public boolean rotate() { 
-		if (!isExist())
-			throw new IllegalStateException("фигура не существует");
+		if (!canRotate())
+			return false;
 
-        Set<Point> toCells = new LinkedHashSet<>(cells.size(), 1);
-        Point2D.Double offset = offsets[angle / 90];
-        cells.forEach((c) -> { 
-            double x =  ((c.y - error.y) - center.y) + center.x + offset.x;
-            double y = -((c.x - error.x) - center.x) + center.y + offset.y;
-            if (x % 1.0 != 0) throw new ArithmeticException("x = " + x);
-            if (y % 1.0 != 0) throw new ArithmeticException("y = " + y);
-            toCells.add(new Point((int)x, (int)y));
-        });
+        CellSet toCells;
+        Point2D.Double offset = null;
+        if (table != null) {
+        	toCells = cellsOf(table, nextOrientation(), anchorX, anchorY, matrix);
+        }
+        else {
+        	toCells = new CellSet(cellSet().getWidth(), cellSet().getHeight());
+        	offset = offsets[angle / 90];
+        	for (int i = 0; i < cellSet().size(); i++)
+        		toCells.add(rotatedX(i, offset), rotatedY(i, offset));
+        }
         
 		unlock(true);
-		boolean rotated = matrix.transferAll(cells, toCells);
+		boolean rotated = matrix.transferAll(cellSet(), toCells);
 		unlock(false);
             
         if (rotated) {
-        	cells = toCells;
+        	setCells(toCells);
             angle = (angle + 90) % 360;
-            error = offset;
+            if (table == null)
+            	error = offset;
             return true;
         }
         return false;
     }
 
+	/**{@inheritDoc}
+	 * @throws IllegalStateException фигура не существует
+	 * @throws ArithmeticException координаты после поворота дробные
+	 */
+    @Override
+    public boolean canRotate() {
+		if (!isExist())
+			throw new IllegalStateException("фигура не существует");
+		
+        if (table != null) {
+        	int next = nextOrientation();
+        	for (int i = 0; i < cellSet().size(); i++)
+        		if (!matrix.isFreeFor(anchorX + table.getDX(next, i), anchorY + table.getDY(next, i), this))
+        			return false;
+        	return true;
+        }
+        
+        Point2D.Double offset = offsets[angle / 90];
+        for (int i = 0; i < cellSet().size(); i++)
+        	if (!matrix.isFreeFor(rotatedX(i, offset), rotatedY(i, offset), this))
+        		return false;
+        return true;
+    }
+    
+    // положение фигуры после поворота в режиме таблицы
+    private int nextOrientation() {
+    	return (angle / 90 + 1) % RotationTable.ORIENTATIONS;
+    }
+    
+    // проверяет положение фигуры
+    private static int checkOrientation(int orientation) {
+    	if (orientation < 0 || orientation >= RotationTable.ORIENTATIONS)
+    		throw new IllegalArgumentException("положение " + orientation);
+    	return orientation;
+    }
+    
+    // координаты ячеек фигуры в положении по таблице
+    private static CellSet cellsOf(RotationTable table, int orientation, int x, int y, PieceMatrix<?, ?> matrix) {
+    	CellSet cells = new CellSet(matrix.getWidth(), matrix.getHeight());
+    	for (int i = 0; i < table.size(); i++)
+    		cells.add(x + table.getDX(orientation, i), y + table.getDY(orientation, i));
+    	return cells;
+    }
+    
+    // центр описанной области
+    static Point2D.Double center(Rectangle area) {
+    	return new Point2D.Double(area.x + 0.5 * (area.width - 1), area.y + 0.5 * (area.height - 1));
+    }
+    
+    // корректоры, округляющие координаты на углах 90* и 270*
+    static Point2D.Double[] roundingOffsets(Point2D.Double center, boolean ceilX, boolean ceilY) {
+    	boolean round = (center.x + center.y) % 1.0 == 0.5;
+    	return new Point2D.Double[] {
+            new Point2D.Double(round ? ceilX ? 0.5 : -0.5 : 0, round ? ceilX ? 0.5 : -0.5 : 0),
+            new Point2D.Double(0, 0),
+            new Point2D.Double(round ? ceilX ? 0.5 : -0.5 : 0, round ? ceilX ? 0.5 : -0.5 : 0),
+            new Point2D.Double(0, 0)
+        }; 
+    }
+    
+    // проверяет корректоры сдвига-поворота
+    static void checkOffsets(Point2D.Double[] offsets) {
+        if (offsets.length != 4 ||
+            offsets[0].x % 0.5 != 0 || offsets[0].y % 0.5 != 0 ||
+            offsets[1].x % 0.5 != 0 || offsets[1].y % 0.5 != 0 ||
+            offsets[2].x % 0.5 != 0 || offsets[2].y % 0.5 != 0 ||
+            offsets[3].x % 0.5 != 0 || offsets[3].y % 0.5 != 0)
+        {
+            throw new IllegalArgumentException();
+        }
+    }
+    
+    // рассчитывает абсциссу i-го блока после поворота
+    private int rotatedX(int i, Point2D.Double offset) {
+        double x =  ((cellSet().getY(i) - error.y) - center.y) + center.x + offset.x;
+        if (x % 1.0 != 0) throw new ArithmeticException("x = " + x);
+        return (int)x;
+    }
+    
+    // рассчитывает ординату i-го блока после поворота
+    private int rotatedY(int i, Point2D.Double offset) {
+        double y = -((cellSet().getX(i) - error.x) - center.x) + center.y + offset.y;
+        if (y % 1.0 != 0) throw new ArithmeticException("y = " + y);
+        return (int)y;
+    }
+
 	/**{@inheritDoc}
 	 * @throws IllegalStateException фигура не существует
 	 */
     @Override
     public boolean move(Direction dir) {
         if (super.move(dir)) {
+        	if (table != null) {
+        		anchorX += dir.getDX();
+        		anchorY += dir.getDY();
+        		return true;
+        	}
             switch (dir) {
                 case LEFT:  center.x --; break;
                 case RIGHT: center.x ++; break;
@@ -211,6 +492,10 @@ public class RotatablePiece<B> extends MoveablePiece<B>
     		return super.toString();
     	
     	String str = super.toString();
+    	if (table != null)
+    		return str.substring(0, str.length() - 1) +
+    		  String.format(" anchor (%d, %d)\n", anchorX, anchorY) +
+    		  String.format(" angle %d\n]", angle);
     	return str.substring(0, str.length() - 1) +
 		  String.format(Locale.ROOT, " center (%.1f, %.1f)\n", center.x, center.y) +
 		  String.format(Locale.ROOT, " offsets (%.1f, %.1f) (%.1f, %.1f) (%.1f, %.1f) (%.1f, %.1f)\n", 
@@ -0,0 +1,212 @@
+package framework.matrix.model.pieces;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.geom.Point2D;
+import java.util.*;
+
+/** Таблица поворотов фигуры.
+ * Для каждого из 4-х положений фигуры (0*, 90*, 180*, 270*) хранит целочисленные смещения
+ * ее блоков относительно якоря - левого верхнего угла описанной области фигуры в исходном
+ * положении. Якорь перемещается вместе с фигурой, а при повороте не меняется, поэтому
+ * координаты блоков в любом положении - это сумма координат якоря и смещений из таблицы.
+ *
+ * Таблица строится однократно моделированием вычислений {@link RotatablePiece} с теми же
+ * корректорами сдвига-поворота, так что фигура с таблицей поворачивается в точности как
+ * фигура, вычисляющая повороты. Для этого последовательность поворотов должна иметь
+ * период 4: пятый поворот дает то же, что и первый. Порядок блоков сохраняется.
+ *
+ * @author Игорь
+ */
+public final class RotationTable
+{
+	/** Число положений фигуры. */
+	public static final int ORIENTATIONS = 4;
+
+	private final int[][] dx;		// [положение][блок] смещения абсцисс относительно якоря
+	private final int[][] dy;		// [положение][блок] смещения ординат относительно якоря
+	private final int     originX;	// абсцисса якоря в исходном положении
+	private final int     originY;	// ордината якоря в исходном положении
+	private final long    key;		// ключ содержимого таблицы
+
+	private RotationTable(int[][] dx, int[][] dy, int originX, int originY) {
+		this.dx = dx;
+		this.dy = dy;
+		this.originX = originX;
+		this.originY = originY;
+		this.key = key(dx, dy, originX, originY);
+	}
+
+	/** Строит таблицу, координаты округляются как в
+	 * {@link RotatablePiece#RotatablePiece(PieceMatrix, Set, List, boolean, boolean)}.
+	 * @param cells Координаты ячеек фигуры в исходном положении.
+	 * @param ceilX Округлять X в большую сторону?
+	 * @param ceilY Округлять Y в большую сторону?
+	 * @return Новая таблица.
+	 * @throws NullPointerException аргументы null, координаты-элемент коллекции null
+	 * @throws IllegalArgumentException коллекция пуста, повороты не периодичны
+	 * @throws ArithmeticException координаты после поворота дробные
+	 */
+	public static RotationTable of(Set<Point> cells, boolean ceilX, boolean ceilY) {
+		Rectangle area = area(cells);
+		return of(cells, RotatablePiece.roundingOffsets(RotatablePiece.center(area), ceilX, ceilY));
+	}
+
+	/** Строит таблицу, заданы корректоры сдвига-поворота для всех углов как в
+	 * {@link RotatablePiece#RotatablePiece(PieceMatrix, Set, List, Point2D.Double[])}.
+	 * @param cells Координаты ячеек фигуры в исходном положении.
+	 * @param offsets Корректоры сдвига-поворота.
+	 * @return Новая таблица.
+	 * @throws NullPointerException аргументы null, координаты-элемент коллекции null
+	 * @throws IllegalArgumentException коллекция пуста, корректоры недопустимы,
+	 * повороты не периодичны
+	 * @throws ArithmeticException координаты после поворота дробные
+	 */
+	public static RotationTable of(Set<Point> cells, Point2D.Double[] offsets) {
+		RotatablePiece.checkOffsets(offsets);
+		Rectangle area = area(cells);
+		Point2D.Double center = RotatablePiece.center(area);
+
+		// моделирование 2-х полных оборотов
+		int size = cells.size();
+		int[][] xs = new int[2 * ORIENTATIONS + 1][size];
+		int[][] ys = new int[2 * ORIENTATIONS + 1][size];
+		int i = 0;
+		for (Point c : cells) {
+			xs[0][i] = c.x;
+			ys[0][i] = c.y;
+			i++;
+		}
+		Point2D.Double error = new Point2D.Double();
+		for (int k = 0; k < 2 * ORIENTATIONS; k++) {
+			Point2D.Double offset = offsets[k % ORIENTATIONS];
+			for (i = 0; i < size; i++) {
+				double x =  ((ys[k][i] - error.y) - center.y) + center.x + offset.x;
+				double y = -((xs[k][i] - error.x) - center.x) + center.y + offset.y;
+				if (x % 1.0 != 0) throw new ArithmeticException("x = " + x);
+				if (y % 1.0 != 0) throw new ArithmeticException("y = " + y);
+				xs[k + 1][i] = (int)x;
+				ys[k + 1][i] = (int)y;
+			}
+			error = offset;
+		}
+		for (int k = 0; k <= ORIENTATIONS; k++)
+			if (!Arrays.equals(xs[k], xs[k + ORIENTATIONS]) || !Arrays.equals(ys[k], ys[k + ORIENTATIONS]))
+				throw new IllegalArgumentException("повороты не периодичны");
+
+		int[][] dx = new int[ORIENTATIONS][size];
+		int[][] dy = new int[ORIENTATIONS][size];
+		for (int k = 0; k < ORIENTATIONS; k++) {
+			for (i = 0; i < size; i++) {
+				dx[k][i] = xs[k][i] - area.x;
+				dy[k][i] = ys[k][i] - area.y;
+			}
+		}
+		return new RotationTable(dx, dy, area.x, area.y);
+	}
+
+	/** Возвращает число блоков фигуры.
+	 * @return
+	 */
+	public int size() {
+		return dx[0].length;
+	}
+
+	/** Возвращает смещение абсциссы блока относительно якоря.
+	 * @param orientation Положение фигуры [0, 4).
+	 * @param i Номер блока.
+	 * @return
+	 * @throws ArrayIndexOutOfBoundsException положение или номер вне границ
+	 */
+	public int getDX(int orientation, int i) {
+		return dx[orientation][i];
+	}
+
+	/** Возвращает смещение ординаты блока относительно якоря.
+	 * @param orientation Положение фигуры [0, 4).
+	 * @param i Номер блока.
+	 * @return
+	 * @throws ArrayIndexOutOfBoundsException положение или номер вне границ
+	 */
+	public int getDY(int orientation, int i) {
+		return dy[orientation][i];
+	}
+
+	/** Возвращает абсциссу якоря в исходном положении фигуры.
+	 * @return
+	 */
+	public int getOriginX() {
+		return originX;
+	}
+
+	/** Возвращает ординату якоря в исходном положении фигуры.
+	 * @return
+	 */
+	public int getOriginY() {
+		return originY;
+	}
+
+	/** Возвращает ключ таблицы.
+	 * Ключ вычисляется по смещениям и якорю, поэтому таблицы одной и той же фигуры,
+	 * построенные независимо, имеют одинаковые ключи. Годится для ключей позиций
+	 * поиска, разделяемых несколькими игроками.
+	 * @return
+	 */
+	public long key() {
+		return key;
+	}
+
+  	/** Возвращает строковое представление таблицы.
+    * Пример вывода:
+    * <pre>
+    * {@code
+    * RotationTable origin (4, 0)
+    *  0: (0, 0) (1, 0) (2, 0) (1, 1)
+    *  1: (0, 1) (0, 0) (0, -1) (1, 0)
+    *  2: (2, 1) (1, 1) (0, 1) (1, 0)
+    *  3: (1, -1) (1, 0) (1, 1) (0, 0)
+    * }
+    * </pre>
+    * @return Форматированная строка для вывода на консоль.
+    */
+	@Override
+	public String toString() {
+		StringBuilder bldr = new StringBuilder(String.format("%s origin (%d, %d)",
+		  getClass().getSimpleName(), originX, originY));
+		for (int k = 0; k < ORIENTATIONS; k++) {
+			bldr.append("\n ").append(k).append(':');
+			for (int i = 0; i < size(); i++)
+				bldr.append(String.format(" (%d, %d)", dx[k][i], dy[k][i]));
+		}
+		return bldr.toString();
+	}
+
+	// ключ содержимого таблицы, полиномиальный хеш смещений и якоря
+	private static long key(int[][] dx, int[][] dy, int originX, int originY) {
+		long key = 31L * originX + originY;
+		for (int k = 0; k < ORIENTATIONS; k++) {
+			for (int i = 0; i < dx[k].length; i++)
+				key = (key * 0x100000001B3L + dx[k][i]) * 0x100000001B3L + dy[k][i];
+		}
+		return key;
+	}
+
+	// описанная область ячеек
+	private static Rectangle area(Set<Point> cells) {
+		if (cells.isEmpty())
+			throw new IllegalArgumentException("коллекция пуста");
+
+		Rectangle area = null;
+		for (Point c : cells) {
+			if (area == null)
+				area = new Rectangle(c.x, c.y, 1, 1);
+			else
+				area.add(new Rectangle(c.x, c.y, 1, 1));
+		}
+		return area;
+	}
+
+	public static void main(String[] args) {
+		System.out.println(of(framework.matrix.model.bricks.Cells.create(4, 0, 5, 0, 6, 0, 5, 1), false, false));
+	}
+}
@@ -0,0 +1,96 @@
+package framework.matrix.search;
+
+/** Эвристическая оценка доски.
+ * Доска - битовые маски занятости строк: бит x маски y установлен, если ячейка (x, y) занята.
+ * Оценка - взвешенная сумма признаков:
+ *  суммарная высота столбцов
+ *  число удаленных строк
+ *  число дыр - пустых ячеек под занятыми в том же столбце
+ *  неровность - сумма разностей высот соседних столбцов
+ *  колодцы - сумма глубин столбцов, ниже обоих соседей (стенки считаются бесконечно высокими)
+ *
+ * Все признаки вычисляются за один проход по строкам сверху вниз без массивов высот:
+ * маска столбцов, уже встретивших блок, дает на каждой строке вклад в высоту, дыры,
+ * неровность и колодцы подсчетом битов. Оценщик неизменяемый и может использоваться
+ * из нескольких потоков.
+ *
+ * @author Игорь
+ */
+public class BoardEvaluator
+{
+	private final double heightWeight;		// вес суммарной высоты
+	private final double linesWeight;		// вес удаленных строк
+	private final double holesWeight;		// вес дыр
+	private final double bumpinessWeight;	// вес неровности
+	private final double wellsWeight;		// вес колодцев
+
+	/** Конструирует оценщик с весами по умолчанию.
+	 */
+	public BoardEvaluator() {
+		this(-0.510066, 0.760666, -0.35663, -0.184483, -0.05);
+	}
+
+	/** Конструирует оценщик.
+	 * @param heightWeight Вес суммарной высоты.
+	 * @param linesWeight Вес удаленных строк.
+	 * @param holesWeight Вес дыр.
+	 * @param bumpinessWeight Вес неровности.
+	 * @param wellsWeight Вес колодцев.
+	 */
+	public BoardEvaluator(double heightWeight, double linesWeight, double holesWeight,
+	  double bumpinessWeight, double wellsWeight)
+	{
+		this.heightWeight = heightWeight;
+		this.linesWeight = linesWeight;
+		this.holesWeight = holesWeight;
+		this.bumpinessWeight = bumpinessWeight;
+		this.wellsWeight = wellsWeight;
+	}
+
+	/** Возвращает вес удаленных строк.
+	 * Оценка линейна по числу строк, поэтому вклад строк, удаленных на пути к доске,
+	 * можно прибавлять отдельно.
+	 * @return
+	 */
+	public double getLinesWeight() {
+		return linesWeight;
+	}
+
+	/** Оценивает доску.
+	 * @param rows Маски занятости строк.
+	 * @param width Ширина доски (0, 64].
+	 * @param height Высота доски, не более числа масок.
+	 * @param lines Число удаленных строк на пути к доске.
+	 * @return Оценка, чем больше, тем лучше.
+	 * @throws NullPointerException маски null
+	 */
+	public double evaluate(long[] rows, int width, int height, int lines) {
+		long full = width == Long.SIZE ? -1L : (1L << width) - 1;
+		long pairs = full >>> 1;			// пары соседних столбцов (x, x + 1)
+		long left = 1L;						// левая стенка для столбца 0
+		long right = 1L << (width - 1);		// правая стенка для последнего столбца
+
+		long seen = 0;						// столбцы, уже встретившие блок
+		int heights = 0, holes = 0, bumpiness = 0, wells = 0;
+		for (int y = 0; y < height; y++) {
+			long row = rows[y] & full;
+			seen |= row;
+			heights += Long.bitCount(seen);
+			holes += Long.bitCount(seen & ~row);
+			bumpiness += Long.bitCount((seen ^ seen >>> 1) & pairs);
+			wells += Long.bitCount(~seen & full & (seen << 1 | left) & (seen >>> 1 | right));
+		}
+		return heightWeight * heights + linesWeight * lines + holesWeight * holes +
+		  bumpinessWeight * bumpiness + wellsWeight * wells;
+	}
+
+	/** Возвращает строковое представление весов.
+	 * @return Форматированная строка для вывода на консоль.
+	 */
+	@Override
+	public String toString() {
+		return String.format(java.util.Locale.ROOT,
+		  "%s высота %.3f, строки %.3f, дыры %.3f, неровность %.3f, колодцы %.3f",
+		  getClass().getSimpleName(), heightWeight, linesWeight, holesWeight, bumpinessWeight, wellsWeight);
+	}
+}
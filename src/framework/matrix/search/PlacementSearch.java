@@ -0,0 +1,372 @@
+package framework.matrix.search;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+
+import framework.matrix.model.pieces.PieceMatrix;
+import framework.matrix.model.pieces.PlacementGenerator;
+import framework.matrix.model.pieces.RotatablePiece;
+import framework.matrix.model.pieces.RotationTable;
+
+/** Поиск лучшего размещения фигуры с просмотром следующих фигур.
+ * Перебирает размещения текущей фигуры ({@link PlacementGenerator}), а для каждой
+ * получившейся доски - размещения следующих фигур до заданной глубины, и выбирает
+ * размещение с лучшей оценкой ({@link BoardEvaluator}) листовой доски. Следующие фигуры
+ * появляются в исходном положении своих таблиц поворотов. Доски - битовые маски строк,
+ * заполненные строки удаляются, матрица не модифицируется.
+ *
+ * Поддеревья размещений текущей фигуры оцениваются параллельно в пуле fork/join, у
+ * каждого потока свои генераторы и доски, так что поиск не создает объектов на узел.
+ *
+ * Глубина наращивается постепенно: 1, 2 ... заданная. Если время на ход истекло, результат
+ * берется с последней полностью просмотренной глубины; глубина 1 просматривается всегда.
+ * Поиск можно отменить из другого потока {@link #cancel()}, тогда результата нет.
+ *
+ * С таблицей транспозиций {@link #setTranspositionTable(TranspositionTable)} оценки
+ * промежуточных позиций кэшируются по хешу доски и последовательности оставшихся фигур,
+ * в том числе между ходами: позиция, просмотренная на глубину 3 прошлым ходом,
+ * находится в таблице на глубине 2 этим.
+ *
+ * Один объект поиска выполняет один поиск за раз.
+ *
+ * @author Игорь
+ */
+public class PlacementSearch
+{
+	/** Глубина поиска по умолчанию. */
+	public static final int DEFAULT_DEPTH = 2;
+	/** Время на ход по умолчанию [нс]. */
+	public static final long DEFAULT_TIME_BUDGET = TimeUnit.MILLISECONDS.toNanos(5);
+
+	// рабочие буферы потока
+	private static class Context
+	{
+		PlacementGenerator[] generators;	// [уровень] генераторы размещений
+		long[][] boards;					// [уровень] доски после размещения
+
+		Context(int depth, int height) {
+			generators = new PlacementGenerator[depth];
+			boards = new long[depth][height];
+			for (int i = 0; i < depth; i++)
+				generators[i] = new PlacementGenerator();
+		}
+	}
+
+	// оценка поддерева одного размещения текущей фигуры
+	private class Subtree extends RecursiveAction
+	{
+		private static final long serialVersionUID = 1L;
+
+		final int placement;		// размещение текущей фигуры
+		double score;				// оценка, NaN - поиск прерван
+
+		Subtree(int placement) {
+			this.placement = placement;
+		}
+
+		@Override
+		protected void compute() {
+			Context context = context();
+			long[] board = context.boards[0];
+			int lines = place(root, board, rootTable, placement);
+			score = best(context, board, 1) + evaluator.getLinesWeight() * lines;
+		}
+	}
+
+	private final BoardEvaluator  evaluator;	// оценщик досок
+	private final ForkJoinPool    pool;			// пул поиска
+	private final ThreadLocal<Context> contexts;	// буферы потоков
+	private final PlacementGenerator generator;	// генератор размещений текущей фигуры
+	private TranspositionTable    table;		// таблица транспозиций, null - нет
+	private int                   depth;		// глубина поиска
+	private long                  timeBudget;	// [нс] время на ход
+
+	// состояние текущего поиска
+	private long[]                root;			// доска без текущей фигуры
+	private RotationTable         rootTable;	// таблица текущей фигуры
+	private List<RotationTable>   upcoming;		// таблицы следующих фигур
+	private int                   width;		// ширина доски
+	private int                   height;		// высота доски
+	private int                   level;		// просматриваемая глубина
+	private long[]                pieceKeys;	// [уровень] ключи оставшихся фигур
+	private long                  deadline;		// [нс] срок окончания просмотра
+	private volatile boolean      cancelled;	// признак "поиск отменен"
+
+	// результат
+	private boolean               found;		// признак "размещение найдено"
+	private int                   placement;	// лучшее размещение
+	private double                score;		// его оценка
+	private int                   completed;	// полностью просмотренная глубина
+
+	/** Конструирует поиск с оценщиком по умолчанию в общем пуле.
+	 */
+	public PlacementSearch() {
+		this(new BoardEvaluator(), ForkJoinPool.commonPool());
+	}
+
+	/** Конструирует поиск.
+	 * @param evaluator Оценщик досок.
+	 * @param pool Пул поиска.
+	 * @throws NullPointerException аргументы null
+	 */
+	public PlacementSearch(BoardEvaluator evaluator, ForkJoinPool pool) {
+		if (evaluator == null || pool == null)
+			throw new NullPointerException();
+
+		this.evaluator = evaluator;
+		this.pool = pool;
+		this.contexts = new ThreadLocal<>();
+		this.generator = new PlacementGenerator();
+		this.depth = DEFAULT_DEPTH;
+		this.timeBudget = DEFAULT_TIME_BUDGET;
+		this.root = new long[0];
+		this.pieceKeys = new long[0];
+	}
+
+	/** Возвращает глубину поиска.
+	 * @return 1 - только текущая фигура.
+	 */
+	public int getDepth() {
+		return depth;
+	}
+
+	/** Устанавливает глубину поиска.
+	 * @param depth 1 - только текущая фигура.
+	 * @throws IllegalArgumentException глубина < 1
+	 */
+	public void setDepth(int depth) {
+		if (depth < 1)
+			throw new IllegalArgumentException("глубина " + depth);
+		this.depth = depth;
+	}
+
+	/** Возвращает таблицу транспозиций.
+	 * @return null, если оценки не кэшируются.
+	 */
+	public TranspositionTable getTranspositionTable() {
+		return table;
+	}
+
+	/** Устанавливает таблицу транспозиций.
+	 * Таблица может быть общей для нескольких объектов поиска с одинаковыми оценщиками.
+	 * @param table null, чтобы не кэшировать оценки.
+	 */
+	public void setTranspositionTable(TranspositionTable table) {
+		this.table = table;
+	}
+
+	/** Возвращает время на ход.
+	 * @return [нс]
+	 */
+	public long getTimeBudget() {
+		return timeBudget;
+	}
+
+	/** Устанавливает время на ход.
+	 * @param time Время.
+	 * @param unit Единица измерения времени.
+	 * @throws NullPointerException единица измерения null
+	 * @throws IllegalArgumentException время < 0
+	 */
+	public void setTimeBudget(long time, TimeUnit unit) {
+		if (time < 0)
+			throw new IllegalArgumentException("время " + time);
+		this.timeBudget = unit.toNanos(time);
+	}
+
+	/** Ищет лучшее размещение фигуры.
+	 * @param piece Фигура с таблицей поворотов.
+	 * @param upcoming Таблицы поворотов следующих фигур, используются первые (глубина - 1).
+	 * @return true, если размещение найдено; false - размещений нет или поиск отменен.
+	 * @throws NullPointerException аргументы null
+	 * @throws IllegalStateException фигура не существует, фигура без таблицы поворотов
+	 * @throws UnsupportedOperationException ширина матрицы > 64
+	 * @see #getPlacement()
+	 */
+	public boolean search(RotatablePiece<?> piece, List<RotationTable> upcoming) {
+		if (upcoming == null)
+			throw new NullPointerException();
+
+		long start = System.nanoTime();
+		cancelled = false;
+		found = false;
+		completed = 0;
+
+		int n = generator.generate(piece);
+		if (n == 0)
+			return false;
+
+		PieceMatrix<?, ?> matrix = piece.getMatrix();
+		width = matrix.getWidth();
+		height = matrix.getHeight();
+		if (root.length < height)
+			root = new long[height];
+		matrix.occupancy(root, piece);
+		rootTable = piece.getTable();
+		this.upcoming = upcoming;
+		deadline = start + timeBudget;
+		if (table != null)
+			table.newSearch();
+
+		Subtree[] subtrees = new Subtree[n];
+		for (int i = 0; i < n; i++)
+			subtrees[i] = new Subtree(generator.get(i));
+
+		int maxLevel = Math.min(depth, upcoming.size() + 1);
+		for (level = 1; level <= maxLevel && !cancelled; level++) {
+			if (table != null)
+				computePieceKeys();
+			if (level == 1)
+				for (Subtree t : subtrees)		// без параллелизма, оценок мало
+					t.compute();
+			else {
+				for (Subtree t : subtrees)
+					t.reinitialize();
+				pool.invoke(new RecursiveAction() {
+					private static final long serialVersionUID = 1L;
+					@Override
+					protected void compute() {
+						invokeAll(subtrees);
+					}
+				});
+			}
+
+			// результат глубины, если она просмотрена полностью
+			int best = -1;
+			for (int i = 0; i < n; i++) {
+				if (Double.isNaN(subtrees[i].score)) {
+					best = -1;
+					break;
+				}
+				if (best < 0 || subtrees[i].score > subtrees[best].score)
+					best = i;
+			}
+			if (best < 0)
+				break;
+			found = true;
+			placement = subtrees[best].placement;
+			score = subtrees[best].score;
+			completed = level;
+		}
+		if (cancelled)
+			found = false;
+		return found;
+	}
+
+	/** Отменяет текущий поиск.
+	 * Может вызываться из любого потока.
+	 */
+	public void cancel() {
+		cancelled = true;
+	}
+
+	/** Возвращает лучшее размещение последнего поиска.
+	 * @return Упакованное размещение, см. {@link PlacementGenerator}.
+	 * @throws IllegalStateException размещение не найдено
+	 */
+	public int getPlacement() {
+		if (!found)
+			throw new IllegalStateException("размещение не найдено");
+		return placement;
+	}
+
+	/** Возвращает оценку лучшего размещения последнего поиска.
+	 * @return
+	 * @throws IllegalStateException размещение не найдено
+	 */
+	public double getScore() {
+		if (!found)
+			throw new IllegalStateException("размещение не найдено");
+		return score;
+	}
+
+	/** Возвращает полностью просмотренную глубину последнего поиска.
+	 * @return 0 - размещение не найдено.
+	 */
+	public int getCompletedDepth() {
+		return completed;
+	}
+
+	// буферы текущего потока
+	private Context context() {
+		Context context = contexts.get();
+		if (context == null || context.generators.length < depth || context.boards[0].length < height) {
+			context = new Context(depth, height);
+			contexts.set(context);
+		}
+		return context;
+	}
+
+	// ключи последовательностей фигур с уровня k до просматриваемой глубины
+	private void computePieceKeys() {
+		if (pieceKeys.length < level + 1)
+			pieceKeys = new long[level + 1];
+		pieceKeys[level] = 0;
+		for (int k = level - 1; k >= 1; k--)
+			pieceKeys[k] = TranspositionTable.mix(pieceKeys[k + 1] ^ upcoming.get(k - 1).key());
+	}
+
+	// лучшая оценка доски после размещения следующих фигур с уровня k без учета строк,
+	// удаленных на пути к доске, NaN - поиск прерван
+	private double best(Context context, long[] board, int k) {
+		if (k == level)
+			return evaluator.evaluate(board, width, height, 0);
+		if (cancelled || level > 1 && System.nanoTime() > deadline)
+			return Double.NaN;
+
+		long key = 0;
+		if (table != null) {
+			key = TranspositionTable.boardHash(board, height) ^ pieceKeys[k];
+			double cached = table.get(key, level - k);
+			if (!Double.isNaN(cached))
+				return cached;
+		}
+
+		RotationTable kind = upcoming.get(k - 1);
+		PlacementGenerator generator = context.generators[k];
+		int n = generator.generate(board, width, height, kind, 0, kind.getOriginX(), kind.getOriginY());
+		if (n == 0) {
+			if (table != null)
+				table.put(key, level - k, Double.NEGATIVE_INFINITY);
+			return Double.NEGATIVE_INFINITY;	// конец игры
+		}
+
+		long[] next = context.boards[k];
+		double best = Double.NEGATIVE_INFINITY;
+		for (int i = 0; i < n; i++) {
+			int count = place(board, next, kind, generator.get(i));
+			double score = best(context, next, k + 1);
+			if (Double.isNaN(score))
+				return score;
+			score += evaluator.getLinesWeight() * count;
+			if (score > best)
+				best = score;
+		}
+		if (table != null)
+			table.put(key, level - k, best);
+		return best;
+	}
+
+	// размещает фигуру на копии доски и удаляет заполненные строки, возвращает их число
+	private int place(long[] from, long[] to, RotationTable table, int placement) {
+		System.arraycopy(from, 0, to, 0, height);
+		int o = PlacementGenerator.orientation(placement);
+		int x = PlacementGenerator.x(placement);
+		int y = PlacementGenerator.y(placement);
+		for (int i = 0; i < table.size(); i++)
+			to[y + table.getDY(o, i)] |= 1L << (x + table.getDX(o, i));
+
+		long full = width == Long.SIZE ? -1L : (1L << width) - 1;
+		int lines = 0;
+		for (int src = height - 1, dst = height - 1; dst >= 0; src--, dst--) {
+			while (src >= 0 && to[src] == full) {
+				src--;
+				lines++;
+			}
+			to[dst] = src >= 0 ? to[src] : 0;
+		}
+		return lines;
+	}
+}
@@ -0,0 +1,236 @@
+package framework.matrix.search;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/** Таблица транспозиций - ограниченный кэш оценок позиций поиска.
+ * Позиция задается 64-битным ключом: хешем доски {@link #boardHash(long[], int)}, смешанным
+ * с ключом последовательности фигур, которые еще предстоит разместить. Одна и та же позиция,
+ * достигнутая разными порядками ходов, оценивается один раз.
+ *
+ * Записи упакованы в массив long по 2 слова: старшие 48 бит ключа с глубиной и поколением
+ * записи в младших 16 битах, и биты оценки. Таблица 4-ассоциативна: ключ выбирает группу
+ * из 4 записей, в пределах которой ищется запись или место для нее. Вытесняется запись
+ * прежнего поиска, а среди записей текущего - наименьшей глубины (замена с предпочтением
+ * глубины и возраста). Поколение увеличивает {@link #newSearch()}.
+ *
+ * Группы защищены полосами блокировок, число полос - степень 2, поэтому таблицу можно
+ * разделять между параллельными потоками поиска. Статистика попаданий и промахов ведется
+ * без блокировок.
+ *
+ * @author Игорь
+ */
+public class TranspositionTable
+{
+	private static final int WAYS    = 4;		// записей в группе
+	private static final int STRIPES = 64;		// полос блокировок
+	private static final long META   = 0xFFFF;	// маска глубины и поколения в первом слове
+
+	private final long[]   entries;		// записи по 2 слова
+	private final int      groupMask;	// маска номера группы
+	private final Object[] locks;		// полосы блокировок групп
+	private volatile int   age;			// поколение записей [0, 256)
+
+	private final LongAdder hits;		// попадания
+	private final LongAdder misses;		// промахи
+	private final LongAdder stores;		// записи
+	private final LongAdder evictions;	// вытеснения чужих записей
+
+	/** Конструирует таблицу.
+	 * @param capacity Наибольшее число записей, округляется вверх до степени 2, не менее 4.
+	 * @throws IllegalArgumentException емкость < 1 или > 2^28
+	 */
+	public TranspositionTable(int capacity) {
+		if (capacity < 1 || capacity > 1 << 28)
+			throw new IllegalArgumentException("емкость " + capacity);
+
+		int groups = (capacity <= WAYS ? WAYS : Integer.highestOneBit(capacity - 1) << 1) / WAYS;
+		this.entries = new long[groups * WAYS * 2];
+		this.groupMask = groups - 1;
+		this.locks = new Object[STRIPES];
+		for (int i = 0; i < STRIPES; i++)
+			locks[i] = new Object();
+		this.age = 0;
+		this.hits = new LongAdder();
+		this.misses = new LongAdder();
+		this.stores = new LongAdder();
+		this.evictions = new LongAdder();
+	}
+
+	/** Вычисляет хеш доски.
+	 * @param rows Маски занятости строк.
+	 * @param height Высота доски, не более числа масок.
+	 * @return
+	 */
+	public static long boardHash(long[] rows, int height) {
+		long hash = 0;
+		for (int y = 0; y < height; y++)
+			if (rows[y] != 0)
+				hash ^= mix(rows[y] + y * 0x9E3779B97F4A7C15L);
+		return hash;
+	}
+
+	/** Перемешивает биты числа, финализатор SplitMix64.
+	 * Годится для построения ключей позиций из нескольких составляющих.
+	 * @param z
+	 * @return
+	 */
+	public static long mix(long z) {
+		z += 0x9E3779B97F4A7C15L;
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+	/** Ищет оценку позиции.
+	 * @param key Ключ позиции.
+	 * @param depth Требуемая глубина оценки.
+	 * @return Оценка позиции на глубине не менее требуемой, NaN - нет.
+	 */
+	public double get(long key, int depth) {
+		int group = (int)(key >>> 16) & groupMask;
+		int base = group * WAYS * 2;
+		long tag = key & ~META;
+		synchronized (locks[group & (STRIPES - 1)]) {
+			for (int i = base; i < base + WAYS * 2; i += 2) {
+				long word = entries[i];
+				if (word != 0 && (word & ~META) == tag && (int)(word & 0xFF) >= depth) {
+					hits.increment();
+					return Double.longBitsToDouble(entries[i + 1]);
+				}
+			}
+		}
+		misses.increment();
+		return Double.NaN;
+	}
+
+	/** Запоминает оценку позиции.
+	 * @param key Ключ позиции.
+	 * @param depth Глубина оценки [1, 256).
+	 * @param score Оценка.
+	 * @throws IllegalArgumentException глубина вне [1, 256)
+	 */
+	public void put(long key, int depth, double score) {
+		if (depth < 1 || depth > 0xFF)
+			throw new IllegalArgumentException("глубина " + depth);
+
+		int group = (int)(key >>> 16) & groupMask;
+		int base = group * WAYS * 2;
+		long tag = key & ~META;
+		int current = age;
+		long word = tag | current << 8 | depth;
+		synchronized (locks[group & (STRIPES - 1)]) {
+			int victim = -1, worst = -1;
+			for (int i = base; i < base + WAYS * 2; i += 2) {
+				long old = entries[i];
+				if (old == 0) {
+					if (worst < Integer.MAX_VALUE) {
+						victim = i;
+						worst = Integer.MAX_VALUE;
+					}
+					continue;
+				}
+				if ((old & ~META) == tag) {
+					// та же позиция: оценка не хуже глубиной заменяет прежнюю
+					if ((int)(old & 0xFF) <= depth || (int)(old >>> 8 & 0xFF) != current) {
+						entries[i] = word;
+						entries[i + 1] = Double.doubleToRawLongBits(score);
+						stores.increment();
+					}
+					return;
+				}
+				// чем старше поколение и меньше глубина, тем охотнее вытесняется
+				int rank = ((int)(old >>> 8 & 0xFF) != current ? 0x100 : 0) + 0xFF - (int)(old & 0xFF);
+				if (rank > worst) {
+					victim = i;
+					worst = rank;
+				}
+			}
+			if (entries[victim] != 0)
+				evictions.increment();
+			entries[victim] = word;
+			entries[victim + 1] = Double.doubleToRawLongBits(score);
+			stores.increment();
+		}
+	}
+
+	/** Начинает новый поиск: записи прежних поисков вытесняются в первую очередь.
+	 */
+	public void newSearch() {
+		age = (age + 1) & 0xFF;
+	}
+
+	/** Удаляет все записи и обнуляет статистику.
+	 */
+	public void clear() {
+		for (int s = 0; s < STRIPES; s++) {
+			synchronized (locks[s]) {
+				for (int g = s; g <= groupMask; g += STRIPES)
+					Arrays.fill(entries, g * WAYS * 2, (g + 1) * WAYS * 2, 0);
+			}
+		}
+		resetStatistics();
+	}
+
+	/** Возвращает наибольшее число записей.
+	 * @return
+	 */
+	public int capacity() {
+		return entries.length / 2;
+	}
+
+	/** Возвращает число попаданий.
+	 * @return
+	 */
+	public long getHits() {
+		return hits.sum();
+	}
+
+	/** Возвращает число промахов.
+	 * @return
+	 */
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	/** Возвращает долю попаданий.
+	 * @return [0, 1]
+	 */
+	public double getHitRate() {
+		long h = getHits(), total = h + getMisses();
+		return total == 0 ? 0 : (double)h / total;
+	}
+
+	/** Возвращает число вытеснений записей других позиций.
+	 * @return
+	 */
+	public long getEvictions() {
+		return evictions.sum();
+	}
+
+	/** Обнуляет статистику.
+	 */
+	public void resetStatistics() {
+		hits.reset();
+		misses.reset();
+		stores.reset();
+		evictions.reset();
+	}
+
+	/** Возвращает строковое представление статистики.
+	 * Пример вывода:
+	 * <pre>
+	 * {@code
+	 * TranspositionTable 65536 записей: попаданий 1200 (37.5%), промахов 2000, записано 2000, вытеснено 15
+	 * }
+	 * </pre>
+	 * @return Форматированная строка для вывода на консоль.
+	 */
+	@Override
+	public String toString() {
+		return String.format(java.util.Locale.ROOT,
+		  "%s %d записей: попаданий %d (%.1f%%), промахов %d, записано %d, вытеснено %d",
+		  getClass().getSimpleName(), capacity(), getHits(), getHitRate() * 100, getMisses(),
+		  stores.sum(), getEvictions());
+	}
+}
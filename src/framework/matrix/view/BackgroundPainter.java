@@ -6,6 +6,7 @@ import java.awt.*;
  * Поддерживает оптимизацию рисования. Чтобы нарисовать часть, нужно
  * знать размеры компонента, а они сообщаются {@link #paint}. Допускается
  * выброс исключения если {@link #paintPart} вызван первым.
+ * {@link MatrixView} рисует фон целиком в кэширующий слой и частей не запрашивает.
  * 
  * @author Игорь
  */
@@ -24,4 +25,14 @@ public interface BackgroundPainter
 	 * @throws IllegalStateException {@link #paint} не вызывался ни разу
 	 */
 	void paintPart(Graphics2D g, Rectangle area);
+
+	/** Возвращает счетчик изменений настроек рисования.
+	 * Счетчик увеличивается при каждом изменении, влияющем на рисунок фона, по нему
+	 * {@link MatrixView} перерисовывает кэширующий слой. Рисовальщик с неизменными
+	 * настройками может не переопределять метод.
+	 * @return
+	 */
+	default int getModCount() {
+		return 0;
+	}
 }
@@ -10,6 +10,7 @@ public abstract class BicolourBricks implements BrickPainter
 {
     private Color brickColor;
     private Color nullColor;
+    private int   modCount;     // счетчик изменений настроек
 
     /** Конструктор с серым и прозрачным цветами.
      */
@@ -44,6 +45,7 @@ public abstract class BicolourBricks implements BrickPainter
         if (c == null)
             throw new IllegalArgumentException();
         this.brickColor = c;
+        modified();
     }
 
     /** Возвращает цвет визуализации null значения.
@@ -62,5 +64,20 @@ public abstract class BicolourBricks implements BrickPainter
         if (c == null)
             throw new IllegalArgumentException();
         this.nullColor = c;
+        modified();
+    }
+
+    /** {@inheritDoc}
+     */
+    @Override
+    public int getModCount() {
+        return modCount;
+    }
+
+    /** Отмечает изменение настроек рисования.
+     * Вызывается сеттерами настроек наследников.
+     */
+    protected void modified() {
+        modCount++;
     }
 }
@@ -18,4 +18,14 @@ public interface BrickPainter
 	 * @throws IllegalStateException для блока цвет не задан
 	 */
 	void paint(Graphics2D g, Rectangle area, Object brick);
+
+	/** Возвращает счетчик изменений настроек рисования.
+	 * Счетчик увеличивается при каждом изменении, влияющем на рисунок блоков, по нему
+	 * устаревают рисунки {@link BrickSprites}. Рисовальщик с неизменными настройками
+	 * может не переопределять метод.
+	 * @return
+	 */
+	default int getModCount() {
+		return 0;
+	}
 }
\ No newline at end of file
@@ -0,0 +1,132 @@
+package framework.matrix.view;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.HashMap;
+import java.util.Map;
+
+/** Кэш рисунков блоков - обертка рисовальщика блоков.
+ * Каждое значение блока рисуется оборачиваемым рисовальщиком один раз, в совместимое
+ * с контекстом рисования прозрачное изображение размеров области блока, а затем
+ * только копируется. Рисунки сбрасываются, если изменились:
+ *  размеры области блока
+ *  конфигурация устройства контекста рисования
+ *  настройки рисовальщика, по счетчику {@link BrickPainter#getModCount()}
+ * либо явно {@link #invalidate()}.
+ * Прозрачные рисунки не копируются вовсе, а непрозрачные хранятся в изображениях без
+ * альфа-канала, которые копируются без смешивания цветов.
+ *
+ * Рисовальщик должен рисовать одинаково в любой области одних размеров, т.е. рисунок
+ * зависит только от значения блока и размеров области. Значения блоков должны быть
+ * ключами: одинаково рисуемые блоки равны.
+ *
+ * @author Игорь
+ */
+public class BrickSprites implements BrickPainter
+{
+    /** Наибольшее число рисунков, при превышении кэш очищается. */
+    public static final int MAX_SPRITES = 256;
+
+    // прозрачный рисунок, не копируется
+    private static final BufferedImage EMPTY = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB);
+
+    private final BrickPainter painter;          // оборачиваемый рисовальщик
+    private final Map<Object, BufferedImage> sprites;   // рисунки значений блоков
+    private GraphicsConfiguration configuration; // конфигурация, для которой созданы рисунки
+    private int width, height;                   // размеры рисунков
+    private int modCount;                        // счетчик изменений рисовальщика для рисунков
+
+    /** Конструирует кэш рисунков.
+     * @param painter Рисовальщик блоков.
+     * @throws NullPointerException рисовальщик null
+     */
+    public BrickSprites(BrickPainter painter) {
+        if (painter == null)
+            throw new NullPointerException();
+        this.painter = painter;
+        this.sprites = new HashMap<>();
+        this.modCount = painter.getModCount();
+    }
+
+    /** Возвращает оборачиваемый рисовальщик.
+     * @return
+     */
+    public BrickPainter getPainter() {
+        return painter;
+    }
+
+    /** Сбрасывает рисунки.
+     */
+    public void invalidate() {
+        sprites.clear();
+    }
+
+    /** Возвращает число рисунков в кэше.
+     * @return
+     */
+    public int size() {
+        return sprites.size();
+    }
+
+    /** {@inheritDoc}
+     * Счетчик оборачиваемого рисовальщика.
+     */
+    @Override
+    public int getModCount() {
+        return painter.getModCount();
+    }
+
+    /** {@inheritDoc}
+     * @throws IllegalStateException для блока цвет не задан
+     */
+    @Override
+    public void paint(Graphics2D g, Rectangle area, Object brick) {
+        if (area.width <= 0 || area.height <= 0)
+            return;
+
+        GraphicsConfiguration gc = g.getDeviceConfiguration();
+        if (area.width != width || area.height != height || gc != configuration
+          || painter.getModCount() != modCount || sprites.size() >= MAX_SPRITES)
+        {
+            sprites.clear();
+            width = area.width;
+            height = area.height;
+            configuration = gc;
+            modCount = painter.getModCount();
+        }
+
+        BufferedImage sprite = sprites.get(brick);
+        if (sprite == null) {
+            sprite = render(gc, brick);
+            sprites.put(brick, sprite);
+        }
+        if (sprite != EMPTY)
+            g.drawImage(sprite, area.x, area.y, null);
+    }
+
+    // рисует блок в изображение, прозрачное - EMPTY
+    private BufferedImage render(GraphicsConfiguration gc, Object brick) {
+        BufferedImage sprite = gc.createCompatibleImage(width, height, Transparency.TRANSLUCENT);
+        Graphics2D sg = sprite.createGraphics();
+        try {
+            painter.paint(sg, new Rectangle(0, 0, width, height), brick);
+        } finally {
+            sg.dispose();
+        }
+
+        int[] pixels = sprite.getRGB(0, 0, width, height, null, 0, width);
+        int and = -1, or = 0;
+        for (int p : pixels) {
+            and &= p;
+            or |= p;
+        }
+        if ((or >>> 24) == 0)
+            return EMPTY;
+        if ((and >>> 24) == 0xFF) {
+            BufferedImage opaque = gc.createCompatibleImage(width, height, Transparency.OPAQUE);
+            opaque.setRGB(0, 0, width, height, pixels, 0, width);
+            return opaque;
+        }
+        return sprite;
+    }
+}
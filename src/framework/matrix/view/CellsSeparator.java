@@ -34,4 +34,14 @@ public interface CellsSeparator
 	 * @return Неотрицательное число.
 	 */
     int getThickness();
+
+	/** Возвращает счетчик изменений настроек.
+	 * Счетчик увеличивается при каждом изменении, влияющем на рисунок или геометрию
+	 * ячеек, по нему {@link MatrixView} перерисовывает кэширующий слой и буфер.
+	 * Разделитель с неизменными настройками может не переопределять метод.
+	 * @return
+	 */
+	default int getModCount() {
+		return 0;
+	}
 }
\ No newline at end of file
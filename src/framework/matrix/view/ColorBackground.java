@@ -9,6 +9,7 @@ import java.awt.*;
 public class ColorBackground implements BackgroundPainter 
 {
 	private Color color;
+	private int   modCount;		// счетчик изменений настроек
         
     /** Конструктор белого фона.
      */
@@ -40,6 +41,14 @@ public class ColorBackground implements BackgroundPainter
         if (c == null) 
             throw new IllegalArgumentException();
         this.color = c;
+        modCount++;
+    }
+ 
+    /** {@inheritDoc}
+     */
+    @Override
+    public int getModCount() {
+        return modCount;
     }
  
     /** {@inheritDoc}
@@ -23,6 +23,7 @@ public class EmptySeparator implements CellsSeparator
 	protected int[]     cellX;				// абсциссы ячеек
 	protected int[]     cellY;				// ординаты ячеек 
 	protected Dimension cellSize;			// размеры ячеек
+    private   int       modCount;           // счетчик изменений настроек
 
     /** Конструирует разделитель единичной толщины.
      * @param arraySize Размеры Матрицы.
@@ -71,7 +72,22 @@ public class EmptySeparator implements CellsSeparator
             throw new IllegalArgumentException();                  
         this.thickness = thickness;
         calcCellAreas();
+        modified();
 	}
+
+    /** {@inheritDoc}
+     */
+    @Override
+    public int getModCount() {
+        return modCount;
+    }
+
+    /** Отмечает изменение настроек.
+     * Вызывается сеттерами настроек наследников.
+     */
+    protected void modified() {
+        modCount++;
+    }
         
     /** Метод рисования.
      * Выполняет расчеты и вызывает {@link #actualPaint}.
@@ -13,6 +13,7 @@ public class ImageBackground implements BackgroundPainter
 	private Image 	  image;     	// текстура
     private Dimension compSize;    	// размеры компонента
     private Rectangle imageArea; 	// выводимая область текстуры
+    private int       modCount;     	// счетчик изменений настроек
          
     /** Конструктор с текстурой из файла.
      * @param path Полный путь к файлу.
@@ -48,8 +49,16 @@ public class ImageBackground implements BackgroundPainter
         if (i == null)
             throw new IllegalArgumentException();
         this.image = i;
+        modCount++;
 	}
 
+    /** {@inheritDoc}
+     */
+    @Override
+    public int getModCount() {
+        return modCount;
+    }
+
     /** {@inheritDoc}
      */
     @Override
@@ -55,6 +55,7 @@ public class LCDPixel extends BicolourBricks
         
         this.contourThickness = thickness;
         minimumSize = (int)Math.ceil(Math.max(1/contourThickness, 1/gapThickness));
+        modified();
     }
 
     /** Возвращает ширину зазора.
@@ -76,6 +77,7 @@ public class LCDPixel extends BicolourBricks
         
         this.gapThickness = thickness;
         minimumSize = (int)Math.ceil(Math.max(1/contourThickness, 1/gapThickness));
+        modified();
     } 
 
     @Override
@@ -58,6 +58,7 @@ public class LineSeparator extends EmptySeparator
         if (color == null)
             throw new NullPointerException();   
         this.color = color;
+        modified();
 	}
 
     /** Рисует линии.
@@ -4,26 +4,66 @@ import java.awt.*;
 import java.awt.event.ComponentAdapter;
 import java.awt.event.ComponentEvent;
 import java.awt.image.BufferedImage;
+import java.awt.image.VolatileImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
 import javax.swing.JComponent;
+import javax.swing.Timer;
 import javax.swing.event.ChangeEvent;
 import javax.swing.event.ChangeListener;
 
 import framework.matrix.model.array.ArrayAdapter;
+import framework.matrix.model.array.CellSet;
 import framework.matrix.model.array.ElementsChangeEvent;
+import framework.matrix.model.pieces.PieceMatrix;
 
 /** Компонент визуализации Матрицы.
  * Изображение компонента формируется в 2 слоя:
- *  фон (заливка {@link #getBackground()} цветом не выполняется)
+ *  фон (по заливке {@link #getBackground()} цветом, буфер непрозрачный)
  *  рисунок Матрицы = блоки + разделитель
  * Для этого используются 3 инструмента:
  *  рисовальщик фона {@link BackgroundPainter}
  *  разделитель ячеек {@link CellsSeparator}
- *  рисовальщик блоков {@link BlockPainter}
+ *  рисовальщик блоков {@link BrickPainter}
  * А также надо задать отступы рисунка от краев компонента и блоков от границ ячеек.
  * Поскольку размеры блоков это зависимая от множества параметров характеристика,
  * главным образом от размеров компонента, задайте рекомендованные размеры блоков
  * и перекомпонуйте контейнер содержащий компонент визуализации.
  * 
+ * Модель может изменяться в любом потоке. Координаты измененных ячеек копируются в
+ * набор грязных ячеек и расширяют их охватывающий прямоугольник. Не чаще раза за кадр
+ * {@link #FRAME_PERIOD} потоку диспетчеризации событий (EDT) поручается {@link #repaint(Rectangle)}
+ * области этого прямоугольника, так что серия изменений за кадр рисуется за один раз и
+ * на экран копируется только измененная часть буфера. Буфер обновляется по набору
+ * грязных ячеек при рисовании, а не по событию, поэтому промежуточные состояния модели
+ * (удаление и установка блока при замене блоков кучи) не теряются и не рисуются зря.
+ * 
+ * Рисовальщик блоков оборачивается кэшем рисунков {@link BrickSprites}, так что блок
+ * рисуется копированием готового изображения. Изменение настроек рисовальщика
+ * обнаруживается по его счетчику изменений, и буфер перерисовывается целиком.
+ * 
+ * Фон и разделитель рисуются в отдельный непрозрачный слой только при изменении размеров
+ * компонента, отступов рисунка и этих инструментов. Полное обновление буфера начинается с
+ * копии слоя, а ячейка при частичном обновлении восстанавливается копированием своей
+ * области из слоя, поэтому {@link BackgroundPainter#paintPart} не вызывается.
+ * 
+ * Буфер изображения - непрозрачное изображение совместимого с экраном формата. В ускоренном
+ * режиме {@link #setAccelerated(boolean)} это {@link VolatileImage}, потеря содержимого
+ * которого восстанавливается полной перерисовкой, иначе, а также без экрана (headless) и
+ * вне иерархии окон - {@link BufferedImage}. Буфер создается при рисовании с запасом
+ * размеров {@link #BUFFER_SLACK}, поэтому серия событий резайза до рисования и небольшие
+ * изменения размеров не пересоздают его.
+ * 
+ * Активное рисование {@link #startRenderLoop()} рисует кадры с частотой обновления дисплея
+ * {@link RenderLoop} и анимирует движения, распознанные в изменениях модели: перенос
+ * фигуры {@link PieceMatrix} на вектор и сдвиг строк кучи вниз после удаления заполненных
+ * строк. Ячейки движения рисуются в буфере фоном, а их блоки - поверх буфера со смещением,
+ * линейно убывающим от прежнего положения до нуля за {@link #getAnimationTime()}.
+ * Следующий перенос фигуры до окончания движения продолжает его с текущего смещения.
+ * 
  *
  * @author Игорь
  */
@@ -31,24 +71,407 @@ public class MatrixView extends JComponent
 {
 	private static final long serialVersionUID = -2820922808098625861L;
 
+	/** Наименьший период рисования изменений модели [мс]. */
+	public static final int FRAME_PERIOD = 16;
+	/** Шаг размеров буфера изображения [пиксели]. */
+	public static final int BUFFER_SLACK = 64;
+	/** Длительность анимации движения по умолчанию [мс]. */
+	public static final int DEFAULT_ANIMATION_TIME = 80;
+
+	// смещение группы ячеек, рисуемое поверх буфера
+	private static final class Motion
+	{
+		final int[] cells;			// упакованные координаты ячеек (y * ширина + x) в конечном положении
+		final float dx, dy;			// [ячейки] начальное смещение рисунка от конечного положения
+		final long  start;			// [нс] момент начала
+		final long  duration;		// [нс] длительность
+
+		Motion(int[] cells, float dx, float dy, long start, long duration) {
+			this.cells = cells;
+			this.dx = dx;
+			this.dy = dy;
+			this.start = start;
+			this.duration = duration;
+		}
+
+		// доля начального смещения, оставшаяся к моменту now
+		float remaining(long now) {
+			long elapsed = now - start;
+			return elapsed >= duration ? 0 : 1 - (float)elapsed / duration;
+		}
+	}
+
 	// слушатель изменений модели
 	private class ModelHandler implements ChangeListener
     {
 		ArrayAdapter<?> array;		// визуализируемая модель
-        ElementsChangeEvent event;	// последнее событие
+		CellSet dirty;				// грязные ячейки, доступ под блокировкой обработчика
+		CellSet painting;			// ячейки, рисуемые в EDT
+		int minX, minY, maxX, maxY;	// охватывающий прямоугольник ячеек, не запрошенных к рисованию
+		Timer frame;				// таймер кадра, запущен - рисование поручено EDT
+
+		// анимация, доступ под блокировкой обработчика
+		Object[] shown;				// значения ячеек по последнему событию
+		boolean animating;			// признак "движения анимируются"
+		long animationTime;			// [нс] длительность движения
+		List<Motion> motions;		// текущие движения
+		Motion piece;				// движение фигуры, null - нет
+		int[] moving;				// число движений, содержащих ячейку
+		boolean[] touched;			// рабочая отметка ячеек события
+		int[] from;					// рабочие ячейки фигуры в прежнем положении
+		boolean[] covered;			// рабочая отметка ячеек переноса
+
+		// снимок движений для рисования, в EDT
+		boolean[] paintingMoving;	// ячейка движется: в буфере только фон
+		int[] overlayCells;			// ячейки, рисуемые поверх буфера
+		float[] overlayDX, overlayDY;	// [ячейки] их смещения
+		int overlayCount;			// число ячеек поверх буфера
 
         ModelHandler(ArrayAdapter<?> array) {
             this.array = array;
-            this.event = null;
+            this.dirty = new CellSet(array.getWidth(), array.getHeight());
+            this.painting = new CellSet(array.getWidth(), array.getHeight());
+            this.minX = this.minY = Integer.MAX_VALUE;
+            this.maxX = this.maxY = -1;
+            this.frame = new Timer(FRAME_PERIOD, e -> requestRepaint());
+            this.frame.setRepeats(false);
+
+            int count = array.getWidth() * array.getHeight();
+            this.shown = new Object[count];
+            for (int i = 0; i < count; i++)
+            	shown[i] = array.get(i % array.getWidth(), i / array.getWidth());
+            this.animating = false;
+            this.animationTime = TimeUnit.MILLISECONDS.toNanos(DEFAULT_ANIMATION_TIME);
+            this.motions = new ArrayList<>();
+            this.piece = null;
+            this.moving = new int[count];
+            this.touched = new boolean[count];
+            this.from = new int[count];
+            this.covered = new boolean[count];
+            this.paintingMoving = new boolean[count];
+            this.overlayCells = new int[count];
+            this.overlayDX = new float[count];
+            this.overlayDY = new float[count];
+            this.overlayCount = 0;
             array.addChangeListener(this);
         }
 
         @Override
         public void stateChanged(ChangeEvent e) {
-            event = (ElementsChangeEvent)e;
-            updateBuffer = true;
-            // нельзя repaint(), т.к. имеется риск пропуска рисования при замене блоков кучи (Тетрис)
-            MatrixView.this.paint(MatrixView.this.getGraphics());
+            ElementsChangeEvent event = (ElementsChangeEvent)e;
+            synchronized (this) {
+            	for (int i = 0; i < event.getCellCount(); i++)
+            		markDirty(event.getX(i), event.getY(i));
+            	if (animating)
+            		detectMotions(event);
+            	int width = array.getWidth();
+            	for (int i = 0; i < event.getCellCount(); i++)
+            		shown[event.getY(i) * width + event.getX(i)] = array.get(event.getX(i), event.getY(i));
+            	if (maxX >= 0 && !frame.isRunning())
+            		frame.start();
+            }
+        }
+
+        // отмечает ячейку грязной, под блокировкой
+        void markDirty(int x, int y) {
+        	dirty.add(x, y);
+        	minX = Math.min(minX, x);
+        	minY = Math.min(minY, y);
+        	maxX = Math.max(maxX, x);
+        	maxY = Math.max(maxY, y);
+        }
+        
+        // поручает перерисовку области накопленных изменений, в EDT
+        void requestRepaint() {
+        	Rectangle area = takeRepaintArea();
+        	if (area != null)
+        		MatrixView.this.repaint(area);
+        }
+
+        // забирает область накопленных изменений, null - изменений нет, в EDT
+        Rectangle takeRepaintArea() {
+        	Point min, max;
+        	synchronized (this) {
+        		if (maxX < 0)
+        			return null;
+        		min = new Point(minX, minY);
+        		max = new Point(maxX, maxY);
+        		minX = minY = Integer.MAX_VALUE;
+        		maxX = maxY = -1;
+        	}
+        	if (buffer == null || updateBuffer)		// геометрия ячеек еще не рассчитана
+        		return new Rectangle(getSize());
+        	// ячейки одинаковы, поэтому объединение областей - прямоугольник угловых ячеек
+        	Rectangle area = cellsSeparator.getArea(min);
+        	area.add(cellsSeparator.getArea(max));
+        	return area;
+        }
+        
+        // передает грязные ячейки для рисования и снимок движений, в EDT
+        CellSet takeDirty() {
+        	synchronized (this) {
+        		long now = System.nanoTime();
+        		for (int i = motions.size() - 1; i >= 0; i--)
+        			if (motions.get(i).remaining(now) == 0)
+        				removeMotion(i);
+
+        		overlayCount = 0;
+        		for (Motion m : motions) {
+        			float k = m.remaining(now);
+        			for (int c : m.cells) {
+        				overlayCells[overlayCount] = c;
+        				overlayDX[overlayCount] = m.dx * k;
+        				overlayDY[overlayCount] = m.dy * k;
+        				overlayCount++;
+        			}
+        		}
+        		for (int i = 0; i < moving.length; i++)
+        			paintingMoving[i] = moving[i] != 0;
+
+        		CellSet cells = painting;
+        		cells.clear();
+        		painting = dirty;
+        		dirty = cells;
+        		return painting;
+        	}
+        }
+
+        // область ячеек движений на всем их пути, null - движений нет, в EDT
+        Rectangle motionArea() {
+        	Rectangle area = null;
+        	synchronized (this) {
+        		int width = array.getWidth();
+        		for (Motion m : motions) {
+        			int x0 = Integer.MAX_VALUE, y0 = Integer.MAX_VALUE, x1 = -1, y1 = -1;
+        			for (int c : m.cells) {
+        				x0 = Math.min(x0, c % width);
+        				y0 = Math.min(y0, c / width);
+        				x1 = Math.max(x1, c % width);
+        				y1 = Math.max(y1, c / width);
+        			}
+        			Rectangle r = cellsSeparator.getArea(new Point(x0, y0));
+        			r.add(cellsSeparator.getArea(new Point(x1, y1)));
+        			Point pitch = cellPitch();
+        			Rectangle from = new Rectangle(r);
+        			from.translate(Math.round(m.dx * pitch.x), Math.round(m.dy * pitch.y));
+        			r.add(from);
+        			if (area == null)
+        				area = r;
+        			else
+        				area.add(r);
+        		}
+        	}
+        	return area;
+        }
+
+        // включает или выключает анимацию, в EDT
+        void setAnimating(boolean aFlag) {
+        	synchronized (this) {
+        		animating = aFlag;
+        		if (!aFlag) {
+        			for (int i = motions.size() - 1; i >= 0; i--)
+        				removeMotion(i);
+        			if (maxX >= 0 && !frame.isRunning())
+        				frame.start();
+        		}
+        	}
+        }
+
+        // распознает движения в изменениях события: перенос фигуры, сдвиг строк кучи
+        void detectMotions(ElementsChangeEvent event) {
+        	int width = array.getWidth();
+        	long now = System.nanoTime();
+
+        	// движения, ячейки которых изменились, прекращаются; остаток смещения фигуры
+        	// переходит к ее следующему движению
+        	float carryX = 0, carryY = 0;
+        	int[] pieceCells = piece != null ? piece.cells : null;
+        	if (piece != null) {
+        		float k = piece.remaining(now);
+        		carryX = piece.dx * k;
+        		carryY = piece.dy * k;
+        	}
+        	for (int i = 0; i < event.getCellCount(); i++)
+        		touched[event.getY(i) * width + event.getX(i)] = true;
+        	for (int i = motions.size() - 1; i >= 0; i--) {
+        		for (int c : motions.get(i).cells) {
+        			if (touched[c]) {
+        				removeMotion(i);
+        				break;
+        			}
+        		}
+        	}
+
+        	if (array instanceof PieceMatrix)
+        		detectPieceMove((PieceMatrix<?, ?>)array, event, pieceCells, carryX, carryY, now);
+        	if (event.getCellCount() >= width)
+        		detectCollapse(now);
+
+        	for (int i = 0; i < event.getCellCount(); i++)
+        		touched[event.getY(i) * width + event.getX(i)] = false;
+        }
+
+        // перенос фигуры: блоки фигуры сместились на один вектор. Обработчик вызывается
+        // до обновления индекса владельцев фигуры (Piece.setCells после переноса блоков),
+        // поэтому ненейтральная ячейка события - освобожденная ячейка фигуры, а ячейки ее
+        // владельца по индексу - прежнее положение фигуры
+        void detectPieceMove(PieceMatrix<?, ?> matrix, ElementsChangeEvent event,
+          int[] previous, float carryX, float carryY, long now)
+        {
+        	int width = array.getWidth();
+        	int n = 0;
+        	for (int i = 0; i < event.getCellCount() && n == 0; i++)
+        		n = matrix.getOwnerCells(event.getX(i), event.getY(i), from);
+        	if (n == 0)
+        		return;
+        	Arrays.sort(from, 0, n);	// порядок блоков фигуры меняется и без переноса
+
+        	// заполненная ячейка события - одна из ячеек фигуры в новом положении
+        	int target = -1;
+        	for (int i = 0; i < event.getCellCount() && target < 0; i++)
+        		if (array.get(event.getX(i), event.getY(i)) != null)
+        			target = event.getY(i) * width + event.getX(i);
+        	if (target < 0)
+        		return;
+
+        	for (int j = 0; j < n; j++) {
+        		int dx = target % width - from[j] % width, dy = target / width - from[j] / width;
+        		if ((dx != 0 || dy != 0) && isTranslation(from, n, dx, dy, event)) {
+        			int[] cells = new int[n];
+        			for (int i = 0; i < n; i++)
+        				cells[i] = from[i] + dy * width + dx;
+        			// продолжение движения фигуры сохраняет непрерывность смещения
+        			boolean continued = previous != null && previous.length == n;
+        			for (int i = 0; continued && i < n; i++)
+        				continued = previous[i] == from[i];
+        			piece = new Motion(cells, -dx + (continued ? carryX : 0), -dy + (continued ? carryY : 0),
+        			  now, animationTime);
+        			addMotion(piece);
+        			return;
+        		}
+        	}
+        }
+
+        // блоки ячеек from сместились на (dx, dy), освободив прежние, и других изменений нет
+        boolean isTranslation(int[] from, int n, int dx, int dy, ElementsChangeEvent event) {
+        	int width = array.getWidth(), height = array.getHeight();
+        	boolean translation = true;
+        	int marked = 0;
+        	for (; marked < n; marked++) {
+        		int x = from[marked] % width + dx, y = from[marked] / width + dy;
+        		if (x < 0 || x >= width || y < 0 || y >= height
+        		  || !Objects.equals(array.get(x, y), shown[from[marked]])) {
+        			translation = false;
+        			break;
+        		}
+        		covered[from[marked]] = true;
+        		covered[y * width + x] = true;
+        	}
+        	// освобожденные ячейки пусты
+        	for (int i = 0; translation && i < n; i++)
+        		if (array.get(from[i] % width, from[i] / width) != null && !isTarget(from, n, from[i], dx, dy))
+        			translation = false;
+        	for (int i = 0; translation && i < event.getCellCount(); i++)
+        		if (!covered[event.getY(i) * width + event.getX(i)])
+        			translation = false;
+
+        	// отметки снимаются, рабочий массив чист к следующему событию
+        	for (int i = 0; i < marked; i++) {
+        		covered[from[i]] = false;
+        		covered[from[i] + dy * width + dx] = false;
+        	}
+        	return translation;
+        }
+
+        // ячейка c - одна из ячеек from, смещенных на (dx, dy)
+        boolean isTarget(int[] from, int n, int c, int dx, int dy) {
+        	int width = array.getWidth();
+        	for (int i = 0; i < n; i++)
+        		if (from[i] % width + dx == c % width && from[i] / width + dy == c / width)
+        			return true;
+        	return false;
+        }
+
+        // сдвиг строк кучи: строки новой модели - прежние строки по порядку снизу вверх,
+        // пропущены только заполненные прежние строки, сверху добавлены пустые
+        void detectCollapse(long now) {
+        	int width = array.getWidth(), height = array.getHeight();
+        	int[] sources = new int[height];
+        	int s = height - 1, removed = 0;
+        	for (int y = height - 1; y >= 0; y--) {
+        		while (s >= 0 && !rowMatches(y, s)) {
+        			if (!isShownRowFull(s))
+        				return;
+        			s--;
+        			removed++;
+        		}
+        		if (s < 0) {
+        			for (int x = 0; x < width; x++)
+        				if (array.get(x, y) != null)
+        					return;
+        			sources[y] = -1;
+        		}
+        		else
+        			sources[y] = s--;
+        	}
+        	for (; s >= 0; s--, removed++)
+        		if (!isShownRowFull(s))
+        			return;
+        	if (removed == 0)
+        		return;
+
+        	// одно движение на каждую величину сдвига
+        	for (int shift = 1; shift <= removed; shift++) {
+        		int n = 0;
+        		int[] cells = new int[width * height];
+        		for (int y = 0; y < height; y++)
+        			if (sources[y] >= 0 && y - sources[y] == shift)
+        				for (int x = 0; x < width; x++)
+        					if (array.get(x, y) != null)
+        						cells[n++] = y * width + x;
+        		if (n != 0)
+        			addMotion(new Motion(Arrays.copyOf(cells, n), 0, -shift, now, animationTime));
+        	}
+        }
+
+        // строка y модели совпадает с прежней строкой s
+        boolean rowMatches(int y, int s) {
+        	int width = array.getWidth();
+        	for (int x = 0; x < width; x++)
+        		if (!Objects.equals(array.get(x, y), shown[s * width + x]))
+        			return false;
+        	return true;
+        }
+
+        // прежняя строка s заполнена
+        boolean isShownRowFull(int s) {
+        	int width = array.getWidth();
+        	for (int x = 0; x < width; x++)
+        		if (shown[s * width + x] == null)
+        			return false;
+        	return true;
+        }
+
+        // начинает движение: его ячейки в буфере становятся фоном
+        void addMotion(Motion m) {
+        	int width = array.getWidth();
+        	motions.add(m);
+        	for (int c : m.cells) {
+        		moving[c]++;
+        		markDirty(c % width, c / width);
+        	}
+        }
+
+        // прекращает движение: его ячейки рисуются в буфере
+        void removeMotion(int i) {
+        	int width = array.getWidth();
+        	Motion m = motions.remove(i);
+        	if (m == piece)
+        		piece = null;
+        	for (int c : m.cells) {
+        		moving[c]--;
+        		markDirty(c % width, c / width);
+        	}
         }
 	}
         
@@ -57,38 +480,64 @@ public class MatrixView extends JComponent
     {
         @Override
         public void componentResized(ComponentEvent e) {
-            Dimension size = MatrixView.this.getSize();
-            if (size.height > 0) {
-            	buffer = new BufferedImage(size.width, size.height, BufferedImage.TYPE_INT_ARGB);
-                updateBuffer = true;
-                MatrixView.this.repaint();
-            } 
+            // буфер подбирается при рисовании, здесь только его полное обновление
+            updateBuffer = true;
+            updateLayer = true;
+            sprites.invalidate();
+            overlaySprites.invalidate();
+            MatrixView.this.repaint();
         } 
     }
     
-    private BufferedImage     buffer;				// буфер изображения компонента
-    private boolean           updateBuffer;			// признак "обновить содержимое буфера"
+    private Image             buffer;				// буфер изображения компонента, null - не создан
+    private boolean           accelerated;			// признак "ускоренный режим"
+    private int               allocations;			// число созданий буфера
+    private boolean           updateBuffer;			// признак "обновить содержимое буфера целиком"
+    private BufferedImage     layer;				// слой фона и разделителя, null - не создан
+    private boolean           updateLayer;			// признак "перерисовать слой"
 	private ModelHandler   	  modelHandler;			// приемник событий от модели Матрицы
     private BackgroundPainter backgroundPainter;	// инструмент рисования фона компонента
 	private CellsSeparator    cellsSeparator;		// инструмент разделения ячеек Матрицы
 	private BrickPainter	  brickPainter;			// инструмент рисования блоков Матрицы
+	private BrickSprites	  sprites;				// кэш рисунков блоков инструмента
+	private BrickSprites	  overlaySprites;		// кэш рисунков блоков, рисуемых поверх буфера
+	private int				  brickModCount;		// счетчик изменений инструмента в буфере
+	private int				  backgroundModCount;	// счетчик изменений рисовальщика фона в слое
+	private int				  separatorModCount;	// счетчик изменений разделителя в слое
     private Insets            draftInsets;          // отступы рисунка от краев компонента
     private Insets            brickInsets;          // отступы блока от границ ячейки
     private Dimension         preferredBrickSize;   // рекомендованные размеры блока
+    private long              paintCount;			// число вызовов рисования
+    private long              paintedPixels;		// число пикселей, скопированных из буфера
+    private RenderLoop        renderLoop;			// цикл активного рисования, null - не запускался
+    private Rectangle         overlayArea;			// область движений прошлого кадра, null - нет
 
     /** Конструирует визуализатор Матрицы.
      * @param model
      */
 	public MatrixView(ArrayAdapter<?> model) {
         buffer = null;
+        accelerated = true;
+        allocations = 0;
         updateBuffer = false;
+        layer = null;
+        updateLayer = true;
         modelHandler = new ModelHandler(model);
         backgroundPainter = new ColorBackground();
         cellsSeparator = new LineSeparator(modelHandler.array.size());
         brickPainter = new PlainRectangle();
+        sprites = new BrickSprites(brickPainter);
+        overlaySprites = new BrickSprites(brickPainter);
+        brickModCount = brickPainter.getModCount();
+        backgroundModCount = backgroundPainter.getModCount();
+        separatorModCount = cellsSeparator.getModCount();
         draftInsets = new Insets(0, 0, 0, 0);
         brickInsets = new Insets(0, 0, 0, 0);
         preferredBrickSize = new Dimension(40, 40);
+        paintCount = 0;
+        paintedPixels = 0;
+        renderLoop = null;
+        overlayArea = null;
 
         addComponentListener(new ResizeHandler());
 	}
@@ -108,6 +557,9 @@ public class MatrixView extends JComponent
         if (tool == null)
             throw new NullPointerException();
         this.backgroundPainter = tool;
+        backgroundModCount = tool.getModCount();
+        updateBuffer = true;
+        updateLayer = true;
         repaint();
 	}
 
@@ -126,6 +578,9 @@ public class MatrixView extends JComponent
         if (tool == null)
             throw new NullPointerException();
         this.cellsSeparator = tool;
+        separatorModCount = tool.getModCount();
+        updateBuffer = true;
+        updateLayer = true;
         repaint();
 	}
 
@@ -137,6 +592,7 @@ public class MatrixView extends JComponent
 	}
 	
 	/** Устанавливает инструмент рисования блока.
+	 * Инструмент оборачивается кэшем рисунков, если это еще не {@link BrickSprites}.
 	 * @param tool
 	 * @throws NullPointerException инструмент null
 	 */
@@ -144,6 +600,10 @@ public class MatrixView extends JComponent
         if (tool == null)
             throw new NullPointerException();
         this.brickPainter = tool;
+        sprites = tool instanceof BrickSprites ? (BrickSprites)tool : new BrickSprites(tool);
+        overlaySprites = new BrickSprites(tool);
+        brickModCount = tool.getModCount();
+        updateBuffer = true;
         repaint();
 	}
          
@@ -164,6 +624,8 @@ public class MatrixView extends JComponent
         if (insets.left < 0 || insets.top < 0 || insets.right < 0 || insets.bottom < 0)
             throw new IllegalArgumentException(); 
         this.draftInsets = insets;
+        updateBuffer = true;
+        updateLayer = true;
         repaint();
     }
          
@@ -184,6 +646,7 @@ public class MatrixView extends JComponent
         if (insets.left < 0 || insets.top < 0 || insets.right < 0 || insets.bottom < 0)
             throw new IllegalArgumentException(); 
         this.brickInsets = insets;
+        updateBuffer = true;
         repaint();
     }
      
@@ -216,72 +679,360 @@ public class MatrixView extends JComponent
             preferredBrickSize.width + (brickInsets.left + brickInsets.right),
             preferredBrickSize.height + (brickInsets.top + brickInsets.bottom));    
         return new Dimension(
-            modelHandler.array.size().width * (prefferedCellSize.width + cellsSeparator.getThickness()) 
+            modelHandler.array.getWidth() * (prefferedCellSize.width + cellsSeparator.getThickness()) 
               + cellsSeparator.getThickness() + draftInsets.left + draftInsets.right,
-            modelHandler.array.size().height * (prefferedCellSize.height + cellsSeparator.getThickness()) 
+            modelHandler.array.getHeight() * (prefferedCellSize.height + cellsSeparator.getThickness()) 
               + cellsSeparator.getThickness() + draftInsets.top + draftInsets.bottom);
     }
              
+    /** Возвращает признак ускоренного режима.
+     * @return
+     */
+    public boolean isAccelerated() {
+        return accelerated;
+    }
+
+    /** Включает или выключает ускоренный режим.
+     * В ускоренном режиме буфер изображения - {@link VolatileImage}, если компонент
+     * отображается на экране, иначе - {@link BufferedImage}. По умолчанию режим включен.
+     * @param aFlag
+     */
+    public void setAccelerated(boolean aFlag) {
+        this.accelerated = aFlag;
+        repaint();
+    }
+
+    /** Возвращает число созданий буфера изображения.
+     * Вызывать в EDT.
+     * @return
+     */
+    public int getBufferAllocations() {
+        return allocations;
+    }
+
+    /** Запускает активное рисование с частотой обновления дисплея.
+     * Если оно уже идет, оно сначала останавливается. Вызывать в EDT.
+     * @see RenderLoop#displayRate(GraphicsConfiguration)
+     */
+    public void startRenderLoop() {
+        startRenderLoop(RenderLoop.displayRate(getGraphicsConfiguration()));
+    }
+
+    /** Запускает активное рисование.
+     * Если оно уже идет, оно сначала останавливается. Вызывать в EDT.
+     * @param frameRate Частота кадров [{@link RenderLoop#MIN_FRAME_RATE}, {@link RenderLoop#MAX_FRAME_RATE}].
+     * @throws IllegalArgumentException частота вне допустимого диапазона
+     */
+    public void startRenderLoop(int frameRate) {
+        RenderLoop loop = new RenderLoop(frameRate, this::renderFrame);
+        stopRenderLoop();
+        renderLoop = loop;
+        modelHandler.setAnimating(true);
+        loop.start();
+    }
+
+    /** Останавливает активное рисование, текущие движения завершаются сразу.
+     * Вызывать в EDT. Если рисование не идет, ничего не делает.
+     */
+    public void stopRenderLoop() {
+        if (renderLoop != null && renderLoop.isRunning()) {
+            renderLoop.stop();
+            modelHandler.setAnimating(false);
+            repaint();
+        }
+    }
+
+    /** Возвращает цикл активного рисования, в том числе остановленный.
+     * Предоставляет статистику кадров.
+     * @return null, если активное рисование не запускалось.
+     */
+    public RenderLoop getRenderLoop() {
+        return renderLoop;
+    }
+
+    /** Возвращает длительность анимации движения.
+     * @return [мс]
+     */
+    public int getAnimationTime() {
+        synchronized (modelHandler) {
+            return (int)TimeUnit.NANOSECONDS.toMillis(modelHandler.animationTime);
+        }
+    }
+
+    /** Устанавливает длительность анимации движения.
+     * Чтобы фигура двигалась непрерывно, длительность должна быть близка к периоду
+     * гравитации; меньшая длительность сглаживает лишь начало шага.
+     * @param time [мс] 0 - движения не анимируются.
+     * @throws IllegalArgumentException длительность < 0
+     */
+    public void setAnimationTime(int time) {
+        if (time < 0)
+            throw new IllegalArgumentException("длительность " + time);
+        synchronized (modelHandler) {
+            modelHandler.animationTime = TimeUnit.MILLISECONDS.toNanos(time);
+        }
+    }
+
+    /** Возвращает число вызовов рисования компонента.
+     * Вызывать в EDT.
+     * @return
+     */
+    public long getPaintCount() {
+        return paintCount;
+    }
+
+    /** Возвращает число пикселей, скопированных из буфера на экран.
+     * Вызывать в EDT.
+     * @return
+     */
+    public long getPaintedPixels() {
+        return paintedPixels;
+    }
+
+    /** Обнуляет счетчики рисования.
+     * Вызывать в EDT.
+     */
+    public void resetPaintStatistics() {
+        paintCount = 0;
+        paintedPixels = 0;
+    }
+
     /** Формирует изображение компонента.
-     * 
+     * Буфер обновляется по всем грязным ячейкам, а на экран копируется только
+     * область отсечения контекста. Содержимое ускоренного буфера, потерянное до
+     * копирования, рисуется заново целиком.
      */
     @Override
 	public void paint(Graphics g) 
     {
-    	if (updateBuffer) 
-        {
-            Graphics2D g2d = buffer.createGraphics();
-            
-            // обновить буфер целиком?
-            if (modelHandler.event == null)		
-            {
-            	Dimension size = getSize();
-                backgroundPainter.paint(g2d, size);         
-                cellsSeparator.paint(g2d, new Rectangle(
-                    draftInsets.left,
-                    draftInsets.top,
-                    size.width - (draftInsets.left + draftInsets.right),
-                    size.height - (draftInsets.top + draftInsets.bottom)
-                ));
-                
-                Point cell = new Point();
-                for (cell.y = 0; cell.y < modelHandler.array.size().height; cell.y++) {
-                    for (cell.x = 0; cell.x < modelHandler.array.size().width; cell.x++) {
-                        Object brick = modelHandler.array.get(cell);
-                        Rectangle area = cellsSeparator.getArea(cell);
-                        area.x += brickInsets.left;
-                        area.y += brickInsets.top;
-                        area.width -= brickInsets.left + brickInsets.right;
-                        area.height -= brickInsets.top + brickInsets.bottom;
-                        
-                        brickPainter.paint(g2d, area, brick);
-                    }
-                }
-            }
-            else
-            {
-            	 for (Point cell : modelHandler.event) {
-                     Object brick = modelHandler.array.get(cell);
-                     Rectangle cellArea = cellsSeparator.getArea(cell);
-                     Rectangle brickArea = new Rectangle(
-                         cellArea.x + brickInsets.left,
-                         cellArea.y + brickInsets.top,
-                         cellArea.width - (brickInsets.left + brickInsets.right),
-                         cellArea.height - (brickInsets.top + brickInsets.bottom)       
-                     );
-                     
-                     backgroundPainter.paintPart(g2d, cellArea);
-                     brickPainter.paint(g2d, brickArea, brick);
-                 }
-            	 
-                 modelHandler.event = null;
-            }
-            
-            updateBuffer = false;
-        }
+    	Dimension size = getSize();
+    	if (size.width <= 0 || size.height <= 0)		// компонент еще не скомпонован
+    		return;
+    	if (brickPainter.getModCount() != brickModCount) {	// изменились настройки рисования блоков
+    		brickModCount = brickPainter.getModCount();
+    		updateBuffer = true;
+    	}
+    	if (backgroundPainter.getModCount() != backgroundModCount		// изменились настройки слоя
+    	  || cellsSeparator.getModCount() != separatorModCount) {
+    		backgroundModCount = backgroundPainter.getModCount();
+    		separatorModCount = cellsSeparator.getModCount();
+    		updateBuffer = true;
+    		updateLayer = true;
+    	}
 
-        g.drawImage(buffer, 0, 0, this);
+    	GraphicsConfiguration gc = getGraphicsConfiguration();
+    	if (accelerated && gc != null && !GraphicsEnvironment.isHeadless()) {
+    		VolatileImage image;
+    		boolean retry = false;		// признак "содержимое потеряно, повтор"
+    		do {
+    			if (!(buffer instanceof VolatileImage) || !fits(buffer, size)) {
+    				allocateBuffer(gc, size, true);
+    			} else {
+    				switch (((VolatileImage)buffer).validate(gc)) {
+    					case VolatileImage.IMAGE_INCOMPATIBLE:
+    						allocateBuffer(gc, size, true);
+    						break;
+    					case VolatileImage.IMAGE_RESTORED:
+    						updateBuffer = true;
+    						break;
+    				}
+    			}
+    			image = (VolatileImage)buffer;
+    			if (retry)
+    				updateBuffer = true;
+    			updateBuffer(image.createGraphics(), size);
+    			blit(g, size);
+    			retry = true;
+    		} while (image.contentsLost());
+    	} else {
+    		if (!(buffer instanceof BufferedImage) || !fits(buffer, size))
+    			allocateBuffer(gc, size, false);
+    		updateBuffer(((BufferedImage)buffer).createGraphics(), size);
+    		blit(g, size);
+    	}
         
+        paintOverlay(g);
         paintBorder(g);
-	}   
-}
+	}
+
+    // размеры буфера подходят компоненту: не меньше и не намного больше
+    private static boolean fits(Image image, Dimension size) {
+    	int w = image.getWidth(null), h = image.getHeight(null);
+    	return w >= size.width && h >= size.height
+    	  && w - size.width < 2 * BUFFER_SLACK && h - size.height < 2 * BUFFER_SLACK;
+    }
+
+    // создает непрозрачный буфер с запасом размеров, содержимое обновляется целиком
+    private void allocateBuffer(GraphicsConfiguration gc, Dimension size, boolean volatileImage) {
+    	if (buffer instanceof VolatileImage)
+    		((VolatileImage)buffer).flush();
+    	int w = (size.width + BUFFER_SLACK - 1) / BUFFER_SLACK * BUFFER_SLACK;
+    	int h = (size.height + BUFFER_SLACK - 1) / BUFFER_SLACK * BUFFER_SLACK;
+    	if (volatileImage)
+    		buffer = gc.createCompatibleVolatileImage(w, h, Transparency.OPAQUE);
+    	else if (gc != null)
+    		buffer = gc.createCompatibleImage(w, h, Transparency.OPAQUE);
+    	else
+    		buffer = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+    	updateBuffer = true;
+    	allocations++;
+    }
+
+    // обновляет содержимое буфера: целиком или грязные ячейки
+    private void updateBuffer(Graphics2D g2d, Dimension size) {
+    	CellSet dirtyCells = modelHandler.takeDirty();
+    	boolean[] moving = modelHandler.paintingMoving;
+    	int width = modelHandler.array.getWidth();
+    	try {
+    		if (updateBuffer)		// обновить буфер целиком?
+    		{
+    			if (updateLayer || layer == null || layer.getWidth() != buffer.getWidth(null)
+    			  || layer.getHeight() != buffer.getHeight(null))
+    				paintLayer(size);
+    			g2d.drawImage(layer, 0, 0, null);
+
+    			Point cell = new Point();
+    			for (cell.y = 0; cell.y < modelHandler.array.getHeight(); cell.y++) {
+    				for (cell.x = 0; cell.x < modelHandler.array.getWidth(); cell.x++) {
+    					Object brick = modelHandler.array.get(cell);
+    					Rectangle area = cellsSeparator.getArea(cell);
+    					area.x += brickInsets.left;
+    					area.y += brickInsets.top;
+    					area.width -= brickInsets.left + brickInsets.right;
+    					area.height -= brickInsets.top + brickInsets.bottom;
+
+    					if (!moving[cell.y * width + cell.x])		// блок движения рисуется поверх буфера
+    						sprites.paint(g2d, area, brick);
+    				}
+    			}
+    		}
+    		else
+    		{
+    			Point cell = new Point();
+    			for (int i = 0; i < dirtyCells.size(); i++) {
+    				cell.setLocation(dirtyCells.getX(i), dirtyCells.getY(i));
+    				Object brick = modelHandler.array.get(cell);
+    				Rectangle cellArea = cellsSeparator.getArea(cell);
+    				Rectangle brickArea = new Rectangle(
+    					cellArea.x + brickInsets.left,
+    					cellArea.y + brickInsets.top,
+    					cellArea.width - (brickInsets.left + brickInsets.right),
+    					cellArea.height - (brickInsets.top + brickInsets.bottom)       
+    				);
+
+    				g2d.drawImage(layer,
+    				  cellArea.x, cellArea.y, cellArea.x + cellArea.width, cellArea.y + cellArea.height,
+    				  cellArea.x, cellArea.y, cellArea.x + cellArea.width, cellArea.y + cellArea.height, null);
+    				if (!moving[cell.y * width + cell.x])
+    					sprites.paint(g2d, brickArea, brick);
+    			}
+    		}
+    		updateBuffer = false;
+    	} finally {
+    		g2d.dispose();
+    	}
+    }
+
+    // рисует кадр активного рисования: изменения модели и движения, в EDT
+    private void renderFrame() {
+    	Rectangle area = modelHandler.takeRepaintArea();
+    	if (buffer == null || updateBuffer) {
+    		area = new Rectangle(getSize());
+    		overlayArea = null;
+    	}
+    	else {
+    		// область движений этого кадра и прошлого, чтобы стереть прежний рисунок
+    		Rectangle motion = modelHandler.motionArea();
+    		for (Rectangle r : new Rectangle[] {overlayArea, motion}) {
+    			if (r == null)
+    				continue;
+    			if (area == null)
+    				area = new Rectangle(r);
+    			else
+    				area.add(r);
+    		}
+    		overlayArea = motion;
+    	}
+    	if (area != null)
+    		paintImmediately(area);
+    }
+
+    // расстояние между соседними ячейками по горизонтали и вертикали
+    private Point cellPitch() {
+    	Rectangle a = cellsSeparator.getArea(new Point(0, 0));
+    	int t = cellsSeparator.getThickness();
+    	return new Point(
+    	  modelHandler.array.getWidth() > 1 ? cellsSeparator.getArea(new Point(1, 0)).x - a.x : a.width + t,
+    	  modelHandler.array.getHeight() > 1 ? cellsSeparator.getArea(new Point(0, 1)).y - a.y : a.height + t);
+    }
+
+    // рисует блоки движущихся ячеек поверх буфера со смещениями
+    private void paintOverlay(Graphics g) {
+    	ModelHandler h = modelHandler;
+    	if (h.overlayCount == 0)
+    		return;
+
+    	int width = h.array.getWidth();
+    	Rectangle draft = cellsSeparator.getArea(new Point(0, 0));
+    	draft.add(cellsSeparator.getArea(new Point(width - 1, h.array.getHeight() - 1)));
+    	Point pitch = cellPitch();
+    	Graphics2D g2d = (Graphics2D)g.create();
+    	try {
+    		g2d.clipRect(draft.x, draft.y, draft.width, draft.height);
+    		Point cell = new Point();
+    		for (int i = 0; i < h.overlayCount; i++) {
+    			cell.setLocation(h.overlayCells[i] % width, h.overlayCells[i] / width);
+    			Rectangle area = cellsSeparator.getArea(cell);
+    			area.x += brickInsets.left + Math.round(h.overlayDX[i] * pitch.x);
+    			area.y += brickInsets.top + Math.round(h.overlayDY[i] * pitch.y);
+    			area.width -= brickInsets.left + brickInsets.right;
+    			area.height -= brickInsets.top + brickInsets.bottom;
+    			overlaySprites.paint(g2d, area, h.array.get(cell));
+    		}
+    	} finally {
+    		g2d.dispose();
+    	}
+    }
+
+    // рисует слой фона и разделителя размеров буфера, пересоздает его при необходимости
+    private void paintLayer(Dimension size) {
+    	int w = buffer.getWidth(null), h = buffer.getHeight(null);
+    	if (layer == null || layer.getWidth() != w || layer.getHeight() != h) {
+    		GraphicsConfiguration gc = getGraphicsConfiguration();
+    		layer = gc != null ? gc.createCompatibleImage(w, h, Transparency.OPAQUE)
+    		  : new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+    	}
+
+    	Graphics2D g2d = layer.createGraphics();
+    	try {
+    		Color fill = getBackground();
+    		g2d.setColor(fill != null ? fill : Color.BLACK);
+    		g2d.fillRect(0, 0, w, h);
+    		backgroundPainter.paint(g2d, size);         
+    		cellsSeparator.paint(g2d, new Rectangle(
+    			draftInsets.left,
+    			draftInsets.top,
+    			size.width - (draftInsets.left + draftInsets.right),
+    			size.height - (draftInsets.top + draftInsets.bottom)
+    		));
+    	} finally {
+    		g2d.dispose();
+    	}
+    	updateLayer = false;
+    }
+
+    // копирует область отсечения из буфера
+    private void blit(Graphics g, Dimension size) {
+        Rectangle clip = g.getClipBounds();
+        if (clip == null)
+        	clip = new Rectangle(size);
+        else
+        	clip = clip.intersection(new Rectangle(size));
+        if (!clip.isEmpty()) {
+        	g.drawImage(buffer, clip.x, clip.y, clip.x + clip.width, clip.y + clip.height,
+        	  clip.x, clip.y, clip.x + clip.width, clip.y + clip.height, this);
+        	paintedPixels += (long)clip.width * clip.height;
+        }
+        paintCount++;
+    }
+}
\ No newline at end of file
@@ -11,6 +11,7 @@ import java.util.*;
 public abstract class MulticolorBricks implements BrickPainter
 {
 	private Map<Object, Color> colors;
+	private int modCount;		// счетчик изменений настроек
         
     /** Конструктор рисовальщика.
      * @param colors Цветовые настройки блоков.
@@ -50,7 +51,22 @@ public abstract class MulticolorBricks implements BrickPainter
         }
          
         this.colors = new HashMap<>(colors);
+        modified();
 	}
+
+    /** {@inheritDoc}
+     */
+    @Override
+    public int getModCount() {
+        return modCount;
+    }
+
+    /** Отмечает изменение настроек рисования.
+     * Вызывается сеттерами настроек наследников.
+     */
+    protected void modified() {
+        modCount++;
+    }
         
     /** Предоставляет цвет, которым должен рисоваться блок.
      * @param brick Значение блока, м.б. null.
@@ -0,0 +1,245 @@
+package framework.matrix.view;
+
+import java.awt.DisplayMode;
+import java.awt.GraphicsConfiguration;
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import javax.swing.SwingUtilities;
+
+/** Цикл активного рисования.
+ * Отдельный поток с заданной частотой кадров поручает потоку диспетчеризации событий
+ * (EDT) рисование кадра и дожидается его окончания, так что кадры не накапливаются в
+ * очереди событий. Кадры планируются на моменты start + n * период; если кадр не уложился
+ * в период, пропущенные моменты не навёрстываются, а засчитываются выпавшими кадрами.
+ *
+ * Статистика:
+ *  число нарисованных кадров
+ *  число выпавших кадров - моментов, на которые кадр не был нарисован
+ *  число кадров сверх бюджета - рисовавшихся дольше бюджета кадра
+ *  максимальное и среднее время кадра
+ *
+ * @author Игорь
+ */
+public class RenderLoop
+{
+	/** Наименьшая частота кадров [Гц]. */
+	public static final int MIN_FRAME_RATE = 60;
+	/** Наибольшая частота кадров [Гц]. */
+	public static final int MAX_FRAME_RATE = 240;
+
+	private final long     period;			// [нс] период кадров
+	private final Runnable frame;			// рисование кадра, в EDT
+	private volatile long  budget;			// [нс] бюджет кадра
+	private volatile Thread thread;			// поток цикла, null - остановлен
+
+	private volatile long  frameCount;		// нарисовано кадров
+	private volatile long  droppedCount;	// выпало кадров
+	private volatile long  overBudgetCount;	// кадров сверх бюджета
+	private volatile long  maxFrameTime;	// [нс] максимальное время кадра
+	private volatile long  frameTimeSum;	// [нс] суммарное время кадров
+
+	/** Конструирует цикл, бюджет кадра равен периоду.
+	 * @param frameRate Частота кадров [{@link #MIN_FRAME_RATE}, {@link #MAX_FRAME_RATE}].
+	 * @param frame Рисование кадра, выполняется в EDT.
+	 * @throws NullPointerException рисование null
+	 * @throws IllegalArgumentException частота вне допустимого диапазона
+	 */
+	public RenderLoop(int frameRate, Runnable frame) {
+		if (frame == null)
+			throw new NullPointerException();
+		if (frameRate < MIN_FRAME_RATE || frameRate > MAX_FRAME_RATE)
+			throw new IllegalArgumentException("частота " + frameRate);
+
+		this.period = Math.round(1e9 / frameRate);
+		this.frame = frame;
+		this.budget = period;
+	}
+
+	/** Определяет частоту кадров по частоте обновления дисплея.
+	 * @param gc Конфигурация устройства, м.б. null.
+	 * @return Частота обновления, приведенная к [{@link #MIN_FRAME_RATE}, {@link #MAX_FRAME_RATE}];
+	 * {@link #MIN_FRAME_RATE}, если она неизвестна.
+	 */
+	public static int displayRate(GraphicsConfiguration gc) {
+		int rate = DisplayMode.REFRESH_RATE_UNKNOWN;
+		if (gc != null) {
+			DisplayMode mode = gc.getDevice().getDisplayMode();
+			if (mode != null)
+				rate = mode.getRefreshRate();
+		}
+		return Math.max(MIN_FRAME_RATE, Math.min(MAX_FRAME_RATE, rate));
+	}
+
+	/** Запускает цикл.
+	 * Если цикл уже идет, он сначала останавливается. Создает поток-демон цикла.
+	 */
+	public synchronized void start() {
+		stop();
+		Thread t = new Thread(this::run, "render-loop");
+		t.setDaemon(true);
+		thread = t;
+		t.start();
+	}
+
+	/** Останавливает цикл.
+	 * Не дожидается завершения потока цикла: тот может ожидать окончания кадра в EDT,
+	 * из которого, возможно, и вызван метод. Если цикл не идет, ничего не делает.
+	 */
+	public synchronized void stop() {
+		Thread t = thread;
+		if (t != null) {
+			thread = null;
+			LockSupport.unpark(t);
+		}
+	}
+
+	/** Проверяет, идет ли цикл.
+	 * @return
+	 */
+	public boolean isRunning() {
+		return thread != null;
+	}
+
+	/** Возвращает период кадров.
+	 * @return [нс]
+	 */
+	public long getPeriod() {
+		return period;
+	}
+
+	/** Возвращает бюджет кадра.
+	 * @return [нс]
+	 */
+	public long getFrameBudget() {
+		return budget;
+	}
+
+	/** Устанавливает бюджет кадра.
+	 * Кадры, рисовавшиеся дольше, засчитываются {@link #getOverBudgetCount()}.
+	 * @param time Время.
+	 * @param unit Единица измерения времени.
+	 * @throws NullPointerException единица измерения null
+	 * @throws IllegalArgumentException время не положительно
+	 */
+	public void setFrameBudget(long time, TimeUnit unit) {
+		if (time <= 0)
+			throw new IllegalArgumentException("время " + time);
+		this.budget = unit.toNanos(time);
+	}
+
+	/** Возвращает число нарисованных кадров.
+	 * @return
+	 */
+	public long getFrameCount() {
+		return frameCount;
+	}
+
+	/** Возвращает число выпавших кадров.
+	 * @return
+	 */
+	public long getDroppedCount() {
+		return droppedCount;
+	}
+
+	/** Возвращает число кадров сверх бюджета.
+	 * @return
+	 */
+	public long getOverBudgetCount() {
+		return overBudgetCount;
+	}
+
+	/** Возвращает максимальное время кадра.
+	 * Время кадра - от поручения рисования EDT до его окончания.
+	 * @return [нс]
+	 */
+	public long getMaxFrameTime() {
+		return maxFrameTime;
+	}
+
+	/** Возвращает среднее время кадра.
+	 * @return [нс]
+	 */
+	public long getMeanFrameTime() {
+		long count = frameCount;
+		return count == 0 ? 0 : frameTimeSum / count;
+	}
+
+	/** Обнуляет статистику.
+	 */
+	public void resetStatistics() {
+		frameCount = 0;
+		droppedCount = 0;
+		overBudgetCount = 0;
+		maxFrameTime = 0;
+		frameTimeSum = 0;
+	}
+
+	/** Возвращает строковое представление статистики.
+	 * Пример вывода:
+	 * <pre>
+	 * {@code
+	 * RenderLoop 144.0 Гц: кадров 1440, выпало 3, сверх бюджета 5, время среднее 0.42 мс, максимальное 9.10 мс
+	 * }
+	 * </pre>
+	 * @return Форматированная строка для вывода на консоль.
+	 */
+	@Override
+	public String toString() {
+		return String.format(java.util.Locale.ROOT,
+		  "%s %.1f Гц: кадров %d, выпало %d, сверх бюджета %d, время среднее %.2f мс, максимальное %.2f мс",
+		  getClass().getSimpleName(), 1e9 / period, frameCount, droppedCount, overBudgetCount,
+		  getMeanFrameTime() / 1e6, maxFrameTime / 1e6);
+	}
+
+	// тело потока цикла
+	private void run() {
+		Thread self = Thread.currentThread();
+		long next = System.nanoTime();
+		while (thread == self) {
+			long now = System.nanoTime();
+			if (now < next) {
+				LockSupport.parkNanos(this, next - now);
+				continue;
+			}
+
+			try {
+				SwingUtilities.invokeAndWait(frame);
+			} catch (InterruptedException e) {
+				break;
+			} catch (InvocationTargetException e) {
+				thread = null;
+				throw new IllegalStateException("ошибка рисования кадра", e.getCause());
+			}
+			long time = System.nanoTime() - now;
+			frameCount++;
+			frameTimeSum += time;
+			if (time > maxFrameTime)
+				maxFrameTime = time;
+			if (time > budget)
+				overBudgetCount++;
+
+			// моменты, пропущенные за время кадра, не навёрстываются
+			next += period;
+			now = System.nanoTime();
+			if (now >= next) {
+				long behind = (now - next) / period + 1;
+				droppedCount += behind;
+				next += behind * period;
+			}
+		}
+	}
+
+	public static void main(String[] args) throws InterruptedException {
+		long[] frames = new long[1];
+		RenderLoop loop = new RenderLoop(displayRate(null), () -> {
+			// имитация неравномерной нагрузки
+			if (++frames[0] % 30 == 29)
+				LockSupport.parkNanos(40_000_000);
+		});
+		loop.start();
+		Thread.sleep(2000);
+		loop.stop();
+		System.out.println(loop);
+	}
+}
@@ -49,6 +49,7 @@ public class RichRectangles extends MulticolorBricks
         
         this.arcRadius = radius;
         minimumSize = 2 * Math.max(arcRadius, contourThickness);
+        modified();
     }
 
     /** Возвращает толщину контура.
@@ -69,6 +70,7 @@ public class RichRectangles extends MulticolorBricks
         
         this.contourThickness = thickness;
         minimumSize = 2 * Math.max(arcRadius, contourThickness);
+        modified();
     }
 
     /** Возвращает показатель затемнения контура.
@@ -88,6 +90,7 @@ public class RichRectangles extends MulticolorBricks
      */
     public void setContourDarkness(int darkness) {
         this.contourDarkness = darkness;
+        modified();
     }
     
     /** Возвращает флаг сглаживания.
@@ -103,6 +106,7 @@ public class RichRectangles extends MulticolorBricks
      */
     public void setAntialising(boolean aFlag) {
         this.antialising = aFlag;
+        modified();
     }   
     
     /** {@inheritDoc}
@@ -13,6 +13,7 @@ public class StripedBackground implements BackgroundPainter
     private     Color evenColor;    	// цвет четных полос
     private     Color oddColor;     	// цвет нечетных полос
     private       int stripWidth;   	// ширина N-1 полос, последняя может чуть шире
+    private       int modCount;     	// счетчик изменений настроек
 
     /** Конструктор с цветами по умолчанию.
      * @param stripNumber Число полос.
@@ -61,6 +62,7 @@ public class StripedBackground implements BackgroundPainter
         if (c == null)
             throw new IllegalArgumentException();  
         this.evenColor = c;
+        modCount++;
     }
 
     /** Возвращает цвет нечетных полос.
@@ -79,6 +81,14 @@ public class StripedBackground implements BackgroundPainter
         if (c == null)
             throw new IllegalArgumentException();  
         this.oddColor = c;
+        modCount++;
+    }
+
+    /** {@inheritDoc}
+     */
+    @Override
+    public int getModCount() {
+        return modCount;
     }
 
     /** {@inheritDoc}
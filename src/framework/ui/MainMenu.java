@@ -22,15 +22,23 @@ public class MainMenu extends JMenuBar
 		configurePauseResume();
 		
 		game.addGameListener((e) -> {
-			String message = e.isWin() ? "Вы выиграли." : "Вы проиграли.";
-			int answer = JOptionPane.showConfirmDialog(null, message, "Game over", JOptionPane.YES_NO_OPTION);
-			if (answer == JOptionPane.YES_OPTION)
-				game.start();
+			// игра может завершиться в потоке игрового цикла
+			if (SwingUtilities.isEventDispatchThread())
+				gameOver(e.isWin());
 			else
-				configurePauseResume();
+				SwingUtilities.invokeLater(() -> gameOver(e.isWin()));
 		});
 	}
 	
+	private void gameOver(boolean win) {
+		String message = win ? "Вы выиграли." : "Вы проиграли.";
+		int answer = JOptionPane.showConfirmDialog(null, message, "Game over", JOptionPane.YES_NO_OPTION);
+		if (answer == JOptionPane.YES_OPTION)
+			game.start();
+		else
+			configurePauseResume();
+	}
+	
 	private void createFileMenu() {
 		JMenu menu = new JMenu("Файл");
 		menu.add("Выход").addActionListener((e) -> System.exit(0));
@@ -1,44 +1,117 @@
 package games;
 
 import java.awt.Rectangle;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 
+import framework.game.BagSequence;
 import framework.game.Game;
+import framework.game.PieceSequence;
+import framework.game.Restorable;
+import framework.game.replay.Input;
 import framework.matrix.model.pieces.Direction;
 import framework.matrix.model.pieces.NotEnoughSpaceException;
 import framework.matrix.model.pieces.Piece;
-import framework.matrix.model.bricks.Cells;
+import framework.matrix.model.pieces.PlacementGenerator;
+import framework.matrix.model.pieces.RotatablePiece;
 
-public class Tetris extends Game<TetrisBrick, TetrisPiece> 
+public class Tetris extends Game<TetrisBrick, TetrisPiece> implements Restorable
 {
+	private static final TetrisPieceCreator CREATOR = new TetrisPieceCreator();	// неизменяемый, общий
+	
 	private Piece<TetrisBrick> piece;		// текущая фигура
-	private TetrisPiece 	   nextPiece;	// разновидность следующей фигуры
+	private TetrisPiece        kind;		// разновидность текущей фигуры
+	private PieceSequence<TetrisPiece> sequence;	// последовательность следующих фигур
+	private long               drawn;		// число фигур, выданных последовательностью
 	
 	public Tetris() {
-		super(TetrisBrick.class, new TetrisPieceCreator());
+		super(TetrisBrick.class, CREATOR);
 		piece = new Piece<>();
-		nextPiece = draw();
+		sequence = new BagSequence<>(TetrisPiece.values(), getSeed());
+	}
+	
+	/** Конструирует игру с воспроизводимой последовательностью фигурок.
+	 * @param seed Зерно генератора случайных чисел.
+	 */
+	public Tetris(long seed) {
+		super(TetrisBrick.class, CREATOR, seed);
+		piece = new Piece<>();
+		sequence = new BagSequence<>(TetrisPiece.values(), seed);
+	}
+	
+	/** Возвращает последовательность фигур.
+	 * Следующие фигуры можно просмотреть, не изменяя ее: {@link PieceSequence#peek(int)}.
+	 * Обращайтесь к последовательности под блокировкой игры.
+	 * @return
+	 */
+	public synchronized PieceSequence<TetrisPiece> getSequence() {
+		return sequence;
+	}
+	
+	/** Устанавливает последовательность фигур.
+	 * Последовательность продолжается и в следующих партиях, пока не будет заменена.
+	 * @param sequence
+	 * @throws NullPointerException последовательность null
+	 */
+	public synchronized void setSequence(PieceSequence<TetrisPiece> sequence) {
+		if (sequence == null)
+			throw new NullPointerException();
+		this.sequence = sequence;
+		this.drawn = 0;
+	}
+	
+	/** Возвращает текущую фигуру.
+	 * @return Несуществующая фигура, если текущей нет.
+	 */
+	public synchronized Piece<TetrisBrick> getPiece() {
+		return piece;
 	}
 	
 	/** {@inheritDoc}
+	 * Переставляет текущую фигуру одной модификацией матрицы.
 	 */
 	@Override
-	public void moveLeft() {
-		if (getState() == State.ACTIVE && piece.isExist())
+	public synchronized boolean place(int placement) {
+		if (getState() == State.ACTIVE && piece.isExist() && piece instanceof RotatablePiece) {
+			record(Input.PLACE, placement);
+			return PlacementGenerator.apply((RotatablePiece<?>)piece, placement);
+		}
+		return false;
+	}
+	
+	/** {@inheritDoc}
+	 */
+	@Override
+	public synchronized void moveLeft() {
+		if (getState() == State.ACTIVE && piece.isExist()) {
+			record(Input.LEFT);
 			piece.move(Direction.LEFT);		
+		}
 	}
 	
 	/** {@inheritDoc}
 	 */
 	@Override
-	public void moveRight() {
-		if (getState() == State.ACTIVE && piece.isExist())
+	public synchronized void moveRight() {
+		if (getState() == State.ACTIVE && piece.isExist()) {
+			record(Input.RIGHT);
 			piece.move(Direction.RIGHT);	
+		}
 	}
 	
 	/** {@inheritDoc}
 	 */
 	@Override
-	public void moveDown() {
+	public synchronized void moveDown() {
+		if (getState() == State.ACTIVE) {
+			record(Input.DOWN);
+			fall();
+		}
+	}
+	
+	// опускает фигуру на строку, а упавшую фигуру сменяет следующей
+	private void fall() {
 		if (getState() == State.ACTIVE) {
 			if (piece.isExist()) {
 				boolean moved = piece.move(Direction.DOWN);
@@ -46,25 +119,20 @@ public class Tetris extends Game<TetrisBrick, TetrisPiece>
 					Rectangle area = piece.getArea();
 					piece.destroy();
 					
-					int count = 0;
-					for (int y = area.y; y < area.y + area.height; y++) {
-						if (matrix.containsAll(Cells.row(y))) {
-							matrix.removeAll(Cells.row(y));
-							matrix.transferSome(
-							  Cells.area(0, count, matrix.size().width, y - count),
-							  Cells.area(0, count + 1, matrix.size().width, y - count));
-							count++;
-						}
-					}
+					int count = matrix.compactRows((y) ->
+					  y >= area.y && y < area.y + area.height && matrix.isRowFull(y));
+					addLines(count);
 					
 					if (count == 0)
-						moveDown();
+						fall();
 				}
 			}
 			else {
 				try {
-					piece = matrix.create(nextPiece);
-					nextPiece = draw();
+					kind = sequence.peek(0);
+					piece = matrix.create(kind);
+					sequence.next();
+					drawn++;
 				} catch (NotEnoughSpaceException e) {
 					stop();
 					fireGameOver(false);
@@ -76,24 +144,94 @@ public class Tetris extends Game<TetrisBrick, TetrisPiece>
 	/** {@inheritDoc}
 	 */
 	@Override
-	public void rotate() {
-		if (getState() == State.ACTIVE && piece.isExist())
+	public synchronized void rotate() {
+		if (getState() == State.ACTIVE && piece.isExist()) {
+			record(Input.ROTATE);
 			piece.rotate();	
+		}
 	}
 	
-	/** {@inheritDoc} 
-	 * Двигает фигуру вниз.
+	/** {@inheritDoc}
+	 * Состояние - число удаленных строк, число выданных фигур, блоки матрицы кроме
+	 * блоков текущей фигуры по байту на ячейку и текущая фигура: разновидность,
+	 * положение и якорь.
 	 */
 	@Override
-	protected void onTimerTick() {
-		moveDown();
+	public synchronized void saveState(DataOutput out) throws IOException {
+		if (getState() == State.NOT_STARTED)
+			throw new IllegalStateException("игра не запущена");
+		
+		out.writeLong(getLines());
+		out.writeLong(drawn);
+		for (int y = 0; y < matrix.getHeight(); y++) {
+			for (int x = 0; x < matrix.getWidth(); x++) {
+				TetrisBrick brick = matrix.get(x, y);
+				out.writeByte(brick == null || !matrix.isNeutral(x, y) ? 0 : brick.ordinal() + 1);
+			}
+		}
+		out.writeBoolean(piece.isExist());
+		if (piece.isExist()) {
+			RotatablePiece<?> p = (RotatablePiece<?>)piece;
+			out.writeByte(kind.ordinal());
+			out.writeByte(p.getOrientation());
+			out.writeInt(p.getAnchorX());
+			out.writeInt(p.getAnchorY());
+		}
 	}
 	
-	/** Разыгрывает фигуру.
-	 * @return Разновидность следующей фигуру.
+	/** {@inheritDoc}
+	 * Последовательность фигур продвигается до сохраненного числа выданных фигур.
 	 */
-	private TetrisPiece draw() {
-		return TetrisPiece.values()[random.nextInt(TetrisPiece.values().length)];
+	@Override
+	public synchronized void restoreState(DataInput in) throws IOException {
+		if (getState() == State.NOT_STARTED)
+			throw new IllegalStateException("игра не запущена");
+		if (drawn != 0 || getLines() != 0 || !matrix.isEmpty())
+			throw new IllegalStateException("игра уже продвинулась");
+		
+		long lines = in.readLong();
+		long count = in.readLong();
+		if (lines < 0 || count < 0)
+			throw new IOException("состояние повреждено");
+		TetrisBrick[] bricks = TetrisBrick.values();
+		matrix.startSeries();
+		try {
+			for (int y = 0; y < matrix.getHeight(); y++) {
+				for (int x = 0; x < matrix.getWidth(); x++) {
+					int code = in.readUnsignedByte();
+					if (code > bricks.length)
+						throw new IOException("код блока " + code);
+					if (code != 0)
+						matrix.add(x, y, bricks[code - 1]);
+				}
+			}
+			if (in.readBoolean()) {
+				int k = in.readUnsignedByte(), orientation = in.readUnsignedByte();
+				int x = in.readInt(), y = in.readInt();
+				if (k >= TetrisPiece.values().length)
+					throw new IOException("разновидность фигуры " + k);
+				try {
+					piece = CREATOR.create(matrix, TetrisPiece.values()[k], orientation, x, y);
+					kind = TetrisPiece.values()[k];
+				} catch (NotEnoughSpaceException | RuntimeException e) {
+					throw new IOException("фигура не восстанавливается", e);
+				}
+			}
+		}
+		finally {
+			matrix.stopSeries();
+		}
+		for (; drawn < count; drawn++)
+			sequence.next();
+		addLines(lines);
+	}
+	
+	/** {@inheritDoc} 
+	 * Двигает фигуру вниз.
+	 */
+	@Override
+	protected void onTimerTick() {
+		fall();
 	}
 	
 	/** Возвращает название игры.
@@ -0,0 +1,107 @@
+package games;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import framework.game.Game;
+import framework.game.GameHost;
+import framework.game.PieceSequence;
+import framework.game.VirtualClock;
+import framework.matrix.model.pieces.Piece;
+import framework.matrix.model.pieces.RotatablePiece;
+import framework.matrix.model.pieces.RotationTable;
+import framework.matrix.search.PlacementSearch;
+import framework.matrix.search.TranspositionTable;
+
+/** Автоматический игрок Тетриса.
+ * Для каждой новой фигурки ищет лучшее размещение с просмотром следующих фигурок
+ * ({@link PlacementSearch}) и переставляет ее туда, дальше фигурку опускает гравитация.
+ * Годится как игрок {@link GameHost}.
+ * 
+ * @author Игорь
+ */
+public class TetrisBot implements GameHost.Player<Tetris>
+{
+	private final PlacementSearch     search;		// поиск размещений
+	private final TetrisPieceCreator  tables;		// таблицы поворотов фигурок
+	private final List<RotationTable> upcoming;		// таблицы следующих фигурок
+	private Piece<TetrisBrick>        placed;		// последняя размещенная фигурка
+	private long                      decisions;	// число решений
+	private long                      decisionTime;	// [нс] суммарное время решений
+	
+	/** Конструирует игрока.
+	 * @param search Поиск размещений.
+	 * @throws NullPointerException поиск null
+	 */
+	public TetrisBot(PlacementSearch search) {
+		if (search == null)
+			throw new NullPointerException();
+		
+		this.search = search;
+		this.tables = new TetrisPieceCreator();
+		this.upcoming = new ArrayList<>();
+	}
+	
+	/** {@inheritDoc}
+	 * Размещает фигурку один раз, на первом ходу после ее появления.
+	 */
+	@Override
+	public void move(Tetris tetris) {
+		synchronized (tetris) {
+			Piece<TetrisBrick> piece = tetris.getPiece();
+			if (piece == placed || !piece.isExist())
+				return;
+			placed = piece;
+			
+			upcoming.clear();
+			PieceSequence<TetrisPiece> sequence = tetris.getSequence();
+			for (int i = 0; i < search.getDepth() - 1 && i < sequence.getDepth(); i++)
+				upcoming.add(tables.table(sequence.peek(i)));
+			
+			long start = System.nanoTime();
+			if (search.search((RotatablePiece<?>)piece, upcoming))
+				tetris.place(search.getPlacement());
+			decisionTime += System.nanoTime() - start;
+			decisions++;
+		}
+	}
+	
+	/** Возвращает число принятых решений.
+	 * @return
+	 */
+	public long getDecisions() {
+		return decisions;
+	}
+	
+	/** Возвращает среднее время решения.
+	 * @return [нс]
+	 */
+	public long getMeanDecisionTime() {
+		return decisions == 0 ? 0 : decisionTime / decisions;
+	}
+	
+	public static void main(String[] args) {
+		final int TICKS = 3_000;
+		for (int run = 0; run < 4; run++) {
+			int depth = Math.min(run + 1, 3);
+			PlacementSearch search = new PlacementSearch();
+			search.setDepth(depth);
+			if (run == 3)
+				search.setTranspositionTable(new TranspositionTable(1 << 20));
+			TetrisBot bot = new TetrisBot(search);
+			
+			Tetris tetris = new Tetris(1);
+			tetris.setTicker(new VirtualClock());
+			tetris.start();
+			int ticks = 0;
+			for (; ticks < TICKS && tetris.getState() == Game.State.ACTIVE; ticks++) {
+				bot.move(tetris);
+				tetris.step(1);
+			}
+			System.out.printf("глубина %d: тиков %d, фигурок %d, строк %d, решение %.2f мс%n",
+			  depth, ticks, bot.getDecisions(), tetris.getLines(), bot.getMeanDecisionTime() / 1e6);
+			if (search.getTranspositionTable() != null)
+				System.out.println(search.getTranspositionTable());
+		}
+	}
+}
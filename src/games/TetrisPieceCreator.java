@@ -1,6 +1,7 @@
 package games;
 
 import java.util.Collections;
+import java.util.EnumMap;
 
 import framework.matrix.model.bricks.Cells;
 import framework.matrix.model.pieces.NotEnoughSpaceException;
@@ -8,32 +9,86 @@ import framework.matrix.model.pieces.Piece;
 import framework.matrix.model.pieces.PieceCreator;
 import framework.matrix.model.pieces.PieceMatrix;
 import framework.matrix.model.pieces.RotatablePiece;
+import framework.matrix.model.pieces.RotationTable;
 
+/** Делегат создания фигурок Тетриса.
+ * Таблицы поворотов всех разновидностей строятся однократно при конструировании,
+ * фигурки поворачиваются по ним без вычислений.
+ * 
+ * @author Игорь
+ */
 public class TetrisPieceCreator implements PieceCreator<TetrisBrick, TetrisPiece>
 {
+	private final EnumMap<TetrisPiece, RotationTable> tables;	// таблицы поворотов
+	
+	public TetrisPieceCreator() {
+		tables = new EnumMap<>(TetrisPiece.class);
+		for (TetrisPiece kind : TetrisPiece.values())
+			tables.put(kind, RotationTable.of(Cells.create(spawnCells(kind)), false, false));
+	}
+	
 	@Override
 	public Piece<TetrisBrick> create(PieceMatrix<TetrisBrick, TetrisPiece> matrix, TetrisPiece kind)
 	  throws NotEnoughSpaceException 
 	{
+		return new RotatablePiece<>(matrix, table(kind), Collections.nCopies(4, brick(kind)));
+	}
+	
+	/** Создает фигурку в заданном положении, например при восстановлении игры.
+	 * @param matrix Матрица, в которой создается фигурка.
+	 * @param kind Разновидность фигурки.
+	 * @param orientation Положение фигурки [0, 4).
+	 * @param x Абсцисса якоря фигурки.
+	 * @param y Ордината якоря фигурки.
+	 * @return Созданная фигурка.
+	 * @throws NotEnoughSpaceException не хватило места в матрице
+	 * @throws NullPointerException аргументы null
+	 * @throws IllegalArgumentException положение вне [0, 4)
+	 */
+	public RotatablePiece<TetrisBrick> create(PieceMatrix<TetrisBrick, TetrisPiece> matrix, TetrisPiece kind,
+	  int orientation, int x, int y) throws NotEnoughSpaceException
+	{
+		return new RotatablePiece<>(matrix, table(kind), orientation, x, y, Collections.nCopies(4, brick(kind)));
+	}
+	
+	/** Возвращает таблицу поворотов фигурки.
+	 * @param kind Разновидность фигурки.
+	 * @return
+	 * @throws NullPointerException разновидность null
+	 */
+	public RotationTable table(TetrisPiece kind) {
+		if (kind == null)
+			throw new NullPointerException();
+		return tables.get(kind);
+	}
+	
+	// координаты ячеек фигурки при появлении попарно
+	private static int[] spawnCells(TetrisPiece kind) {
 		switch (kind) {
-			case I:
-				return new RotatablePiece<>(matrix, Cells.create(5, 0, 5, 1, 5, 2, 5, 3), Collections.nCopies(4, TetrisBrick.I));
-			case J:
-				return new RotatablePiece<>(matrix, Cells.create(5, 0, 5, 1, 5, 2, 4, 2), Collections.nCopies(4, TetrisBrick.J));
-			case L:
-				return new RotatablePiece<>(matrix, Cells.create(4, 0, 4, 1, 4, 2, 5, 2), Collections.nCopies(4, TetrisBrick.L));
-			case O:
-				return new RotatablePiece<>(matrix, Cells.create(4, 0, 5, 0, 4, 1, 5, 1), Collections.nCopies(4, TetrisBrick.O));
-			case S:
-				return new RotatablePiece<>(matrix, Cells.create(5, 0, 6, 0, 4, 1, 5, 1), Collections.nCopies(4, TetrisBrick.S));
-			case T:
-				return new RotatablePiece<>(matrix, Cells.create(4, 0, 5, 0, 6, 0, 5, 1), Collections.nCopies(4, TetrisBrick.T));
-			case Z:
-				return new RotatablePiece<>(matrix, Cells.create(4, 0, 5, 0, 5, 1, 6, 1), Collections.nCopies(4, TetrisBrick.Z));
+			case I:	return new int[] {5, 0, 5, 1, 5, 2, 5, 3};
+			case J:	return new int[] {5, 0, 5, 1, 5, 2, 4, 2};
+			case L:	return new int[] {4, 0, 4, 1, 4, 2, 5, 2};
+			case O:	return new int[] {4, 0, 5, 0, 4, 1, 5, 1};
+			case S:	return new int[] {5, 0, 6, 0, 4, 1, 5, 1};
+			case T:	return new int[] {4, 0, 5, 0, 6, 0, 5, 1};
+			case Z:	return new int[] {4, 0, 5, 0, 5, 1, 6, 1};
+			default:
+				throw new RuntimeException("сюда не попадем");
+		}
+	}
+	
+	// блок фигурки
+	private static TetrisBrick brick(TetrisPiece kind) {
+		switch (kind) {
+			case I:	return TetrisBrick.I;
+			case J:	return TetrisBrick.J;
+			case L:	return TetrisBrick.L;
+			case O:	return TetrisBrick.O;
+			case S:	return TetrisBrick.S;
+			case T:	return TetrisBrick.T;
+			case Z:	return TetrisBrick.Z;
 			default:
 				throw new RuntimeException("сюда не попадем");
 		}
-		
 	}
-
 }
@@ -0,0 +1,52 @@
+package start;
+
+import java.util.Random;
+
+import framework.game.GameHost;
+import games.Tetris;
+
+/** Параллельное моделирование Тетриса без дисплея.
+ * Играет заданное число партий случайными ходами сначала в одном потоке, затем во всех
+ * ядрах, и выводит производительность хоста. Пример запуска:
+ * <pre>
+ * {@code
+ * java -Djava.awt.headless=true start.HostTetris 20000
+ * }
+ * </pre>
+ */
+public class HostTetris 
+{
+	/** Запускает моделирование.
+	 * @param args [число партий [число потоков]]
+	 */
+	public static void main(String[] args) {
+		int games = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+		int cores = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+
+		run(games, 1);		// прогрев
+		System.out.println(run(games, 1));
+		System.out.println(run(games, cores));
+	}
+
+	// играет партии с зернами [0, games) в заданном числе потоков
+	private static GameHost<Tetris> run(int games, int parallelism) {
+		GameHost<Tetris> host = new GameHost<>(Tetris::new, HostTetris::player, parallelism);
+		host.submitAll(0, games);
+		host.close();
+		return host;
+	}
+
+	// игрок случайными ходами, несколько ходов на каждый тик гравитации
+	private static GameHost.Player<Tetris> player(long seed) {
+		Random random = new Random(seed);
+		return (tetris) -> {
+			for (int k = random.nextInt(4); k > 0; k--) {
+				switch (random.nextInt(3)) {
+					case 0: tetris.moveLeft();	break;
+					case 1: tetris.moveRight();	break;
+					case 2: tetris.rotate();	break;
+				}
+			}
+		};
+	}
+}
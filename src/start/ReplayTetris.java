@@ -0,0 +1,120 @@
+package start;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import framework.game.Game;
+import framework.game.VirtualClock;
+import framework.game.replay.ReplayRecorder;
+import framework.game.replay.ReplayViewer;
+import framework.game.replay.Replayer;
+import framework.matrix.search.PlacementSearch;
+import games.Tetris;
+import games.TetrisBot;
+
+/** Запись и проверка повторов Тетриса без дисплея.
+ * Играет заданное число партий случайными ходами, записывая каждую в файл повтора,
+ * затем проверяет все повторы воспроизведением и выводит размер повторов и скорость
+ * проверки. Напоследок записывает длинную партию автоматического игрока и переходит
+ * к случайным тикам ее повтора. Пример запуска:
+ * <pre>
+ * {@code
+ * java -Djava.awt.headless=true start.ReplayTetris 2000 /tmp/replays
+ * }
+ * </pre>
+ */
+public class ReplayTetris 
+{
+	/** Запускает запись и проверку.
+	 * @param args [число партий [каталог повторов]]
+	 * @throws IOException ошибка ввода-вывода
+	 */
+	public static void main(String[] args) throws IOException {
+		int games = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+		Path dir = args.length > 1 ? Files.createDirectories(Path.of(args[1])) : Files.createTempDirectory("replays");
+		
+		long bytes = 0, ticks = 0;
+		for (int i = 0; i < games; i++) {
+			Path file = dir.resolve(i + ".replay");
+			try (ReplayRecorder recorder = new ReplayRecorder(file)) {
+				ticks += record(i, recorder);
+			}
+			bytes += Files.size(file);
+		}
+		System.out.printf("повторов %d в %s: тиков %d, %.1f байт на повтор, %.3f байт на тик%n",
+		  games, dir, ticks, (double)bytes / games, (double)bytes / ticks);
+		
+		Replayer<Tetris> replayer = new Replayer<>(Tetris::new);
+		for (int round = 0; round < 2; round++) {		// первый проход - прогрев
+			long start = System.nanoTime();
+			int failed = 0;
+			for (int i = 0; i < games; i++)
+				if (!replayer.verify(dir.resolve(i + ".replay")))
+					failed++;
+			double seconds = (System.nanoTime() - start) / 1e9;
+			System.out.printf("проверено %d за %.2f с: %.0f повторов/с, %.0f тиков/с, расхождений %d%n",
+			  games, seconds, games / seconds, ticks / seconds, failed);
+		}
+		
+		Path file = dir.resolve("bot.replay");
+		try (ReplayRecorder recorder = new ReplayRecorder(file)) {
+			recordBot(recorder, LONG_GAME);
+		}
+		long start = System.nanoTime();
+		try (ReplayViewer<Tetris> viewer = new ReplayViewer<>(file, Tetris::new)) {
+			System.out.printf("повтор бота %d байт, %d тиков, %d кадров открыт за %.2f мс%n", Files.size(file),
+			  viewer.getDuration(), viewer.getKeyframeCount(), (System.nanoTime() - start) / 1e6);
+			Random random = new Random(0);
+			start = System.nanoTime();
+			for (int i = 0; i < SEEKS; i++)
+				viewer.seek((long)(random.nextDouble() * viewer.getDuration()));
+			System.out.printf("переход к случайному тику: %.2f мс%n", (System.nanoTime() - start) / 1e6 / SEEKS);
+		}
+	}
+	
+	private static final int LONG_GAME = 20_000;	// [тиков] длинная партия, 5.5 ч при 1 тике/с
+	private static final int SEEKS     = 1000;
+	
+	// играет партию автоматическим игроком с записью повтора
+	private static void recordBot(ReplayRecorder recorder, int ticks) {
+		PlacementSearch search = new PlacementSearch();
+		search.setDepth(1);
+		TetrisBot bot = new TetrisBot(search);
+		Tetris tetris = new Tetris(0);
+		tetris.setTicker(new VirtualClock());
+		tetris.setRecorder(recorder);
+		
+		tetris.start();
+		for (int i = 0; i < ticks && tetris.getState() == Game.State.ACTIVE; i++) {
+			bot.move(tetris);
+			tetris.step(1);
+		}
+		if (tetris.getState() != Game.State.NOT_STARTED)
+			tetris.stop();
+	}
+	
+	// играет партию случайными ходами с записью повтора, возвращает число тиков
+	private static long record(long seed, ReplayRecorder recorder) {
+		Random random = new Random(seed);
+		Tetris tetris = new Tetris(seed);
+		VirtualClock clock = new VirtualClock();
+		tetris.setTicker(clock);
+		tetris.setRecorder(recorder);
+		
+		tetris.start();
+		while (tetris.getState() == Game.State.ACTIVE) {
+			for (int k = random.nextInt(4); k > 0; k--) {
+				switch (random.nextInt(4)) {
+					case 0: tetris.moveLeft();	break;
+					case 1: tetris.moveRight();	break;
+					case 2: tetris.rotate();	break;
+					case 3: tetris.moveDown();	break;
+				}
+			}
+			tetris.step(1);
+		}
+		return clock.getTime();
+	}
+}
@@ -0,0 +1,53 @@
+package start;
+
+import java.util.Random;
+
+import framework.game.Game;
+import framework.game.VirtualClock;
+import games.Tetris;
+
+/** Моделирование Тетриса без дисплея.
+ * Играет заданное число партий случайными ходами на виртуальных часах и выводит
+ * производительность. Пример запуска:
+ * <pre>
+ * {@code
+ * java -Djava.awt.headless=true start.SimulateTetris 10000 1
+ * }
+ * </pre>
+ */
+public class SimulateTetris 
+{
+	/** Запускает моделирование.
+	 * @param args [число партий [зерно фигурок и ходов]]
+	 */
+	public static void main(String[] args) {
+		int games = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+		long seed = args.length > 1 ? Long.parseLong(args[1]) : 0;
+		Random random = new Random(seed);
+		
+		Tetris tetris = new Tetris(seed);
+		VirtualClock clock = new VirtualClock();
+		tetris.setTicker(clock);
+		
+		long start = System.nanoTime();
+		long moves = 0;
+		for (int i = 0; i < games; i++) {
+			tetris.start();
+			while (tetris.getState() == Game.State.ACTIVE) {
+				// несколько ходов игрока на каждый тик гравитации
+				for (int k = random.nextInt(4); k > 0; k--, moves++) {
+					switch (random.nextInt(3)) {
+						case 0: tetris.moveLeft();	break;
+						case 1: tetris.moveRight();	break;
+						case 2: tetris.rotate();	break;
+					}
+				}
+				tetris.step(1);
+			}
+		}
+		double seconds = (System.nanoTime() - start) / 1e9;
+		
+		System.out.printf("партий %d, тиков %d, ходов %d за %.2f с: %.0f партий/с, %.0f тиков/с%n",
+		  games, clock.getTime(), moves, seconds, games / seconds, clock.getTime() / seconds);
+	}
+}
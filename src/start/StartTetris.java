@@ -2,14 +2,21 @@ package start;
 
 import javax.swing.*;
 
+import framework.game.GameLoop;
 import framework.ui.MainFrame;
 import games.Tetris;
 
 public class StartTetris 
 {
+	/** Запускает Тетрис.
+	 * @param args -loop, чтобы логика игры выполнялась в отдельном потоке игрового цикла.
+	 */
 	public static void main(String[] args) {
 		SwingUtilities.invokeLater(() -> {
-			JFrame frame = new MainFrame(new Tetris());
+			Tetris tetris = new Tetris();
+			if (args.length > 0 && args[0].equals("-loop"))
+				tetris.setTicker(new GameLoop(1));
+			JFrame frame = new MainFrame(tetris);
 			frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
 			frame.setVisible(true);
 		});